@@ -0,0 +1,109 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.compileServer
+
+import java.io._
+import java.net.{InetAddress, ServerSocket, Socket}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{ExecutorService, Executors, TimeUnit}
+
+import com.martiansoftware.nailgun.NGConstants
+import org.jetbrains.jps.incremental.scala.DummyClient
+import org.jetbrains.jps.incremental.scala.remote._
+import org.openjdk.jmh.annotations._
+
+/**
+  * Latency of a no-op compile server request: a one-shot connection per request versus a [[CompileServerSession]].
+  * The server is an in-process fake which completes every request immediately, so only the transport is measured:
+  * connecting, nailgun handshake and framing.
+  * {{{
+  *   jmh:run .*CompileServerSessionBenchmark.*
+  * }}}
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class CompileServerSessionBenchmark {
+
+  @Param(Array("one-shot", "session"))
+  var connection: String = _
+
+  private var serverSocket: ServerSocket = _
+  private var executor: ExecutorService = _
+  private var owner: RemoteResourceOwner = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    System.setProperty(CompileServerSession.EnabledProperty, (connection == "session").toString)
+
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress)
+    executor = Executors.newCachedThreadPool()
+    executor.submit(new Runnable {
+      override def run(): Unit = acceptConnections()
+    })
+
+    owner = new RemoteResourceOwner {
+      override protected val address: InetAddress = serverSocket.getInetAddress
+      override protected val port: Int = serverSocket.getLocalPort
+    }
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit = {
+    serverSocket.close()
+    executor.shutdownNow()
+    System.clearProperty(CompileServerSession.EnabledProperty)
+  }
+
+  @Benchmark
+  def noOpRequest(): Unit = owner.send("compile-server", Seq("no-op"), new DummyClient)
+
+  private def acceptConnections(): Unit =
+    try {
+      while (true) {
+        val socket = serverSocket.accept()
+        executor.submit(new Runnable {
+          override def run(): Unit = serve(socket)
+        })
+      }
+    } catch {
+      case _: IOException => // the server socket is closed
+    }
+
+  private def serve(socket: Socket): Unit =
+    try {
+      val input = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+      val output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))
+
+      if (readCommand(input) == CompileServerSession.Alias) {
+        respond(output, 0)
+        while (true) {
+          val frame = new DataInputStream(new ByteArrayInputStream(Chunk.readFrom(input).data))
+          val id = frame.readInt()
+          if (frame.readByte() == 0) respond(output, id)
+        }
+      } else {
+        Chunk(NGConstants.CHUNKTYPE_EXIT.toChar, "0".getBytes(StandardCharsets.US_ASCII)).writeTo(output)
+        output.flush()
+      }
+    } catch {
+      case _: IOException => // the client has disconnected
+    } finally {
+      socket.close()
+    }
+
+  private def readCommand(input: DataInputStream): String = {
+    val chunk = Chunk.readFrom(input)
+    if (chunk.kind == NGConstants.CHUNKTYPE_COMMAND) new String(chunk.data, StandardCharsets.UTF_8)
+    else readCommand(input)
+  }
+
+  // an empty response to a request completes it, an empty response to the request 0 accepts the session
+  private def respond(output: DataOutputStream, id: Int): Unit = {
+    val data = new ByteArrayOutputStream()
+    new DataOutputStream(data).writeInt(id)
+    Chunk(NGConstants.CHUNKTYPE_STDOUT.toChar, data.toByteArray).writeTo(output)
+    output.flush()
+  }
+}
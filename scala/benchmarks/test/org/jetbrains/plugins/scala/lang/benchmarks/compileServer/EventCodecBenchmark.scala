@@ -0,0 +1,68 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.compileServer
+
+import java.io.File
+import java.util.Base64
+import java.util.concurrent.TimeUnit
+
+import org.jetbrains.jps.incremental.messages.BuildMessage.Kind
+import org.jetbrains.jps.incremental.scala.remote._
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Encode/decode throughput of compile server events: Java serialization with Base64 (the fallback format)
+  * versus [[EventCodec]]. Events are modelled after a large build: many generated classes and warnings in few files.
+  * {{{
+  *   jmh:run -prof gc .*EventCodecBenchmark.*
+  * }}}
+  */
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class EventCodecBenchmark {
+
+  @Param(Array("serialization", "binary"))
+  var format: String = _
+
+  private val eventCount = 10000
+  private val fileCount = 200
+
+  var events: Array[Event] = _
+  var encoded: Array[Array[Byte]] = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val module = new File("/home/user/project/module/target/scala-2.12/classes")
+    val sources = Array.tabulate(fileCount)(i => new File(s"/home/user/project/module/src/main/scala/pkg$i/Source$i.scala"))
+
+    events = Array.tabulate[Event](eventCount) { i =>
+      val source = sources(i % fileCount)
+      if (i % 2 == 0) GeneratedEvent(source, module, s"pkg${i % fileCount}.Class$i")
+      else MessageEvent(Kind.WARNING, s"warning: match may not be exhaustive ($i)", Some(source), Some(i.toLong), Some(i % 80L))
+    }
+    encoded = encodeAll()
+  }
+
+  @Benchmark
+  def encode(bh: Blackhole): Unit = bh.consume(encodeAll())
+
+  @Benchmark
+  def decode(bh: Blackhole): Unit = format match {
+    case "binary" =>
+      val decoder = new EventCodec.Decoder
+      encoded.foreach(bytes => bh.consume(decoder.decode(bytes)))
+    case _ =>
+      encoded.foreach(bytes => bh.consume(Event.fromBytes(Base64.getDecoder.decode(bytes))))
+  }
+
+  private def encodeAll(): Array[Array[Byte]] = format match {
+    case "binary" =>
+      val encoder = new EventCodec.Encoder
+      events.map(encoder.encode)
+    case _ =>
+      events.map(event => Base64.getEncoder.encode(event.toBytes))
+  }
+}
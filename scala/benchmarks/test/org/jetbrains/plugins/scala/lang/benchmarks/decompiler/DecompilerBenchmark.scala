@@ -0,0 +1,65 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.decompiler
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+import java.util.zip.ZipFile
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.plugins.scala.decompiler.Decompiler
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import scala.collection.JavaConverters._
+
+/**
+  * Cost of recognizing Scala class files (done for every class file on the classpath)
+  * compared to their decompilation to text (done only when stubs are built or a file is opened).
+  *
+  * The corpus is every top-level class of scala-library, additional jars can be passed
+  * as a path-separated list in the `decompiler.benchmark.jars` system property (e.g. cats or akka jars).
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class DecompilerBenchmark {
+
+  var classFiles: Array[(String, Array[Byte])] = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val scalaLibrary = new File(classOf[List[_]].getProtectionDomain.getCodeSource.getLocation.toURI)
+    val additionalJars = Option(System.getProperty("decompiler.benchmark.jars")).toSeq
+      .flatMap(_.split(File.pathSeparator))
+      .map(new File(_))
+
+    classFiles = (scalaLibrary +: additionalJars).flatMap(topLevelClasses).toArray
+  }
+
+  @Benchmark
+  def sourceName(bh: Blackhole): Unit = classFiles.foreach { case (name, bytes) =>
+    bh.consume(Decompiler.sourceName(name, bytes))
+  }
+
+  @Benchmark
+  def sourceNameAndText(bh: Blackhole): Unit = classFiles.foreach { case (name, bytes) =>
+    bh.consume(Decompiler.sourceNameAndText(name, bytes))
+  }
+
+  private def topLevelClasses(jar: File): Seq[(String, Array[Byte])] = {
+    val zip = new ZipFile(jar)
+    try {
+      zip.entries.asScala
+        .filter(e => e.getName.endsWith(".class") && !e.getName.contains("$"))
+        .map { entry =>
+          val name = entry.getName.substring(entry.getName.lastIndexOf('/') + 1)
+          (name, FileUtil.loadBytes(zip.getInputStream(entry)))
+        }
+        .toList
+    } finally {
+      zip.close()
+    }
+  }
+}
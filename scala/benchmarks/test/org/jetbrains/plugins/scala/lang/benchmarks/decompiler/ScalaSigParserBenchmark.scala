@@ -0,0 +1,51 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.decompiler
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.plugins.scala.decompiler.Decompiler
+import org.jetbrains.plugins.scala.decompiler.scalasig.Parser
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+  * Cost of parsing a large Scala signature when only top-level symbols are queried
+  * (e.g. class file recognition, compiler references indexing) compared to reading every entry.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class ScalaSigParserBenchmark {
+
+  @Param(Array("scala/collection/immutable/List.class", "scala/collection/immutable/Vector.class", "scala/Predef.class"))
+  var classFile: String = _
+
+  var signature: Array[Byte] = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val bytes = FileUtil.loadBytes(getClass.getClassLoader.getResourceAsStream(classFile))
+    val fileName = classFile.substring(classFile.lastIndexOf('/') + 1)
+    signature = Decompiler.scalaSignatureBytes(fileName, bytes).get
+  }
+
+  @Benchmark
+  def topLevelSymbols(bh: Blackhole): Unit = {
+    val scalaSig = Parser.parseScalaSig(signature, classFile)
+    bh.consume(scalaSig.topLevelClasses)
+    bh.consume(scalaSig.topLevelObjects)
+  }
+
+  @Benchmark
+  def allEntries(bh: Blackhole): Unit = {
+    val scalaSig = Parser.parseScalaSig(signature, classFile)
+    var i = 0
+    while (i < scalaSig.entryCount) {
+      bh.consume(scalaSig.get(i))
+      i += 1
+    }
+  }
+}
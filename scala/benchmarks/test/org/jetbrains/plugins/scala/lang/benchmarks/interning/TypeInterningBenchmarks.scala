@@ -0,0 +1,42 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.interning
+
+import com.intellij.openapi.util.registry.Registry
+import org.jetbrains.plugins.scala.base.libraryLoaders._
+import org.jetbrains.plugins.scala.lang.benchmarks.typeInference.TypeInferenceBenchmarkBase
+import org.jetbrains.plugins.scala.lang.psi.types.ScTypeInterner
+import org.openjdk.jmh.annotations.{Param, Scope, State}
+
+/**
+  * Compares type inference with and without [[ScTypeInterner]].
+  *
+  * Allocation rate is reported by the gc profiler:
+  * {{{
+  *   jmh:run -prof gc .*interning.*exprTypeUncached
+  * }}}
+  */
+@State(Scope.Benchmark)
+abstract class TypeInterningBenchmarkBase(testName: String) extends TypeInferenceBenchmarkBase(testName) {
+
+  @Param(Array("false", "true"))
+  var interning: String = _
+
+  override def setupData(): Unit = {
+    Registry.get(ScTypeInterner.RegistryKey).setValue(interning.toBoolean)
+    ScTypeInterner.clear()
+    super.setupData()
+  }
+}
+
+class ShapelessLikeInterning extends TypeInterningBenchmarkBase("ShapelessLike")
+
+class FlattenInterning extends TypeInterningBenchmarkBase("Flatten")
+
+class ScalazInterning extends TypeInterningBenchmarkBase("Scalaz") {
+  override protected def additionalLibraries(): Array[ThirdPartyLibraryLoader] =
+    Array(ScalaZCoreLoader()(module))
+}
+
+class CatsInterning extends TypeInterningBenchmarkBase("Cats") {
+  override protected def additionalLibraries(): Array[ThirdPartyLibraryLoader] =
+    Array(CatsLoader()(module))
+}
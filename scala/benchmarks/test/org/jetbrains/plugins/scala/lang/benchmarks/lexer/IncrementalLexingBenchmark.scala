@@ -0,0 +1,138 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.lexer
+
+import java.util.concurrent.TimeUnit
+
+import com.intellij.psi.tree.IElementType
+import org.jetbrains.plugins.scala.lang.lexer.ScalaLexer
+import org.openjdk.jmh.annotations._
+
+import scala.collection.mutable
+
+/**
+  * Tokens re-lexed after typing a character in a large file with interpolated strings.
+  *
+  * Re-lexing is simulated the way the editor highlighter does it: it restarts at the closest preceding token
+  * reported with the initial lexer state and stops when the new tokens match the old ones after the edit.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class IncrementalLexingBenchmark {
+  import IncrementalLexingBenchmark._
+
+  @Param(Array("5000"))
+  var lines: Int = _
+
+  var text: String = _
+  var tokens: Tokens = _
+  var editOffsets: Array[Int] = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    text = (0 until lines).map(line).mkString("\n")
+    tokens = Tokens.lex(text)
+
+    // typing in the method name after an interpolated string, once per 20 lines
+    editOffsets = (0 until lines by 20).map { i =>
+      val name = if (i % 2 == 0) "toUpperCase" else "option"
+      val lineStart = text.indexOf(line(i))
+      text.indexOf(name, lineStart) + 2
+    }.toArray
+  }
+
+  @Benchmark
+  def typeCharacter(counters: RelexedTokens): Int = {
+    var total = 0
+    editOffsets.foreach { offset =>
+      total += relexAfterInsertion(text, tokens, offset)
+    }
+    counters.edits += editOffsets.length
+    counters.tokens += total
+    total
+  }
+}
+
+object IncrementalLexingBenchmark {
+
+  private def line(i: Int): String =
+    if (i % 2 == 0) s"""  val greeting$i = s"Hello, $$name$i! You have $${messages.size + $i} new messages".trim.toUpperCase"""
+    else s"""  val query$i = sql"select * from users where id = $$id$i and name = $${name.trim}".query[User].option"""
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  class RelexedTokens {
+    var edits: Long = 0
+    var tokens: Long = 0
+
+    @Setup(Level.Iteration)
+    def reset(): Unit = {
+      edits = 0
+      tokens = 0
+    }
+  }
+
+  class Tokens(val starts: Array[Int], val types: Array[IElementType], val states: Array[Int]) {
+    def size: Int = starts.length
+
+    def indexAt(offset: Int): Int = {
+      val index = java.util.Arrays.binarySearch(starts, offset)
+      if (index >= 0) index else -index - 2
+    }
+  }
+
+  object Tokens {
+    def lex(text: String): Tokens = {
+      val starts = mutable.ArrayBuilder.make[Int]
+      val types = mutable.ArrayBuilder.make[IElementType]
+      val states = mutable.ArrayBuilder.make[Int]
+
+      val lexer = new ScalaLexer(false, null)
+      lexer.start(text)
+      while (lexer.getTokenType != null) {
+        starts += lexer.getTokenStart
+        types += lexer.getTokenType
+        states += lexer.getState
+        lexer.advance()
+      }
+      new Tokens(starts.result(), types.result(), states.result())
+    }
+  }
+
+  /**
+    * @return number of tokens lexed after a character is inserted at `offset`
+    */
+  def relexAfterInsertion(text: String, tokens: Tokens, offset: Int): Int = {
+    val newText = text.substring(0, offset) + "x" + text.substring(offset)
+
+    var restartIndex = math.max(tokens.indexAt(offset) - 2, 0)
+    while (restartIndex > 0 && tokens.states(restartIndex) != 0) {
+      restartIndex -= 1
+    }
+
+    val lexer = new ScalaLexer(false, null)
+    lexer.start(newText, tokens.starts(restartIndex), newText.length, 0)
+
+    var oldIndex = restartIndex
+    var relexed = 0
+    while (lexer.getTokenType != null) {
+      relexed += 1
+      val start = lexer.getTokenStart
+      if (start > offset) {
+        while (oldIndex < tokens.size && tokens.starts(oldIndex) + 1 < start) {
+          oldIndex += 1
+        }
+        if (oldIndex < tokens.size &&
+          tokens.starts(oldIndex) + 1 == start &&
+          tokens.types(oldIndex) == lexer.getTokenType &&
+          tokens.states(oldIndex) == lexer.getState) {
+          return relexed
+        }
+      }
+      lexer.advance()
+    }
+    relexed
+  }
+}
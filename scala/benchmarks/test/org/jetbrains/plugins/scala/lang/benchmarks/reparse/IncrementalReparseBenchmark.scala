@@ -0,0 +1,118 @@
+package org.jetbrains.plugins.scala.lang.benchmarks.reparse
+
+import java.util.concurrent.TimeUnit
+import java.{util => ju}
+
+import com.intellij.lang.ASTNode
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiDocumentManager
+import org.jetbrains.plugins.scala.base.ScalaLightPlatformCodeInsightTestCaseAdapter
+import org.jetbrains.plugins.scala.extensions.inWriteCommandAction
+import org.jetbrains.plugins.scala.lang.benchmarks._
+import org.openjdk.jmh.annotations._
+
+/**
+  * AST nodes recreated when a character is typed in a large file, in an argument list or in a block.
+  *
+  * Every invocation inserts a character, commits the document, counts the nodes which weren't in the tree before,
+  * then deletes the character and commits the document again.
+  */
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+class IncrementalReparseBenchmark extends ScalaLightPlatformCodeInsightTestCaseAdapter {
+  import IncrementalReparseBenchmark._
+
+  @Param(Array("arguments", "block"))
+  var editPlace: String = _
+
+  var document: Document = _
+  var offset: Int = _
+
+  override def getName = "testIncrementalReparse"
+
+  @Setup(Level.Trial)
+  def trialSetup(): Unit = syncInEdt {
+    setUp()
+    configureFromFileTextAdapter("Reparse.scala", fileText)
+    document = getEditorAdapter.getDocument
+
+    val marker = if (editPlace == "arguments") ArgumentsMarker else BlockMarker
+    offset = fileText.indexOf(marker, fileText.length / 2) + marker.length
+  }
+
+  @TearDown(Level.Trial)
+  def trialTearDown(): Unit = syncInEdt {
+    tearDown()
+    scheduleShutdown(200L)
+  }
+
+  @Benchmark
+  def typeAndDelete(counters: RecreatedNodes): Unit = syncInEdt {
+    val nodesBefore = allNodes()
+
+    edit(document.insertString(offset, "x"))
+    allNodes().forEach { node =>
+      if (!nodesBefore.contains(node)) counters.nodes += 1
+    }
+    counters.edits += 1
+
+    edit(document.deleteString(offset, offset + 1))
+  }
+
+  private def edit(action: => Unit): Unit = {
+    implicit val project: Project = getProjectAdapter
+    inWriteCommandAction(action)
+    PsiDocumentManager.getInstance(project).commitDocument(document)
+  }
+
+  // traversing the tree also parses lazy-parseable nodes
+  private def allNodes(): ju.Set[ASTNode] = {
+    val nodes = ju.Collections.newSetFromMap(new ju.IdentityHashMap[ASTNode, java.lang.Boolean])
+
+    def collect(node: ASTNode): Unit = {
+      nodes.add(node)
+      var child = node.getFirstChildNode
+      while (child != null) {
+        collect(child)
+        child = child.getTreeNext
+      }
+    }
+
+    collect(getFileAdapter.getNode)
+    nodes
+  }
+}
+
+object IncrementalReparseBenchmark {
+
+  private val ArgumentsMarker = "format(prefix, "
+  private val BlockMarker = "val length = "
+
+  private val Methods = 500
+
+  private val fileText: String = (0 until Methods).map { i =>
+    s"""  def method$i(prefix: String, values: Seq[Int]): String = {
+       |    val length = values.length + $i
+       |    format(prefix, values.map(v => v * $i).mkString(", "), length, Option(prefix).getOrElse("none"))
+       |  }
+       |""".stripMargin
+  }.mkString("class Reparse {\n", "\n", "}\n")
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  class RecreatedNodes {
+    var edits: Long = 0
+    var nodes: Long = 0
+
+    @Setup(Level.Iteration)
+    def reset(): Unit = {
+      edits = 0
+      nodes = 0
+    }
+  }
+}
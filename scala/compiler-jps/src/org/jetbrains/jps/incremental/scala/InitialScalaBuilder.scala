@@ -30,6 +30,8 @@ class InitialScalaBuilder extends ModuleLevelBuilder(BuilderCategory.SOURCE_INST
       checkIncrementalTypeChange(context)
   }
 
+  override def buildFinished(context: CompileContext): Unit = ScalaBuildStorage.close(context)
+
   override def build(context: CompileContext,
                      chunk: ModuleChunk,
                      dirtyFilesHolder: DirtyFilesHolder[JavaSourceRootDescriptor, ModuleBuildTarget],
@@ -0,0 +1,139 @@
+package org.jetbrains.jps.incremental.scala
+
+import java.io.{DataInput, DataOutput, File, IOException, InputStream}
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.io.{DataEnumerator, DataExternalizer, DataInputOutputUtil, EnumeratorIntegerDescriptor, PersistentHashMap, PersistentStringEnumerator}
+import org.jetbrains.jps.incremental.CompileContext
+import org.jetbrains.jps.incremental.messages.{BuildMessage, CompilerMessage}
+
+import scala.collection.mutable
+
+/**
+  * Project-wide data of Scala builders, kept in the data storage root between builds.
+  *
+  * Maps are paged persistent hash maps, so a chunk reads only the entries of its own sources
+  * and an update writes only the changed entry instead of rewriting all the data.
+  * Paths are enumerated once and referred to by their ids.
+  *
+  * A storage is opened by the first builder which needs it and is closed when the build is finished.
+  */
+class ScalaBuildStorage private[scala](root: File) {
+  import ScalaBuildStorage._
+
+  private val paths = new PersistentStringEnumerator(new File(root, "paths"))
+  private var packageObjects = createPackageObjectsMap()
+
+  private def packageObjectsFile = new File(root, "packageObjects")
+
+  private def createPackageObjectsMap() =
+    new PersistentHashMap[Integer, Set[Int]](packageObjectsFile, EnumeratorIntegerDescriptor.INSTANCE, IdsExternalizer)
+
+  private def pathId(file: File): Int = paths.enumerate(file.getPath)
+
+  private def existingPathId(file: File): Option[Int] = paths.tryEnumerate(file.getPath) match {
+    case DataEnumerator.NULL_ID => None
+    case id                     => Some(id)
+  }
+
+  private def path(id: Int): File = new File(paths.valueOf(id))
+
+  def packageObjectsOf(baseSource: File): Set[File] = synchronized {
+    existingPathId(baseSource)
+      .flatMap(id => Option(packageObjects.get(id)))
+      .fold(Set.empty[File])(_.map(path))
+  }
+
+  /**
+    * Ids of package objects are appended to the entry of a base source, the existing ids are not rewritten.
+    */
+  def addPackageObject(baseSource: File, packageObject: File): Unit = synchronized {
+    val baseSourceId    = pathId(baseSource)
+    val packageObjectId = pathId(packageObject)
+    val existing        = Option(packageObjects.get(baseSourceId)).getOrElse(Set.empty)
+
+    if (!existing.contains(packageObjectId))
+      packageObjects.appendData(baseSourceId, (out: DataOutput) => DataInputOutputUtil.writeINT(out, packageObjectId))
+  }
+
+  def clearPackageObjects(): Unit = synchronized {
+    packageObjects.close()
+    PersistentHashMap.deleteFilesStartingWith(packageObjectsFile)
+    packageObjects = createPackageObjectsMap()
+  }
+
+  def flush(): Unit = synchronized {
+    paths.force()
+    packageObjects.force()
+  }
+
+  private[scala] def close(): Unit = synchronized {
+    paths.close()
+    packageObjects.close()
+  }
+}
+
+object ScalaBuildStorage {
+  private val directoryName = "scala"
+
+  // data stored by the previous versions of the plugin
+  private val legacyFiles = Seq("packageObjects.dat")
+
+  private val instances = mutable.HashMap[File, ScalaBuildStorage]()
+
+  def getFor(context: CompileContext): ScalaBuildStorage = synchronized {
+    val storageRoot = context.getProjectDescriptor.dataManager.getDataPaths.getDataStorageRoot
+    instances.getOrElseUpdate(storageRoot, open(storageRoot, context))
+  }
+
+  /**
+    * Closes the storage of the build, if any of the builders has opened it.
+    */
+  def close(context: CompileContext): Unit = synchronized {
+    val storageRoot = context.getProjectDescriptor.dataManager.getDataPaths.getDataStorageRoot
+    instances.remove(storageRoot).foreach { storage =>
+      try storage.close()
+      catch {
+        case e: IOException => warning(context, s"Could not save Scala build data: \n${e.getMessage}")
+      }
+    }
+  }
+
+  private def open(storageRoot: File, context: CompileContext): ScalaBuildStorage = {
+    legacyFiles.foreach(name => FileUtil.delete(new File(storageRoot, name)))
+
+    val root = new File(storageRoot, directoryName)
+    try new ScalaBuildStorage(root)
+    catch {
+      case e: IOException =>
+        warning(context, s"Could not read Scala build data: \n${e.getMessage}")
+        FileUtil.delete(root)
+        new ScalaBuildStorage(root)
+    }
+  }
+
+  private def warning(context: CompileContext, message: String): Unit =
+    context.processMessage(new CompilerMessage("scala", BuildMessage.Kind.WARNING, message))
+
+  /**
+    * Reads all ids appended to an entry, an entry may contain several appended chunks.
+    *
+    * PersistentHashMap passes the chunks of an entry as a single input stream,
+    * so the ids are read until the stream is exhausted, the same way appendable maps of the platform do.
+    */
+  private object IdsExternalizer extends DataExternalizer[Set[Int]] {
+    override def save(out: DataOutput, value: Set[Int]): Unit =
+      value.foreach(DataInputOutputUtil.writeINT(out, _))
+
+    override def read(in: DataInput): Set[Int] = in match {
+      case stream: InputStream =>
+        val result = Set.newBuilder[Int]
+        while (stream.available() > 0) {
+          result += DataInputOutputUtil.readINT(in)
+        }
+        result.result()
+      case _ =>
+        throw new IOException(s"Appended ids can't be read from ${in.getClass.getName}")
+    }
+  }
+}
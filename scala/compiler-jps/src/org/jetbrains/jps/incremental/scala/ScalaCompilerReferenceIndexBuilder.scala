@@ -8,13 +8,17 @@ import org.jetbrains.jps.builders.java.{JavaModuleBuildTargetType, JavaSourceRoo
 import org.jetbrains.jps.builders.{BuildTarget, DirtyFilesHolder}
 import org.jetbrains.jps.incremental.ModuleLevelBuilder.ExitCode
 import org.jetbrains.jps.incremental.scala.InitialScalaBuilder.hasScala
-import org.jetbrains.jps.incremental.{BuilderCategory, CompileContext, ModuleBuildTarget, ModuleLevelBuilder}
-import org.jetbrains.plugin.scala.compilerReferences.Builder.rebuildPropertyKey
+import org.jetbrains.jps.incremental.scala.local.LazyCompiledClass
+import org.jetbrains.jps.incremental.{BinaryContent, BuilderCategory, CompileContext, ModuleBuildTarget, ModuleLevelBuilder}
+import org.jetbrains.jps.incremental.{CompiledClass => JpsCompiledClass}
+import org.jetbrains.plugin.scala.compilerReferences.Builder.{rebuildPropertyKey, streamReferencesPropertyKey}
 import org.jetbrains.plugin.scala.compilerReferences.Messages._
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.{ReferenceExtractor, SourceReferences}
 import org.jetbrains.plugins.scala.indices.protocol.CompiledClass
 import org.jetbrains.plugins.scala.indices.protocol.jps.JpsCompilationInfo
 
 import scala.collection.JavaConverters._
+import scala.util.Try
 
 class ScalaCompilerReferenceIndexBuilder extends ModuleLevelBuilder(BuilderCategory.CLASS_POST_PROCESSOR) {
 
@@ -52,6 +56,9 @@ class ScalaCompilerReferenceIndexBuilder extends ModuleLevelBuilder(BuilderCateg
   private[this] val shouldBeNonIncremental: Boolean =
     sys.props.get(rebuildPropertyKey).exists(java.lang.Boolean.valueOf(_))
 
+  private[this] val shouldStreamReferences: Boolean =
+    sys.props.get(streamReferencesPropertyKey).exists(java.lang.Boolean.valueOf(_))
+
   override def build(
     context:          CompileContext,
     chunk:            ModuleChunk,
@@ -59,12 +66,11 @@ class ScalaCompilerReferenceIndexBuilder extends ModuleLevelBuilder(BuilderCateg
     outputConsumer:   ModuleLevelBuilder.OutputConsumer
   ): ExitCode = if (!shouldBeNonIncremental) {
     val affectedModules = chunk.getModules.asScala.filter(hasScala(context, _)).map(_.getName).toSet
+    val outputs         = outputConsumer.getCompiledClasses.values().asScala
 
     val compiledClasses =
-      outputConsumer.getCompiledClasses
-        .values()
-        .iterator()
-        .asScala
+      outputs
+        .iterator
         .map(cc => CompiledClass(cc.getSourceFile, cc.getOutputFile))
         .toSet
 
@@ -82,10 +88,42 @@ class ScalaCompilerReferenceIndexBuilder extends ModuleLevelBuilder(BuilderCateg
       timestamp
     )
 
+    if (shouldStreamReferences) {
+      streamReferences(context, outputs)
+    }
+
     context.processMessage(ChunkCompilationInfo(data))
     ExitCode.OK
   } else ExitCode.OK
 
+  /**
+    * Extracts references from compiled classes and sends them with a message per source,
+    * so that neither the build process nor the IDE holds the references of a whole chunk at once.
+    *
+    * The Scala compiler doesn't pass class contents to JPS: classes it produced ([[LazyCompiledClass]])
+    * are read from the output directory here, only once per build, instead of once more by the IDE.
+    * A source is skipped if any of its classes can't be read, the IDE then parses its classes from disk.
+    */
+  private[this] def streamReferences(context: CompileContext, outputs: Iterable[JpsCompiledClass]): Unit =
+    outputs.groupBy(_.getSourceFile).foreach { case (source, classes) =>
+      val extracted = classes.map { cc =>
+        Try {
+          val content = contentOf(cc)
+          cc.getOutputFile -> ReferenceExtractor.extract(content.getBuffer, content.getOffset, content.getLength)
+        }
+      }
+
+      if (extracted.forall(_.isSuccess)) {
+        context.processMessage(StreamedReferences(Seq(SourceReferences(source, extracted.map(_.get).toMap))))
+      }
+    }
+
+  // the content loaded from disk is not cached in LazyCompiledClass, the class would retain it until the build ends
+  private[this] def contentOf(cc: JpsCompiledClass): BinaryContent = cc match {
+    case lazyClass: LazyCompiledClass => lazyClass.contentWithoutCaching
+    case _                            => cc.getContent
+  }
+
   private[this] def getAllClassesInfo(context: CompileContext): (Set[CompiledClass], Long) = {
     val pd               = context.getProjectDescriptor
     val buildTargetIndex = pd.getBuildTargetIndex
@@ -4,22 +4,88 @@ package local
 import java.lang.ref.SoftReference
 import java.util
 import java.util.Map.Entry
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{CancellationException, CompletableFuture, CompletionException}
+
+import org.jetbrains.jps.incremental.scala.local.Cache.Stats
 
 /**
+ * Bounded LRU cache of softly referenced values.
+ *
+ * Every value is computed at most once at a time: concurrent requests for the same key wait for
+ * the first computation, while requests for other keys are not blocked by it.
+ *
  * @author Pavel Fatin
  */
 class Cache[K, V](capacity: Int) {
   private val lock = new Object()
 
-  private val map = new util.LinkedHashMap[K, SoftReference[V]](capacity, 0.75F, true) {
-    override def removeEldestEntry(eldest: Entry[K, SoftReference[V]]): Boolean = size > capacity
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+  private val evictions = new AtomicLong()
+
+  // guarded by lock, values are computed outside of it
+  private val map = new util.LinkedHashMap[K, Slot](capacity, 0.75F, true) {
+    override def removeEldestEntry(eldest: Entry[K, Slot]): Boolean = {
+      val remove = size > capacity
+      if (remove) evictions.incrementAndGet()
+      remove
+    }
+  }
+
+  def getOrUpdate(key: K)(value: => V): V = {
+    val (slot, computeHere) = lock.synchronized {
+      Option(map.get(key)).filterNot(_.isCollected) match {
+        case Some(existing) =>
+          hits.incrementAndGet()
+          (existing, existing.isComputedBy(Thread.currentThread))
+        case None =>
+          misses.incrementAndGet()
+          val created = new Slot(Thread.currentThread)
+          map.put(key, created)
+          (created, true)
+      }
+    }
+
+    if (computeHere) compute(key, slot, value)
+    else slot.await().getOrElse(getOrUpdate(key)(value))
   }
 
-  def getOrUpdate(key: K)(value: => V): V = lock.synchronized {
-    Option(map.get(key)).flatMap(reference => Option(reference.get())).getOrElse {
+  def stats: Stats = Stats(hits.get, misses.get, evictions.get, lock.synchronized(map.size))
+
+  private def compute(key: K, slot: Slot, value: => V): V =
+    try {
       val v = value
-      map.put(key, new SoftReference(v))
+      slot.complete(v)
       v
+    } catch {
+      case e: Throwable =>
+        lock.synchronized(map.remove(key, slot))
+        slot.fail(e)
+        throw e
     }
+
+  private class Slot(owner: Thread) {
+    private val future = new CompletableFuture[SoftReference[V]]()
+
+    def isComputedBy(thread: Thread): Boolean = !future.isDone && owner == thread
+
+    def isCollected: Boolean = future.isDone && await().isEmpty
+
+    // a recursive computation of the same key may have completed it already
+    def complete(value: V): Unit = future.complete(new SoftReference(value))
+
+    def fail(e: Throwable): Unit = future.completeExceptionally(e)
+
+    // None if the computation failed or the value was garbage-collected
+    def await(): Option[V] =
+      try Option(future.join().get())
+      catch {
+        case _: CompletionException | _: CancellationException => None
+      }
   }
 }
+
+object Cache {
+  case class Stats(hits: Long, misses: Long, evictions: Long, size: Int)
+}
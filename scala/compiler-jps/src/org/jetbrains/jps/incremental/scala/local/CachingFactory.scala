@@ -25,6 +25,12 @@ class CachingFactory(delegate: CompilerFactory, compilersLimit: Int, analysisLim
     }
   }
 
+  def statistics: Seq[(String, Cache.Stats)] = Seq(
+    "compilers" -> compilerCache.stats,
+    "analysis" -> analysisCache.stats,
+    "scalac" -> scalacCache.stats
+  )
+
   def getScalac(sbtData: SbtData, compilerJars: Option[CompilerJars], client: Client): Option[AnalyzingCompiler] = {
     scalacCache.getOrUpdate((sbtData, compilerJars)) {
       delegate.getScalac(sbtData, compilerJars, client)
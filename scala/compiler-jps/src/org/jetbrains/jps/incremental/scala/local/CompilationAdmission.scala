@@ -0,0 +1,85 @@
+package org.jetbrains.jps.incremental.scala
+package local
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+
+import org.jetbrains.jps.incremental.scala.local.CompilationAdmission._
+
+/**
+ * Limits the number of compilations running concurrently in the compile server.
+ *
+ * A compilation is admitted when less than `parallelism` compilations are running
+ * and the free heap is at least `minFreeMemoryPercent` of the maximum heap size.
+ * The first compilation is always admitted, so a single compilation never waits for memory.
+ *
+ * @param memory returns (used, max) heap size in bytes
+ */
+class CompilationAdmission(parallelism: Int,
+                           minFreeMemoryPercent: Int,
+                           memory: () => (Long, Long) = () => heapUsage) {
+
+  private val lock = new ReentrantLock()
+  private val released = lock.newCondition()
+
+  private var running = 0
+
+  def runningCount: Int = withLock(running)
+
+  /**
+   * Waits for admission unless the client is canceled, the body is run in any case
+   * (a canceled compilation is expected to finish quickly).
+   */
+  def admit[T](client: Client)(body: => T): T = {
+    acquire(client)
+    try body
+    finally release()
+  }
+
+  private def acquire(client: Client): Unit = withLock {
+    var reported = false
+    while (running > 0 && !client.isCanceled && !canStartAnother) {
+      if (!reported) {
+        client.progress("Waiting for other compilations to finish...")
+        reported = true
+      }
+      // memory can be released without notifications, so wait with a timeout
+      released.await(WaitIntervalMs, TimeUnit.MILLISECONDS)
+    }
+    running += 1
+  }
+
+  private def release(): Unit = withLock {
+    running -= 1
+    released.signalAll()
+  }
+
+  private def canStartAnother: Boolean = running < parallelism && {
+    val (used, max) = memory()
+    (max - used) * 100 >= max * minFreeMemoryPercent
+  }
+
+  private def withLock[T](body: => T): T = {
+    lock.lock()
+    try body
+    finally lock.unlock()
+  }
+}
+
+object CompilationAdmission {
+  val ParallelismProperty = "scala.compile.server.parallelism"
+  val MinFreeMemoryPercentProperty = "scala.compile.server.min.free.memory.percent"
+
+  private val WaitIntervalMs = 500
+
+  def fromSystemProperties(): CompilationAdmission = {
+    val parallelism = Integer.getInteger(ParallelismProperty, Runtime.getRuntime.availableProcessors)
+    val minFreeMemoryPercent = Integer.getInteger(MinFreeMemoryPercentProperty, 25)
+    new CompilationAdmission(math.max(parallelism, 1), minFreeMemoryPercent)
+  }
+
+  private def heapUsage: (Long, Long) = {
+    val runtime = Runtime.getRuntime
+    (runtime.totalMemory - runtime.freeMemory, runtime.maxMemory)
+  }
+}
@@ -1,27 +1,185 @@
 package org.jetbrains.jps.incremental.scala.local
 
-import java.io.File
-import java.util.concurrent.ConcurrentHashMap
+import java.io._
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.zip.{DeflaterOutputStream, InflaterInputStream, ZipFile}
+import java.{util => ju}
 
+import org.jetbrains.jps.incremental.scala.using
 import sbt.internal.inc.Locate
 import xsbti.compile.DefinesClass
 
+import scala.collection.JavaConverters._
+import scala.util.control.NonFatal
+
+/**
+  * Caches `DefinesClass` of classpath entries between compilations.
+  *
+  * An entry is reused while the size and the modification time of its file stay the same,
+  * so only the changed jars are read again. Entries in memory are softly referenced and their number is bounded,
+  * entries of changed files aren't used anymore and are dropped as the least recently used.
+  * Class names of jars are also stored in a persistent index, which is used after a restart of the compile server
+  * instead of reading the jars.
+  */
 object DefinesClassCache {
-  private var cacheStamp: Long = -1L
-  private val cache = new ConcurrentHashMap[File, DefinesClass]()
+  private[local] case class Stamp(length: Long, lastModified: Long)
+
+  private val MaxCachedEntries = 1000
+
+  private val cache = new Cache[(File, Stamp), DefinesClass](MaxCachedEntries)
+
+  private val index = new ClassNamesIndex(
+    new File(new File(System.getProperty("user.home"), ".idea-build"), "scala-classpath-index"),
+    maxFiles = 2000
+  )
 
   def definesClassFor(file: File): DefinesClass = {
-    Option(cache.get(file)).getOrElse {
-      val newDefines = Locate.definesClass(file)
-      cache.put(file, newDefines)
-      newDefines
+    val stamp = Stamp(file.length, file.lastModified)
+    cache.getOrUpdate((file, stamp))(load(file, stamp))
+  }
+
+  // directories are checked for a class file on every lookup by zinc, there's nothing to index
+  private def load(file: File, stamp: Stamp): DefinesClass =
+    if (file.isFile && isJar(file.getName)) {
+      val classNames = index.read(file, stamp).getOrElse {
+        val names = readClassNames(file)
+        index.write(file, stamp, names)
+        names
+      }
+      new ClassNamesDefinesClass(classNames)
+    }
+    else Locate.definesClass(file)
+
+  private def isJar(name: String): Boolean = name.endsWith(".jar") || name.endsWith(".zip")
+
+  private def readClassNames(jar: File): ju.Set[String] = {
+    val zipFile = new ZipFile(jar, ZipFile.OPEN_READ)
+    try {
+      val names   = new ju.HashSet[String]()
+      val entries = zipFile.entries()
+      while (entries.hasMoreElements) {
+        val name = entries.nextElement().getName
+        if (name.endsWith(ClassExtension))
+          names.add(name.substring(0, name.length - ClassExtension.length).replace('/', '.'))
+      }
+      names
+    } finally zipFile.close()
+  }
+
+  private val ClassExtension = ".class"
+
+  private class ClassNamesDefinesClass(classNames: ju.Set[String]) extends DefinesClass {
+    override def apply(className: String): Boolean = classNames.contains(className)
+  }
+
+  /**
+    * An index file per jar, with sorted class names, each written as the length of the prefix shared with
+    * the previous name and the rest of the name. Files are replaced atomically, as the index may be shared
+    * by several compile servers.
+    *
+    * A read updates the modification time of the index file. When a new file is written,
+    * the least recently used files above `maxFiles` are deleted, as well as temporary files left by killed servers.
+    */
+  private[local] class ClassNamesIndex(directory: File, maxFiles: Int) {
+    import ClassNamesIndex._
+
+    private def indexFile(jar: File): File =
+      new File(directory, s"${jar.getName}-${Integer.toHexString(jar.getAbsolutePath.hashCode)}$IndexExtension")
+
+    def read(jar: File, stamp: Stamp): Option[ju.Set[String]] = {
+      val file = indexFile(jar)
+      if (!file.isFile) return None
+      file.setLastModified(System.currentTimeMillis)
+
+      try using(new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))))) { in =>
+        val upToDate =
+          in.readInt() == Version &&
+            in.readUTF() == jar.getAbsolutePath &&
+            in.readLong() == stamp.length &&
+            in.readLong() == stamp.lastModified
+
+        if (upToDate) {
+          val count    = in.readInt()
+          val names    = new ju.HashSet[String](count * 4 / 3 + 1)
+          var previous = ""
+          for (_ <- 0 until count) {
+            val shared = in.readUnsignedShort()
+            previous = previous.substring(0, shared) + in.readUTF()
+            names.add(previous)
+          }
+          Some(names)
+        } else None
+      } catch {
+        case NonFatal(_) => None
+      }
+    }
+
+    def write(jar: File, stamp: Stamp, names: ju.Set[String]): Unit =
+      try {
+        directory.mkdirs()
+        val file = indexFile(jar)
+        val temp = File.createTempFile(file.getName, TempExtension, directory)
+
+        try {
+          using(new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(temp))))) { out =>
+            out.writeInt(Version)
+            out.writeUTF(jar.getAbsolutePath)
+            out.writeLong(stamp.length)
+            out.writeLong(stamp.lastModified)
+
+            val sorted = names.asScala.toArray.sorted
+            out.writeInt(sorted.length)
+
+            var previous = ""
+            sorted.foreach { name =>
+              val shared = commonPrefixLength(previous, name)
+              out.writeShort(shared)
+              out.writeUTF(name.substring(shared))
+              previous = name
+            }
+          }
+          Files.move(temp.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally temp.delete()
+
+        prune()
+      } catch {
+        // the index is only an optimization
+        case NonFatal(_) =>
+      }
+
+    private[local] def prune(): Unit = {
+      val files = Option(directory.listFiles()).getOrElse(Array.empty[File])
+
+      val staleTempFiles = files.filter { file =>
+        file.getName.endsWith(TempExtension) && file.lastModified < System.currentTimeMillis - TempFileTimeToLiveMs
+      }
+      staleTempFiles.foreach(_.delete())
+
+      val indexFiles = files.filter(_.getName.endsWith(IndexExtension))
+      if (indexFiles.length > maxFiles) {
+        indexFiles
+          .map(file => (file, file.lastModified))
+          .sortBy(-_._2)
+          .drop(maxFiles)
+          .foreach(_._1.delete())
+      }
+    }
+
+    private def commonPrefixLength(s1: String, s2: String): Int = {
+      val max = math.min(s1.length, math.min(s2.length, 0xFFFF))
+      var i   = 0
+      while (i < max && s1.charAt(i) == s2.charAt(i)) i += 1
+      i
     }
   }
 
-  def invalidateCacheIfRequired(stamp: Long) = synchronized {
-    if (stamp != cacheStamp)
-      cache.clear()
+  private object ClassNamesIndex {
+    private val Version = 1
+
+    private val IndexExtension = ".idx"
+    private val TempExtension  = ".tmp"
 
-    cacheStamp = stamp
+    // temporary files are renamed right after they are written
+    private val TempFileTimeToLiveMs = 60 * 60 * 1000L
   }
 }
@@ -13,31 +13,63 @@ import sbt.internal.inc.FileAnalysisStore
 import scala.collection.JavaConverters._
 
 /**
+ * Independent compilations run concurrently, their number is limited by [[CompilationAdmission]].
+ * Compilers are cached by [[CachingFactory]] which doesn't hold a lock while a compiler is created.
+ *
+ * A cached compiler, and the classloader of its Scala instance, may be used by concurrent compilations
+ * of different targets. This is safe because a compiler holds no state of a compilation:
+ *  - both [[SbtCompiler]] and [[IdeaIncrementalCompiler]] run scalac with `CompilerCache.fresh`,
+ *    so each compilation creates its own `Global`, and the reporter, progress and logger are per call;
+ *  - scalac keeps its state in `Global` instances, not in its classes, which is why sbt also shares
+ *    a Scala instance between projects compiled in parallel;
+ *  - the analysis store of a target is only used under the lock of the target.
+ *
  * @author Pavel Fatin
  */
 class LocalServer extends Server {
   private var cachedCompilerFactory: Option[CompilerFactory] = None
   private val lock = new Object()
 
+  private val admission = CompilationAdmission.fromSystemProperties()
+
+  // compilations of the same target share analysis and output, so they must not run concurrently;
+  // locks are striped, so there is nothing to clean up for targets which are not compiled anymore
+  private val targetLocks = Array.fill(LocalServer.TargetLockStripes)(new Object())
+
   def compile(sbtData: SbtData, compilerData: CompilerData, compilationData: CompilationData, client: Client): ExitCode = {
-    val compiler = try lock.synchronized {
-      val compilerFactory = compilerFactoryFrom(sbtData, compilerData)
+    if (!client.isCanceled) {
+      // a compiler is looked up or created only when admitted: creating one loads a whole scalac into the heap
+      admission.admit(client) {
+        val compiler = createCompiler(sbtData, compilerData, compilationData, client)
+
+        targetLock(compilationData.cacheFile).synchronized {
+          if (!client.isCanceled) {
+            compiler.compile(compilationData, client)
+          }
+        }
+      }
+    }
+
+    client.compilationEnd()
+    ExitCode.OK
+  }
+
+  private def createCompiler(sbtData: SbtData, compilerData: CompilerData, compilationData: CompilationData, client: Client): Compiler =
+    try {
+      val compilerFactory = lock.synchronized(compilerFactoryFrom(sbtData, compilerData))
 
       client.progress("Instantiating compiler...")
-      compilerFactory.createCompiler(compilerData, client, LocalServer.createAnalysisStore)
+      val compiler = compilerFactory.createCompiler(compilerData, client, LocalServer.createAnalysisStore)
+      LocalServer.logCacheStatistics(compilerFactory)
+      compiler
     } catch {
       case e: Throwable =>
         compilationData.sources.foreach(f => client.sourceStarted(f.toString))
         throw e
     }
 
-    if (!client.isCanceled) {
-      compiler.compile(compilationData, client)
-    }
-
-    client.compilationEnd()
-    ExitCode.OK
-  }
+  private def targetLock(cacheFile: File): Object =
+    targetLocks(Math.floorMod(cacheFile.hashCode, targetLocks.length))
 
   private def compilerFactoryFrom(sbtData: SbtData, compilerData: CompilerData): CompilerFactory = cachedCompilerFactory.getOrElse {
     val cf = ServiceLoader.load(classOf[CompilerFactoryService])
@@ -52,7 +84,17 @@ class LocalServer extends Server {
 }
 
 object LocalServer {
+  private val TargetLockStripes = 64
+
   private val Log: JpsLogger = JpsLogger.getInstance(LocalServer.getClass.getName)
+  private def logCacheStatistics(factory: CompilerFactory): Unit = factory match {
+    case caching: CachingFactory if Log.isDebugEnabled =>
+      caching.statistics.foreach { case (name, stats) =>
+        Log.debug(s"Cache of $name: $stats")
+      }
+    case _ =>
+  }
+
   private def createAnalysisStore(cacheFile: File): AnalysisStore = {
     val store = FileAnalysisStore.binary(cacheFile)
     AnalysisStore.getThreadSafeStore(AnalysisStore.getCachedStore(store))
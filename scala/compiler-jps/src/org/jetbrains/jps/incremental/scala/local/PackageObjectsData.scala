@@ -4,80 +4,30 @@ package local
 import java.io._
 
 import org.jetbrains.jps.incremental.CompileContext
-import org.jetbrains.jps.incremental.messages.{BuildMessage, CompilerMessage}
-
-import scala.collection.mutable
 
 /**
+  * Package objects which depend on base sources, i.e. sources which contain definitions inherited by package objects.
+  * The data is kept in [[ScalaBuildStorage]], so only the entries of compiled sources are read and written.
+  *
   * @author Nikolay.Tropin
   */
-class PackageObjectsData extends Serializable {
-
-  private val baseSourceToPackageObjects = mutable.HashMap[File, Set[File]]()
-  private val packageObjectToBaseSources = mutable.HashMap[File, Set[File]]()
+class PackageObjectsData private(storage: ScalaBuildStorage) {
 
-  def add(baseSource: File, packageObject: File): Unit = synchronized {
-    baseSourceToPackageObjects.update(baseSource, baseSourceToPackageObjects.getOrElse(baseSource, Set.empty) + packageObject)
-    packageObjectToBaseSources.update(packageObject, packageObjectToBaseSources.getOrElse(packageObject, Set.empty) + baseSource)
-  }
+  def add(baseSource: File, packageObject: File): Unit =
+    storage.addPackageObject(baseSource, packageObject)
 
-  def invalidatedPackageObjects(sources: Seq[File]): Set[File] = synchronized {
-    sources.to[Set].flatMap(f => baseSourceToPackageObjects.getOrElse(f, Set.empty)) -- sources
-  }
+  def invalidatedPackageObjects(sources: Seq[File]): Set[File] =
+    sources.to[Set].flatMap(storage.packageObjectsOf) -- sources
 
-  def clear(): Unit = synchronized {
-    baseSourceToPackageObjects.clear()
-    packageObjectToBaseSources.clear()
-  }
+  def clear(): Unit = storage.clearPackageObjects()
 
-  def save(context: CompileContext): Unit = {
-    val file = PackageObjectsData.storageFile(context)
-    PackageObjectsData.synchronized {
-      using(new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) { stream =>
-        stream.writeObject(this)
-        stream.flush()
-      }
-    }
-  }
+  def save(context: CompileContext): Unit = storage.flush()
 }
 
 object PackageObjectsData {
 
   val packageObjectClassName: String = "package$"
 
-  private val fileName = "packageObjects.dat"
-
-  private val instances = mutable.HashMap[File, PackageObjectsData]()
-
-  private def storageFile(context: CompileContext): File = {
-    val storageRoot = context.getProjectDescriptor.dataManager.getDataPaths.getDataStorageRoot
-    new File(storageRoot, fileName)
-  }
-
-  def getFor(context: CompileContext): PackageObjectsData = {
-    def warning(message: String) = {
-      context.processMessage(new CompilerMessage("scala", BuildMessage.Kind.WARNING, message))
-    }
-
-    def tryToReadData(file: File) = {
-      synchronized {
-        try {
-          using(new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) { stream =>
-            stream.readObject().asInstanceOf[PackageObjectsData]
-          }
-        } catch {
-          case e: Exception =>
-            warning(s"Could not read data about package objects dependencies: \n${e.getMessage}")
-            file.delete()
-            new PackageObjectsData()
-        }
-      }
-    }
-
-    def getOrLoadInstance(file: File) = instances.getOrElseUpdate(file, tryToReadData(file))
-
-    Option(storageFile(context))
-      .filter(_.exists)
-      .fold(new PackageObjectsData())(getOrLoadInstance)
-  }
-}
\ No newline at end of file
+  def getFor(context: CompileContext): PackageObjectsData =
+    new PackageObjectsData(ScalaBuildStorage.getFor(context))
+}
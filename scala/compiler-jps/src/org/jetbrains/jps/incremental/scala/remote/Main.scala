@@ -3,6 +3,7 @@ package org.jetbrains.jps.incremental.scala.remote
 import java.io._
 import java.nio.charset.StandardCharsets
 import java.nio.file.{Files, Path, Paths}
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.{Base64, Timer, TimerTask}
 
 import com.martiansoftware.nailgun.NGContext
@@ -33,26 +34,38 @@ object Main {
    */
   def nailMain(context: NGContext): Unit = {
     cancelShutdown()
-    make(context.getArgs.toSeq, context.out, context.getNGServer.getPort, standalone = false)
+    val binaryEvents = EventCodec.supportsBinaryFormat(Option(context.getEnv.getProperty(EventCodec.EnvironmentVariable)))
+    make(context.getArgs.toSeq, context.out, context.getNGServer.getPort, standalone = false, binaryEvents)
     resetShutdownTimer(context)
   }
 
   // Started by NonServerRunner
   def main(args: Array[String]): Unit = {
-    make(args, System.out, -1, standalone = true)
+    make(args, System.out, -1, standalone = true, binaryEvents = false)
   }
 
-  private def make(argsEncoded: Seq[String], out: PrintStream, port: Int, standalone: Boolean): Unit = {
+  // Binary events are written as raw chunks, the client distinguishes them from Base64-encoded ones by the first byte.
+  // Standalone runner reads events as text, so it always gets Base64-encoded serialized events.
+  private[remote] def make(argsEncoded: Seq[String], out: PrintStream, port: Int, standalone: Boolean, binaryEvents: Boolean,
+                           canceled: => Boolean = false): Unit = {
     var hasErrors = false
 
     val client: EventGeneratingClient = {
-      val eventHandler = (event: Event) => {
-        val encoded = Base64.getEncoder.encodeToString(event.toBytes)
-        val encodedNormalized = if (standalone && !encoded.endsWith("=")) encoded + "=" else encoded
-        val bytes = encodedNormalized.getBytes
-        out.write(bytes)
-      }
-      new EventGeneratingClient(eventHandler, out.checkError) {
+      val eventHandler: Event => Unit =
+        if (binaryEvents) {
+          val encoder = new EventCodec.Encoder
+          (event: Event) => encoder.synchronized {
+            out.write(encoder.encode(event))
+          }
+        } else {
+          (event: Event) => {
+            val encoded = Base64.getEncoder.encodeToString(event.toBytes)
+            val encodedNormalized = if (standalone && !encoded.endsWith("=")) encoded + "=" else encoded
+            val bytes = encodedNormalized.getBytes
+            out.write(bytes)
+          }
+        }
+      new EventGeneratingClient(eventHandler, out.checkError || canceled) {
         override def error(text: String, source: Option[File], line: Option[Long], column: Option[Long]): Unit = {
           hasErrors = true
           super.error(text, source, line, column)
@@ -65,9 +78,8 @@ object Main {
       }
     }
 
-    val oldOut = System.out
     // Suppress any stdout data, interpret such data as error
-    System.setOut(System.err)
+    suppressStdout()
 
     try {
       val args: Arguments = decodeArguments(argsEncoded)
@@ -97,7 +109,27 @@ object Main {
     } finally {
       client.processingEnd()
       client.close()
-      System.setOut(oldOut)
+      restoreStdout()
+    }
+  }
+
+  // Requests may run concurrently, so the original stdout is saved by the first one and restored by the last one.
+  private var suppressedOut: PrintStream = _
+  private var stdoutSuppressions = 0
+
+  private def suppressStdout(): Unit = synchronized {
+    if (stdoutSuppressions == 0) {
+      suppressedOut = System.out
+      System.setOut(System.err)
+    }
+    stdoutSuppressions += 1
+  }
+
+  private def restoreStdout(): Unit = synchronized {
+    stdoutSuppressions -= 1
+    if (stdoutSuppressions == 0) {
+      System.setOut(suppressedOut)
+      suppressedOut = null
     }
   }
 
@@ -115,6 +147,9 @@ object Main {
   private def tokenPathFor(port: Int): Path =
     Paths.get(System.getProperty("user.home"), ".idea-build", "tokens", port.toString)
 
+  // token is re-read only when the file is modified
+  @volatile private var cachedToken: Option[(Path, Long, String)] = None
+
   @throws(classOf[TokenVerificationException])
   private def compareTokenWith(path: Path, actualToken: String): Unit = {
     if (!path.toFile.exists) {
@@ -122,7 +157,14 @@ object Main {
     }
 
     val expectedToken = try {
-      new String(Files.readAllBytes(path))
+      val modified = Files.getLastModifiedTime(path).toMillis
+      cachedToken match {
+        case Some((`path`, `modified`, token)) => token
+        case _ =>
+          val token = new String(Files.readAllBytes(path))
+          cachedToken = Some((path, modified, token))
+          token
+      }
     } catch {
       case _: IOException =>
         throw new TokenVerificationException("Cannot read token: " + path)
@@ -135,15 +177,18 @@ object Main {
 
   private class TokenVerificationException(message: String) extends Exception(message)
 
-  private def cancelShutdown(): Unit = synchronized {
+  private[remote] def cancelShutdown(): Unit = synchronized {
     if (shutdownTimer != null) {
       shutdownTimer.cancel()
       shutdownTimer = null
     }
   }
 
-  private def resetShutdownTimer(context: NGContext): Unit = {
-    val delay = Option(System.getProperty("shutdown.delay")).map(_.toInt)
+  // the server is not shut down while there are open sessions
+  private[remote] val openSessions = new AtomicInteger()
+
+  private[remote] def resetShutdownTimer(context: NGContext): Unit = {
+    val delay = Option(System.getProperty("shutdown.delay")).map(_.toInt).filter(_ => openSessions.get == 0)
     delay.foreach { t =>
       val delayMs = t * 60 * 1000
       val shutdownTask = new TimerTask {
@@ -0,0 +1,108 @@
+package org.jetbrains.jps.incremental.scala
+package remote
+
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.concurrent.{ConcurrentHashMap, ExecutorService, Executors, ThreadFactory, TimeUnit}
+
+import com.martiansoftware.nailgun.NGContext
+import org.jetbrains.jps.incremental.scala.remote.CompileServerSession.{Frame, Response}
+
+/**
+ * Nailgun Nail serving a [[CompileServerSession]]: reads request frames from stdin until the client disconnects,
+ * runs every request in a separate thread and writes its events to stdout, prefixed with the request id.
+ *
+ * @see [[org.jetbrains.plugins.scala.nailgun.NailgunRunner]]
+ */
+object SessionMain {
+
+  def nailMain(context: NGContext): Unit = {
+    Main.cancelShutdown()
+    Main.openSessions.incrementAndGet()
+    try {
+      val binaryEvents = EventCodec.supportsBinaryFormat(Option(context.getEnv.getProperty(EventCodec.EnvironmentVariable)))
+      new Session(context, binaryEvents).serve()
+    } finally {
+      Main.openSessions.decrementAndGet()
+      Main.resetShutdownTimer(context)
+    }
+  }
+
+  private class Session(context: NGContext, binaryEvents: Boolean) {
+    private val out = context.out
+    private val input = new DataInputStream(context.in)
+
+    private val running = new ConcurrentHashMap[Int, AtomicBoolean]()
+    private val executor: ExecutorService = Executors.newCachedThreadPool(RequestThreadFactory)
+
+    def serve(): Unit = {
+      writeResponse(0, Array.emptyByteArray, 0, 0)
+
+      try {
+        while (!out.checkError) {
+          val id = input.readInt()
+          val frameType = input.readByte()
+          val arguments = Seq.fill(input.readInt()) {
+            val bytes = new Array[Byte](input.readInt())
+            input.readFully(bytes)
+            new String(bytes, StandardCharsets.UTF_8)
+          }
+
+          frameType match {
+            case Frame.Request =>
+              val canceled = new AtomicBoolean()
+              running.put(id, canceled)
+              executor.execute(() => run(id, arguments, canceled))
+            case Frame.Cancel =>
+              Option(running.get(id)).foreach(_.set(true))
+            case _ =>
+              throw new IOException(s"Unknown frame type: $frameType")
+          }
+        }
+      } catch {
+        // the client has disconnected
+        case _: IOException =>
+      } finally {
+        running.values.forEach(_.set(true))
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+      }
+    }
+
+    private def run(id: Int, arguments: Seq[String], canceled: AtomicBoolean): Unit =
+      try {
+        val requestOut = new PrintStream(new ResponseOutputStream(id), true)
+        Main.make(arguments, requestOut, context.getNGServer.getPort, standalone = false, binaryEvents, canceled.get)
+      } finally {
+        running.remove(id)
+        writeResponse(id, Array.emptyByteArray, 0, 0)
+      }
+
+    private def writeResponse(id: Int, payload: Array[Byte], offset: Int, length: Int): Unit = out.synchronized {
+      out.write(Response.write(id, payload, offset, length))
+      out.flush()
+    }
+
+    // every write becomes a separate stdout chunk, just like in a one-shot connection
+    private class ResponseOutputStream(id: Int) extends OutputStream {
+      override def write(b: Int): Unit = write(Array(b.toByte), 0, 1)
+
+      // an empty response completes the request
+      override def write(b: Array[Byte], off: Int, len: Int): Unit = if (len > 0) {
+        writeResponse(id, b, off, len)
+        if (out.checkError) throw new IOException("Compile server session was closed")
+      }
+    }
+  }
+
+  private object RequestThreadFactory extends ThreadFactory {
+    private val counter = new AtomicInteger()
+
+    override def newThread(r: Runnable): Thread = {
+      val thread = new Thread(r, s"compile-server-session-request-${counter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }
+  }
+}
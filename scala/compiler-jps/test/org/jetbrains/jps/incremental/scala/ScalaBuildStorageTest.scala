@@ -0,0 +1,77 @@
+package org.jetbrains.jps.incremental.scala
+
+import java.io.File
+import java.nio.file.Files
+
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+class ScalaBuildStorageTest {
+
+  private var root: File = _
+
+  private val base = new File("/project/src/a/Base.scala")
+  private val other = new File("/project/src/b/Other.scala")
+  private val first = new File("/project/src/a/package.scala")
+  private val second = new File("/project/src/a/b/package.scala")
+
+  @Before
+  def setUp(): Unit = {
+    root = Files.createTempDirectory("scala-build-storage").toFile
+  }
+
+  @After
+  def tearDown(): Unit = FileUtil.delete(root)
+
+  private def withStorage[T](body: ScalaBuildStorage => T): T = {
+    val storage = new ScalaBuildStorage(root)
+    try body(storage)
+    finally storage.close()
+  }
+
+  @Test
+  def appendedIdsAreReadTogether(): Unit = withStorage { storage =>
+    storage.addPackageObject(base, first)
+    storage.addPackageObject(base, second)
+    storage.addPackageObject(other, first)
+
+    assertEquals(Set(first, second), storage.packageObjectsOf(base))
+    assertEquals(Set(first), storage.packageObjectsOf(other))
+    assertEquals(Set.empty, storage.packageObjectsOf(first))
+  }
+
+  @Test
+  def existingIdIsNotAppendedAgain(): Unit = withStorage { storage =>
+    storage.addPackageObject(base, first)
+    storage.addPackageObject(base, first)
+    storage.addPackageObject(base, second)
+
+    assertEquals(Set(first, second), storage.packageObjectsOf(base))
+  }
+
+  @Test
+  def appendedIdsAreReadAfterReopening(): Unit = {
+    withStorage { storage =>
+      storage.addPackageObject(base, first)
+    }
+    withStorage { storage =>
+      storage.addPackageObject(base, second)
+      storage.flush()
+    }
+
+    withStorage { storage =>
+      assertEquals(Set(first, second), storage.packageObjectsOf(base))
+    }
+  }
+
+  @Test
+  def clearPackageObjects(): Unit = withStorage { storage =>
+    storage.addPackageObject(base, first)
+    storage.clearPackageObjects()
+    assertEquals(Set.empty, storage.packageObjectsOf(base))
+
+    storage.addPackageObject(base, second)
+    assertEquals(Set(second), storage.packageObjectsOf(base))
+  }
+}
@@ -0,0 +1,101 @@
+package org.jetbrains.jps.incremental.scala
+package local
+
+import java.io.File
+import java.nio.file.Files
+import java.{util => ju}
+
+import org.jetbrains.jps.incremental.scala.local.DefinesClassCache.{ClassNamesIndex, Stamp}
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+import scala.collection.JavaConverters._
+
+class ClassNamesIndexTest {
+
+  private var directory: File = _
+
+  private val names = Set("a.A", "a.A$", "a.A$Inner", "a.b.B", "c.C").asJava
+  private val stamp = Stamp(100L, 12345L)
+
+  @Before
+  def setUp(): Unit = {
+    directory = Files.createTempDirectory("scala-classpath-index").toFile
+  }
+
+  @After
+  def tearDown(): Unit = {
+    Option(directory.listFiles()).foreach(_.foreach(_.delete()))
+    directory.delete()
+  }
+
+  private def jar(name: String) = new File(s"/libraries/$name.jar")
+
+  private def indexFiles: Seq[File] = directory.listFiles().filter(_.getName.endsWith(".idx")).toSeq
+
+  @Test
+  def roundTrip(): Unit = {
+    val index = new ClassNamesIndex(directory, maxFiles = 10)
+    index.write(jar("foo"), stamp, names)
+
+    assertEquals(Some(new ju.HashSet(names)), index.read(jar("foo"), stamp))
+    assertEquals(None, index.read(jar("bar"), stamp))
+  }
+
+  @Test
+  def staleStamp(): Unit = {
+    val index = new ClassNamesIndex(directory, maxFiles = 10)
+    index.write(jar("foo"), stamp, names)
+
+    assertEquals(None, index.read(jar("foo"), stamp.copy(lastModified = stamp.lastModified + 1)))
+    assertEquals(None, index.read(jar("foo"), stamp.copy(length = stamp.length + 1)))
+  }
+
+  @Test
+  def corruptedFile(): Unit = {
+    val index = new ClassNamesIndex(directory, maxFiles = 10)
+    index.write(jar("foo"), stamp, names)
+
+    val Seq(file) = indexFiles
+    Files.write(file.toPath, Array[Byte](1, 2, 3))
+    assertEquals(None, index.read(jar("foo"), stamp))
+
+    // the index is written again after a failed read
+    index.write(jar("foo"), stamp, names)
+    assertEquals(Some(new ju.HashSet(names)), index.read(jar("foo"), stamp))
+  }
+
+  @Test
+  def leastRecentlyUsedFilesArePruned(): Unit = {
+    val index = new ClassNamesIndex(directory, maxFiles = 2)
+    index.write(jar("old"), stamp, names)
+    index.write(jar("used"), stamp, names)
+
+    val hourAgo = System.currentTimeMillis - 60 * 60 * 1000L
+    indexFiles.foreach(_.setLastModified(hourAgo))
+    // a read marks the index as used
+    assertTrue(index.read(jar("used"), stamp).isDefined)
+
+    index.write(jar("new"), stamp, names)
+
+    assertEquals(2, indexFiles.size)
+    assertEquals(None, index.read(jar("old"), stamp))
+    assertTrue(index.read(jar("used"), stamp).isDefined)
+    assertTrue(index.read(jar("new"), stamp).isDefined)
+  }
+
+  @Test
+  def staleTemporaryFilesArePruned(): Unit = {
+    val index = new ClassNamesIndex(directory, maxFiles = 10)
+    val stale = new File(directory, "foo.jar-1234.idx123.tmp")
+    val fresh = new File(directory, "bar.jar-1234.idx456.tmp")
+    assertTrue(stale.createNewFile())
+    assertTrue(fresh.createNewFile())
+    stale.setLastModified(System.currentTimeMillis - 2 * 60 * 60 * 1000L)
+
+    index.prune()
+
+    assertFalse(stale.exists())
+    assertTrue(fresh.exists())
+  }
+}
@@ -0,0 +1,133 @@
+package org.jetbrains.jps.incremental.scala
+package local
+
+import java.util.concurrent.{Callable, CountDownLatch, Executors, Future, TimeUnit}
+
+import org.junit.Assert._
+import org.junit.{After, Test}
+
+class CompilationAdmissionTest {
+
+  private val executor = Executors.newCachedThreadPool()
+
+  // (used, max) heap size
+  @volatile private var heap: (Long, Long) = (10L, 100L)
+
+  private val LowMemory = (90L, 100L)
+  private val EnoughMemory = (10L, 100L)
+
+  @After
+  def tearDown(): Unit = executor.shutdownNow()
+
+  private def admission(parallelism: Int) =
+    new CompilationAdmission(parallelism, minFreeMemoryPercent = 25, memory = () => heap)
+
+  @Test
+  def firstCompilationIsAdmittedUnderLowMemory(): Unit = {
+    heap = LowMemory
+    val client = new ProgressClient
+
+    assertEquals("compiled", admission(parallelism = 2).admit(client)("compiled"))
+    assertTrue(client.progressMessages.isEmpty)
+  }
+
+  @Test
+  def waitsForReleaseUnderLowMemory(): Unit = {
+    heap = LowMemory
+    val admission = this.admission(parallelism = 2)
+
+    val first = new RunningCompilation(admission)
+    first.awaitStarted()
+
+    val secondClient = new ProgressClient
+    val second = new RunningCompilation(admission, secondClient)
+    assertFalse(second.isStarted(timeoutMs = 1000))
+    assertEquals(Seq("Waiting for other compilations to finish..."), secondClient.progressMessages)
+
+    first.finish()
+    second.awaitStarted()
+    second.finish()
+    assertEquals(0, admission.runningCount)
+  }
+
+  @Test
+  def admittedWhenMemoryIsFreed(): Unit = {
+    heap = LowMemory
+    val admission = this.admission(parallelism = 2)
+
+    val first = new RunningCompilation(admission)
+    first.awaitStarted()
+    val second = new RunningCompilation(admission)
+    assertFalse(second.isStarted(timeoutMs = 200))
+
+    // memory can be freed without a release
+    heap = EnoughMemory
+    second.awaitStarted()
+    assertEquals(2, admission.runningCount)
+
+    first.finish()
+    second.finish()
+  }
+
+  @Test
+  def parallelismLimit(): Unit = {
+    heap = EnoughMemory
+    val admission = this.admission(parallelism = 1)
+
+    val first = new RunningCompilation(admission)
+    first.awaitStarted()
+    val second = new RunningCompilation(admission)
+    assertFalse(second.isStarted(timeoutMs = 200))
+
+    first.finish()
+    second.awaitStarted()
+    second.finish()
+  }
+
+  @Test
+  def canceledCompilationDoesNotWait(): Unit = {
+    heap = LowMemory
+    val admission = this.admission(parallelism = 2)
+
+    val first = new RunningCompilation(admission)
+    first.awaitStarted()
+
+    val canceled = new ProgressClient {
+      override def isCanceled: Boolean = true
+    }
+    assertEquals("canceled", admission.admit(canceled)("canceled"))
+
+    first.finish()
+  }
+
+  private class RunningCompilation(admission: CompilationAdmission, client: Client = new ProgressClient) {
+    private val started = new CountDownLatch(1)
+    private val finished = new CountDownLatch(1)
+
+    private val result: Future[Unit] = executor.submit(new Callable[Unit] {
+      override def call(): Unit = admission.admit(client) {
+        started.countDown()
+        finished.await()
+      }
+    })
+
+    def isStarted(timeoutMs: Long): Boolean = started.await(timeoutMs, TimeUnit.MILLISECONDS)
+
+    def awaitStarted(): Unit = assertTrue("The compilation must be admitted", isStarted(timeoutMs = 10000))
+
+    def finish(): Unit = {
+      finished.countDown()
+      result.get(10, TimeUnit.SECONDS)
+    }
+  }
+
+  private class ProgressClient extends DummyClient {
+    private var messages = List.empty[String]
+
+    def progressMessages: Seq[String] = synchronized(messages.reverse)
+
+    override def progress(text: String, done: Option[Float]): Unit = synchronized {
+      messages = text :: messages
+    }
+  }
+}
@@ -25,6 +25,13 @@ class LazyCompiledClass(outputFile: File, sourceFile: File, className: String)
     }
   }
 
+  /**
+   * The content for a one-off read: if it isn't set or loaded yet, it's read from the output file without being kept.
+   */
+  def contentWithoutCaching: BinaryContent =
+    if (contentIsSet) super.getContent
+    else loadedContent.getOrElse(new BinaryContent(FileUtil.loadFileBytes(outputFile)))
+
   override def setContent(content: BinaryContent) {
     super.setContent(content)
     loadedContent = None
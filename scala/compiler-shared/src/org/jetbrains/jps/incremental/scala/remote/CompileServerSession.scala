@@ -0,0 +1,240 @@
+package org.jetbrains.jps.incremental.scala
+package remote
+
+import java.io._
+import java.net.{InetAddress, Socket}
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, LinkedBlockingQueue, TimeUnit}
+
+import com.martiansoftware.nailgun.NGConstants
+import org.jetbrains.jps.incremental.scala.remote.CompileServerSession._
+
+import scala.annotation.tailrec
+
+/**
+ * Long-lived connection to the compile server which carries many, possibly concurrent, requests.
+ *
+ * The session is a single nailgun command ([[CompileServerSession.Alias]]) which runs until the client disconnects.
+ * Requests and cancellations are written as stdin chunks: request id, frame type and, for requests, the arguments.
+ * The server replies with stdout chunks: request id followed by an event, or by nothing when the request is completed.
+ * Events are encoded in the same way as in a one-shot connection, see [[RemoteResourceOwner]].
+ *
+ * The reader thread only routes responses to their requests. Events are processed by the thread which sent
+ * the request, as in a one-shot connection: events of a request stay in order, and a slow client of one request
+ * doesn't delay the others.
+ */
+class CompileServerSession private(socket: Socket, output: DataOutputStream, input: DataInputStream) {
+  private val requestIds = new AtomicInteger()
+  private val requests = new ConcurrentHashMap[Int, Request]()
+
+  @volatile private var failure: Throwable = _
+
+  private val reader = new Thread(new Runnable {
+    override def run(): Unit = readResponses()
+  }, s"Compile server session ${socket.getPort}")
+  reader.setDaemon(true)
+  reader.start()
+
+  def isAlive: Boolean = failure == null
+
+  /**
+   * Processes events of the request until it's completed by the server,
+   * sends a cancellation frame when the client is canceled.
+   */
+  def send(arguments: Seq[String], client: Client): Unit = {
+    if (!isAlive) {
+      throw new IOException("Compile server session was closed", failure)
+    }
+
+    val id = requestIds.incrementAndGet()
+    val request = new Request(client)
+    requests.put(id, request)
+
+    val completed = try {
+      writeFrame(id, Frame.Request, arguments)
+
+      var cancellationSent = false
+      var last: Option[Message] = None
+      while (last.isEmpty) {
+        request.poll(CancellationCheckIntervalMs) match {
+          case Some(Payload(payload)) => request.process(payload)
+          // the abort message can be missed if the session failed before the request was registered
+          case None if !isAlive => last = Some(Aborted)
+          case other => last = other
+        }
+        if (!cancellationSent && client.isCanceled) {
+          writeFrame(id, Frame.Cancel, Seq.empty)
+          cancellationSent = true
+        }
+      }
+      last.contains(Completed)
+    } finally {
+      requests.remove(id)
+    }
+
+    if (!completed) {
+      throw new IOException("Compile server session was closed", failure)
+    }
+  }
+
+  def close(): Unit = fail(new EOFException("Compile server session was closed by the client"))
+
+  private def writeFrame(id: Int, frameType: Byte, arguments: Seq[String]): Unit = {
+    val buffer = new ByteArrayOutputStream()
+    val data = new DataOutputStream(buffer)
+    data.writeInt(id)
+    data.writeByte(frameType)
+    data.writeInt(arguments.size)
+    arguments.foreach { argument =>
+      val bytes = argument.getBytes(StandardCharsets.UTF_8)
+      data.writeInt(bytes.length)
+      data.write(bytes)
+    }
+    data.flush()
+
+    try {
+      output.synchronized {
+        Chunk(NGConstants.CHUNKTYPE_STDIN.toChar, buffer.toByteArray).writeTo(output)
+        output.flush()
+      }
+    } catch {
+      case e: IOException =>
+        fail(e)
+        throw e
+    }
+  }
+
+  private def readResponses(): Unit =
+    try {
+      while (isAlive) {
+        Chunk.readFrom(input) match {
+          case Chunk(NGConstants.CHUNKTYPE_STDOUT, data) =>
+            val (id, payload) = Response.read(data)
+            Option(requests.get(id)).foreach { request =>
+              request.offer(if (payload.isEmpty) Completed else Payload(payload))
+            }
+          case Chunk(NGConstants.CHUNKTYPE_EXIT, _) =>
+            throw new EOFException("Compile server session was closed by the server")
+          // Stderr output can't be attributed to a request, input requests and heartbeats are not needed:
+          // frames are sent as soon as they are ready.
+          case _ =>
+        }
+      }
+    } catch {
+      case e: IOException => fail(e)
+    }
+
+  private def fail(e: Throwable): Unit = synchronized {
+    if (failure == null) {
+      failure = e
+      requests.values.forEach(_.offer(Aborted))
+      try socket.close()
+      catch {
+        case _: IOException =>
+      }
+    }
+  }
+}
+
+object CompileServerSession {
+  val Alias = "compile-server-session"
+
+  // sessions are opt-in, one-shot connections are used otherwise
+  val EnabledProperty = "scala.compile.server.session"
+
+  def isEnabled: Boolean = java.lang.Boolean.getBoolean(EnabledProperty)
+
+  private val CancellationCheckIntervalMs = 100
+
+  private val sessions = new ConcurrentHashMap[(InetAddress, Int), CompileServerSession]()
+
+  /**
+   * Reuses a live session or opens a new one with the given handshake chunks.
+   * Returns None if the server can't be connected or doesn't accept the session.
+   *
+   * The connection is opened outside of the sessions map, so a slow handshake doesn't block other ports.
+   * If a concurrent caller publishes its session first, that session is used and the new one is closed.
+   */
+  def getOrOpen(address: InetAddress, port: Int)(handshake: => Seq[Chunk]): Option[CompileServerSession] = {
+    val key = (address, port)
+    Option(sessions.get(key)).filter(_.isAlive).orElse {
+      try {
+        Some(publish(key, open(address, port, handshake)))
+      } catch {
+        case _: IOException => None
+      }
+    }
+  }
+
+  @tailrec
+  private def publish(key: (InetAddress, Int), opened: CompileServerSession): CompileServerSession =
+    sessions.putIfAbsent(key, opened) match {
+      case null => opened
+      case existing if existing.isAlive =>
+        opened.close()
+        existing
+      case existing =>
+        if (sessions.replace(key, existing, opened)) opened
+        else publish(key, opened)
+    }
+
+  private def open(address: InetAddress, port: Int, handshake: Seq[Chunk]): CompileServerSession = {
+    val socket = new Socket(address, port)
+    try {
+      val output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))
+      handshake.foreach(_.writeTo(output))
+      output.flush()
+
+      val input = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+      awaitAcceptance(input)
+
+      new CompileServerSession(socket, output, input)
+    } catch {
+      case e: IOException =>
+        socket.close()
+        throw e
+    }
+  }
+
+  // the server confirms a session with an empty response to the request 0
+  private def awaitAcceptance(input: DataInputStream): Unit = Chunk.readFrom(input) match {
+    case Chunk(NGConstants.CHUNKTYPE_STDOUT, data) if data.length == Response.HeaderSize && Response.read(data)._1 == 0 =>
+    case Chunk(NGConstants.CHUNKTYPE_SENDINPUT, _) => awaitAcceptance(input)
+    case Chunk(kind, _) => throw new IOException(s"Compile server session is not accepted: $kind")
+  }
+
+  private[remote] object Frame {
+    final val Request: Byte = 0
+    final val Cancel: Byte = 1
+  }
+
+  private[remote] object Response {
+    final val HeaderSize = 4
+
+    def write(id: Int, payload: Array[Byte], offset: Int, length: Int): Array[Byte] =
+      ByteBuffer.allocate(HeaderSize + length).putInt(id).put(payload, offset, length).array()
+
+    def read(data: Array[Byte]): (Int, Array[Byte]) =
+      (ByteBuffer.wrap(data).getInt, java.util.Arrays.copyOfRange(data, HeaderSize, data.length))
+  }
+
+  private sealed trait Message
+  private final case class Payload(data: Array[Byte]) extends Message
+  private case object Completed extends Message
+  private case object Aborted extends Message
+
+  private class Request(client: Client) {
+    private val processor = new ClientEventProcessor(client)
+    private val decoder = new EventCodec.Decoder
+    private val messages = new LinkedBlockingQueue[Message]()
+
+    // called by the reader thread
+    def offer(message: Message): Unit = messages.offer(message)
+
+    def poll(timeoutMs: Int): Option[Message] = Option(messages.poll(timeoutMs, TimeUnit.MILLISECONDS))
+
+    def process(payload: Array[Byte]): Unit = RemoteResourceOwner.processEvent(payload, decoder, processor, client)
+  }
+}
@@ -0,0 +1,263 @@
+package org.jetbrains.jps.incremental.scala
+package remote
+
+import java.io._
+import java.nio.charset.StandardCharsets
+
+import org.jetbrains.jps.incremental.messages.BuildMessage.Kind
+
+import scala.collection.mutable
+
+/**
+ * Compact binary representation of [[Event]]s sent by the compile server.
+ *
+ * Every encoded event starts with a marker byte and a format version,
+ * followed by the event tag and its fields in a fixed order.
+ * Optional and nullable values are prefixed with presence flags, numbers are written as var-ints.
+ *
+ * File paths are repeated in many events of the same compilation, so they are written once per connection:
+ * the first occurrence of a path defines a new entry of the string table, subsequent occurrences are references to it.
+ * That's why an [[EventCodec.Encoder]] and an [[EventCodec.Decoder]] must be used for a single connection
+ * and must see all binary events of that connection in the same order.
+ *
+ * The format is used only when a client advertises its support through the [[EventCodec.EnvironmentVariable]],
+ * otherwise the server falls back to Java serialization ([[Event.toBytes]]).
+ * Decoder accepts both formats.
+ */
+object EventCodec {
+  val FormatVersion: Int = 1
+
+  // reported by a client in the nailgun environment chunk, value is the supported format version
+  val EnvironmentVariable = "SCALA_COMPILE_SERVER_EVENT_FORMAT"
+
+  // can be used to switch the client back to Java serialization
+  val EnabledProperty = "scala.compile.server.binary.events"
+
+  // distinct from the first byte of Java serialization stream (0xAC) and from any Base64 character
+  private val Marker: Byte = 0xB1.toByte
+
+  def isEnabled: Boolean = System.getProperty(EnabledProperty, "true").toBoolean
+
+  def isBinary(bytes: Array[Byte]): Boolean = bytes.length > 0 && bytes(0) == Marker
+
+  def supportsBinaryFormat(clientFormatVersion: Option[String]): Boolean =
+    clientFormatVersion.contains(FormatVersion.toString)
+
+  private object Tag {
+    final val Message = 1
+    final val Progress = 2
+    final val Debug = 3
+    final val Trace = 4
+    final val Generated = 5
+    final val Deleted = 6
+    final val CompilationEnd = 7
+    final val ProcessingEnd = 8
+    final val WorksheetOutput = 9
+    final val CompilationStartedInSbt = 10
+  }
+
+  private object PathRecord {
+    final val Definition = 0
+    final val Reference = 1
+  }
+
+  /**
+   * Not thread-safe, encoded events must be written in the order of encoding.
+   */
+  class Encoder {
+    private val paths = mutable.HashMap.empty[String, Int]
+
+    private val buffer = new ByteArrayOutputStream(256)
+    private val output = new DataOutputStream(buffer)
+
+    def encode(event: Event): Array[Byte] = {
+      buffer.reset()
+      output.writeByte(Marker)
+      writeVarInt(FormatVersion)
+      writeEvent(event)
+      output.flush()
+      buffer.toByteArray
+    }
+
+    private def writeEvent(event: Event): Unit = event match {
+      case MessageEvent(kind, text, source, line, column) =>
+        writeVarInt(Tag.Message)
+        writeVarInt(kind.ordinal)
+        writeString(text)
+        writeOption(source)(writePath)
+        writeOption(line)(writeVarLong)
+        writeOption(column)(writeVarLong)
+      case ProgressEvent(text, done) =>
+        writeVarInt(Tag.Progress)
+        writeString(text)
+        writeOption(done)(output.writeFloat(_))
+      case DebugEvent(text) =>
+        writeVarInt(Tag.Debug)
+        writeString(text)
+      case TraceEvent(exceptionClassName, message, stackTrace) =>
+        writeVarInt(Tag.Trace)
+        writeString(exceptionClassName)
+        writeString(message)
+        writeVarInt(stackTrace.length)
+        stackTrace.foreach { element =>
+          writeString(element.getClassName)
+          writeString(element.getMethodName)
+          writeString(element.getFileName)
+          output.writeInt(element.getLineNumber)
+        }
+      case GeneratedEvent(source, module, name) =>
+        writeVarInt(Tag.Generated)
+        writePath(source)
+        writePath(module)
+        writeString(name)
+      case DeletedEvent(module) =>
+        writeVarInt(Tag.Deleted)
+        writePath(module)
+      case CompilationEndEvent() =>
+        writeVarInt(Tag.CompilationEnd)
+      case ProcessingEndEvent() =>
+        writeVarInt(Tag.ProcessingEnd)
+      case WorksheetOutputEvent(text) =>
+        writeVarInt(Tag.WorksheetOutput)
+        writeString(text)
+      case CompilationStartedInSbt(path) =>
+        writeVarInt(Tag.CompilationStartedInSbt)
+        writeString(path)
+    }
+
+    private def writePath(file: File): Unit = {
+      val path = file.getPath
+      paths.get(path) match {
+        case Some(index) =>
+          writeVarInt(PathRecord.Reference)
+          writeVarInt(index)
+        case None =>
+          paths.put(path, paths.size)
+          writeVarInt(PathRecord.Definition)
+          writeString(path)
+      }
+    }
+
+    private def writeOption[T](value: Option[T])(write: T => Unit): Unit = value match {
+      case Some(v) =>
+        output.writeBoolean(true)
+        write(v)
+      case None =>
+        output.writeBoolean(false)
+    }
+
+    // length is shifted by one to distinguish null from an empty string
+    private def writeString(s: String): Unit =
+      if (s == null) writeVarInt(0)
+      else {
+        val bytes = s.getBytes(StandardCharsets.UTF_8)
+        writeVarInt(bytes.length + 1)
+        output.write(bytes)
+      }
+
+    private def writeVarInt(value: Int): Unit = writeVarLong(value & 0xFFFFFFFFL)
+
+    private def writeVarLong(value: Long): Unit = {
+      var v = value
+      while ((v & ~0x7FL) != 0) {
+        output.writeByte(((v & 0x7F) | 0x80).toInt)
+        v >>>= 7
+      }
+      output.writeByte(v.toInt)
+    }
+  }
+
+  /**
+   * Decodes both binary and Java-serialized events. Not thread-safe.
+   */
+  class Decoder {
+    private val paths = mutable.ArrayBuffer.empty[String]
+
+    def decode(bytes: Array[Byte]): Event =
+      if (isBinary(bytes)) decodeBinary(bytes)
+      else Event.fromBytes(bytes)
+
+    private def decodeBinary(bytes: Array[Byte]): Event = {
+      val input = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))
+
+      val version = readVarInt(input)
+      if (version != FormatVersion) {
+        throw new IllegalArgumentException(s"Unsupported event format version: $version")
+      }
+
+      val event = readEvent(input)
+      if (input.available > 0) {
+        throw new IllegalArgumentException(s"Excess bytes after event decoding: ${input.available}")
+      }
+      event
+    }
+
+    private def readEvent(implicit input: DataInputStream): Event = readVarInt(input) match {
+      case Tag.Message =>
+        val kind = Kind.values()(readVarInt(input))
+        MessageEvent(kind, readString, readOption(readPath), readOption(readVarLong(input)), readOption(readVarLong(input)))
+      case Tag.Progress =>
+        ProgressEvent(readString, readOption(input.readFloat()))
+      case Tag.Debug =>
+        DebugEvent(readString)
+      case Tag.Trace =>
+        val exceptionClassName = readString
+        val message = readString
+        val stackTrace = Array.fill(readVarInt(input)) {
+          new StackTraceElement(readString, readString, readString, input.readInt())
+        }
+        TraceEvent(exceptionClassName, message, stackTrace)
+      case Tag.Generated =>
+        GeneratedEvent(readPath, readPath, readString)
+      case Tag.Deleted =>
+        DeletedEvent(readPath)
+      case Tag.CompilationEnd =>
+        CompilationEndEvent()
+      case Tag.ProcessingEnd =>
+        ProcessingEndEvent()
+      case Tag.WorksheetOutput =>
+        WorksheetOutputEvent(readString)
+      case Tag.CompilationStartedInSbt =>
+        CompilationStartedInSbt(readString)
+      case tag =>
+        throw new IllegalArgumentException(s"Unknown event tag: $tag")
+    }
+
+    private def readPath(implicit input: DataInputStream): File = readVarInt(input) match {
+      case PathRecord.Definition =>
+        val path = readString
+        paths += path
+        new File(path)
+      case PathRecord.Reference =>
+        new File(paths(readVarInt(input)))
+      case record =>
+        throw new IllegalArgumentException(s"Unknown path record: $record")
+    }
+
+    private def readOption[T](read: => T)(implicit input: DataInputStream): Option[T] =
+      if (input.readBoolean()) Some(read) else None
+
+    private def readString(implicit input: DataInputStream): String = readVarInt(input) match {
+      case 0 => null
+      case length =>
+        val bytes = new Array[Byte](length - 1)
+        input.readFully(bytes)
+        new String(bytes, StandardCharsets.UTF_8)
+    }
+
+    private def readVarInt(input: DataInputStream): Int = readVarLong(input).toInt
+
+    private def readVarLong(input: DataInputStream): Long = {
+      var result = 0L
+      var shift = 0
+      var b = 0
+      do {
+        if (shift > 63) throw new IllegalArgumentException("Malformed var-int")
+        b = input.readUnsignedByte()
+        result |= (b & 0x7FL) << shift
+        shift += 7
+      } while ((b & 0x80) != 0)
+      result
+    }
+  }
+}
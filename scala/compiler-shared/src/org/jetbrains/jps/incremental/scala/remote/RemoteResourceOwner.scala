@@ -9,6 +9,7 @@ import com.martiansoftware.nailgun.NGConstants
 import org.apache.commons.lang3.StringUtils
 import org.jetbrains.jps.incremental.messages.BuildMessage.Kind
 import org.jetbrains.jps.incremental.scala._
+import org.jetbrains.jps.incremental.scala.remote.RemoteResourceOwner._
 
 /**
  * @author Pavel Fatin
@@ -24,6 +25,19 @@ trait RemoteResourceOwner {
   def send(command: String, arguments: Seq[String], client: Client) {
     val encodedArgs = arguments.map(s =>
       Base64.getEncoder.encodeToString(s.getBytes(StandardCharsets.UTF_8)))
+
+    val session =
+      if (client != null && command == serverAlias && CompileServerSession.isEnabled)
+        CompileServerSession.getOrOpen(address, port)(createChunks(CompileServerSession.Alias, Seq.empty))
+      else None
+
+    session match {
+      case Some(s) => s.send(encodedArgs, client)
+      case None    => sendOneShot(command, encodedArgs, client)
+    }
+  }
+
+  private def sendOneShot(command: String, encodedArgs: Seq[String], client: Client): Unit = {
     using(new Socket(address, port)) { socket =>
       using(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))) { output =>
         createChunks(command, encodedArgs).foreach(_.writeTo(output))
@@ -39,24 +53,14 @@ trait RemoteResourceOwner {
 
   protected def handle(input: DataInputStream, client: Client) {
     val processor = new ClientEventProcessor(client)
+    val decoder = new EventCodec.Decoder
 
     while (!client.isCanceled) {
       Chunk.readFrom(input) match {
         case Chunk(NGConstants.CHUNKTYPE_EXIT, code) =>
           return
         case Chunk(NGConstants.CHUNKTYPE_STDOUT, data) =>
-          try {
-            val event = Event.fromBytes(Base64.getDecoder.decode(data))
-            processor.process(event)
-          } catch {
-            case e: Exception =>
-              val chars = {
-                val s = new String(data)
-                if (s.length > 50) s.substring(0, 50) + "..." else s
-              }
-              client.message(Kind.ERROR, "Unable to read an event from: " + chars)
-              client.trace(e)
-          }
+          processEvent(data, decoder, processor, client)
         // Main server class redirects all (unexpected) stdout data to stderr.
         // In theory, there should be no such data at all, however, in practice,
         // sbt "leaks" some messages into console (e.g. for "explain type errors" option).
@@ -73,7 +77,11 @@ trait RemoteResourceOwner {
   }
 
   protected def createChunks(command: String, args: Seq[String]): Seq[Chunk] = {
-    args.map(s => Chunk(NGConstants.CHUNKTYPE_ARGUMENT.toChar, toBytes(s))) :+
+    val environment =
+      if (EventCodec.isEnabled) Seq(Chunk(NGConstants.CHUNKTYPE_ENVIRONMENT.toChar, toBytes(s"${EventCodec.EnvironmentVariable}=${EventCodec.FormatVersion}")))
+      else Seq.empty
+
+    args.map(s => Chunk(NGConstants.CHUNKTYPE_ARGUMENT.toChar, toBytes(s))) ++ environment :+
       Chunk(NGConstants.CHUNKTYPE_WORKINGDIRECTORY.toChar, toBytes(currentDirectory)) :+
       Chunk(NGConstants.CHUNKTYPE_COMMAND.toChar, toBytes(command))
   }
@@ -83,6 +91,25 @@ trait RemoteResourceOwner {
   private def fromBytes(bytes: Array[Byte]) = new String(bytes)
 }
 
+object RemoteResourceOwner {
+
+  // binary events are sent as is, serialized ones are Base64-encoded
+  private[remote] def processEvent(data: Array[Byte], decoder: EventCodec.Decoder, processor: ClientEventProcessor, client: Client): Unit =
+    try {
+      val bytes = if (EventCodec.isBinary(data)) data else Base64.getDecoder.decode(data)
+      val event = decoder.decode(bytes)
+      processor.process(event)
+    } catch {
+      case e: Exception =>
+        val chars = {
+          val s = new String(data)
+          if (s.length > 50) s.substring(0, 50) + "..." else s
+        }
+        client.message(Kind.ERROR, "Unable to read an event from: " + chars)
+        client.trace(e)
+    }
+}
+
 case class Chunk(kind: Chunk.Kind, data: Array[Byte]) {
   def writeTo(output: DataOutputStream) {
     output.writeInt(data.length)
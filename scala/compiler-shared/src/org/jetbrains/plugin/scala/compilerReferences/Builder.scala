@@ -3,4 +3,7 @@ package org.jetbrains.plugin.scala.compilerReferences
 object Builder {
   val id                 = "sc.compiler.ref.index"
   val rebuildPropertyKey = "scala.compiler.indices.rebuild"
+
+  /** Extract references from compiled classes in the build process and stream them to the IDE */
+  val streamReferencesPropertyKey = "scala.compiler.indices.stream.references"
 }
@@ -7,6 +7,7 @@ import java.util.zip.{DeflaterOutputStream, InflaterInputStream}
 
 import org.jetbrains.jps.incremental.messages.CustomBuilderMessage
 import org.jetbrains.plugin.scala.compilerReferences.Builder.id
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.{ReferencesCodec, SourceReferences}
 import org.jetbrains.plugins.scala.indices.protocol.IdeaIndicesJsonProtocol._
 import org.jetbrains.plugins.scala.indices.protocol.jps.JpsCompilationInfo
 import spray.json._
@@ -17,6 +18,7 @@ object Messages {
   val compilationDataType     = "compilation-data"
   val compilationFinishedType = "compilation-finished"
   val compilationStartedType  = "compilation-started"
+  val streamedReferencesType  = "streamed-references"
 
   final case class ChunkCompilationInfo(data: JpsCompilationInfo)
     extends CustomBuilderMessage(id, compilationDataType, compressCompilationInfo(data))
@@ -27,39 +29,52 @@ object Messages {
   final case class CompilationStarted(isCleanBuild: Boolean)
     extends CustomBuilderMessage(id, compilationStartedType, isCleanBuild.toString)
 
+  /**
+    * References extracted from the classes of a source, sent before the [[ChunkCompilationInfo]]
+    * of its chunk, so that the indexer doesn't have to read these classes again.
+    */
+  final case class StreamedReferences(records: Seq[SourceReferences])
+    extends CustomBuilderMessage(id, streamedReferencesType, compressReferences(records))
+
   def compressCompilationInfo(data: JpsCompilationInfo): String = {
-    val baos     = new ByteArrayOutputStream(8191)
-    val json     = data.toJson.compactPrint
+    val json = data.toJson.compactPrint
+    deflate(json.getBytes(StandardCharsets.UTF_8))
+  }
+
+  def decompressCompilationInfo(b64encoded: String): Try[JpsCompilationInfo] =
+    for {
+      bytes   <- inflate(b64encoded)
+      json    = new String(bytes, StandardCharsets.UTF_8)
+      jpsInfo <- Try(json.parseJson.convertTo[JpsCompilationInfo])
+    } yield jpsInfo
+
+  def compressReferences(records: Seq[SourceReferences]): String =
+    deflate(ReferencesCodec.encode(records))
 
-    tryWith(new DeflaterOutputStream(baos))(
-      _.write(json.getBytes(StandardCharsets.UTF_8))
-    )
+  def decompressReferences(b64encoded: String): Try[Seq[SourceReferences]] =
+    inflate(b64encoded).flatMap(bytes => Try(ReferencesCodec.decode(bytes)))
 
+  private[this] def deflate(bytes: Array[Byte]): String = {
+    val baos = new ByteArrayOutputStream(8191)
+    tryWith(new DeflaterOutputStream(baos))(_.write(bytes))
     Base64.getEncoder.encodeToString(baos.toByteArray)
   }
 
-  def decompressCompilationInfo(b64encoded: String): Try[JpsCompilationInfo] = {
+  private[this] def inflate(b64encoded: String): Try[Array[Byte]] = {
     val decoded = Base64.getDecoder.decode(b64encoded)
     val bais    = new ByteArrayInputStream(decoded)
 
-    val inflated =
-      tryWith(new InflaterInputStream(bais)) { inflater =>
-        val out    = new ByteArrayOutputStream
-        val buffer = new Array[Byte](8192)
-        var read   = 0
-
-        while ({ read = inflater.read(buffer); read > 0 }) {
-          out.write(buffer, 0, read)
-        }
-        out.close()
-        out.toByteArray
-      }
+    tryWith(new InflaterInputStream(bais)) { inflater =>
+      val out    = new ByteArrayOutputStream
+      val buffer = new Array[Byte](8192)
+      var read   = 0
 
-    for {
-      bytes   <- inflated
-      json    = new String(bytes, StandardCharsets.UTF_8)
-      jpsInfo <- Try(json.parseJson.convertTo[JpsCompilationInfo])
-    } yield jpsInfo
+      while ({ read = inflater.read(buffer); read > 0 }) {
+        out.write(buffer, 0, read)
+      }
+      out.close()
+      out.toByteArray
+    }
   }
 
   private[this] def tryWith[R <: AutoCloseable, T](resource: => R)(f: R => T): Try[T] =
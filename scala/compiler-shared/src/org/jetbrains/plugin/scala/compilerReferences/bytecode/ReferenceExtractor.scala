@@ -0,0 +1,126 @@
+package org.jetbrains.plugin.scala.compilerReferences.bytecode
+
+import java.util.regex.Pattern
+
+import org.jetbrains.org.objectweb.asm.Opcodes._
+import org.jetbrains.org.objectweb.asm._
+
+import scala.collection.mutable
+
+/**
+ * Extracts member references, super classes and SAM types of lambdas from a class file.
+ * Used both by the JPS builder, on the bytes of freshly compiled classes, and by the IDE, on class files read from disk.
+ */
+object ReferenceExtractor {
+  private[this] val ScalaSignatureAnnotations = Set("Lscala/reflect/ScalaSignature;", "Lscala/reflect/ScalaLongSignature;")
+  private[this] val BytesValue                = "bytes"
+
+  def extract(bytes: Array[Byte]): ExtractedClass = extract(bytes, 0, bytes.length)
+
+  def extract(bytes: Array[Byte], offset: Int, length: Int): ExtractedClass = {
+    val visitor = new ExtractingVisitor
+    new ClassReader(bytes, offset, length).accept(visitor, ClassReader.SKIP_FRAMES)
+    visitor.result
+  }
+
+  private[this] val pattern = Pattern.compile("/")
+  private[this] def fqnFromInternalName(internal: String): String = pattern.matcher(internal).replaceAll(".")
+
+  /**
+    * We are only interested in static bytecode entries if it is one of the following:
+    * 1. Static initializer in trait/object ($init$, <clinit>)
+    * 2. Bodies of anonymous functions ($anonfun$).
+    *
+    * This avoids indexing various flavours of static forwarders generated by scalac.
+    */
+  private[this] def isStaticForwarder(access: Int, name: String): Boolean =
+    (access & ACC_STATIC) != 0 &&
+      name != "<clinit>" &&
+      name != "$init$" &&
+      !name.contains("$anonfun$")
+
+  private[this] class ExtractingVisitor extends ClassVisitor(ASM6) {
+    private[this] var internalName: String                             = _
+    private[this] var className: String                                = _
+    private[this] var isAnon: Boolean                                  = false
+    private[this] val superNames: mutable.Builder[String, Set[String]] = Set.newBuilder[String]
+    private[this] val methods                                          = mutable.ArrayBuffer.empty[MethodCollector]
+    private[this] var scalaSignature: Option[String]                   = None
+
+    override def visit(
+      version:    Int,
+      access:     Int,
+      name:       String,
+      signature:  String,
+      superName:  String,
+      interfaces: Array[String]
+    ): Unit = {
+      internalName = name
+      className    = fqnFromInternalName(internalName)
+      if (superName != null) superNames += fqnFromInternalName(superName)
+
+      if (interfaces != null) {
+        interfaces.map(fqnFromInternalName).foreach(superNames += _)
+      }
+    }
+
+    override def visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+      if (ScalaSignatureAnnotations.contains(desc))
+        new AnnotationVisitor(ASM6) {
+          override def visit(name: String, value: scala.Any): Unit =
+            if (name == BytesValue) scalaSignature = Option(value.asInstanceOf[String])
+        }
+      else null
+
+    override def visitInnerClass(name: String, outerName: String, innerName: String, access: Int): Unit =
+      if (name == internalName) isAnon = innerName == null
+
+    override def visitMethod(
+      access:     Int,
+      name:       String,
+      desc:       String,
+      signature:  String,
+      exceptions: Array[String]
+    ): MethodVisitor =
+      if (isStaticForwarder(access, name)) null
+      else {
+        val collector = new MethodCollector(name)
+        methods += collector
+        collector
+      }
+
+    def result: ExtractedClass =
+      ExtractedClass(isAnon, className, superNames.result(), methods.map(_.result), scalaSignature)
+
+    private[this] class MethodCollector(name: String) extends MethodVisitor(ASM6) {
+      private[this] val refs      = mutable.ArrayBuffer.empty[MemberReference]
+      private[this] val funExprs  = mutable.ArrayBuffer.empty[FunExprInheritor]
+      private[this] var firstLine = -1
+
+      // methods may still be filtered out as synthetic, so the line of references preceding
+      // the first line number of the method is resolved later, see MethodReferences
+      private[this] var currentLineNumber = -1
+
+      def result: MethodReferences = MethodReferences(name, refs, funExprs, firstLine, currentLineNumber)
+
+      override def visitLineNumber(line: Int, start: Label): Unit = {
+        currentLineNumber = line
+        if (firstLine == -1 || line < firstLine) firstLine = line
+      }
+
+      override def visitMethodInsn(opcode: Int, owner: String, name: String, desc: String, itf: Boolean): Unit = {
+        val argsCount = Type.getArgumentTypes(desc).length
+        refs += MethodReference(fqnFromInternalName(owner), name, currentLineNumber, argsCount)
+      }
+
+      override def visitInvokeDynamicInsn(name: String, desc: String, bsm: Handle, bsmArgs: AnyRef*): Unit =
+        if (bsm.getOwner == "java/lang/invoke/LambdaMetafactory") {
+          val samType = Type.getReturnType(desc)
+          funExprs += FunExprInheritor(samType.getClassName, currentLineNumber)
+        }
+
+      override def visitFieldInsn(opcode: Int, owner: String, name: String, desc: String): Unit =
+        refs += FieldReference(fqnFromInternalName(owner), name, currentLineNumber)
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package org.jetbrains.plugin.scala.compilerReferences.bytecode
+
+import java.io.File
+
+/**
+ * Represents a reference to a method or field in compiled class file
+ */
+sealed trait MemberReference {
+
+  /**
+   * Fqn of an enclosing class
+   */
+  def owner: String
+
+  /**
+   * Field/method name
+   */
+  def name: String
+
+  /**
+   * Line of occurence in source file, or -1 if indeterminable
+   */
+  def line: Int
+
+  def fqn: String = s"$owner.$name"
+}
+
+final case class FieldReference(
+  override val owner: String,
+  override val name:  String,
+  override val line:  Int
+) extends MemberReference
+
+final case class MethodReference(
+  override val owner: String,
+  override val name:  String,
+  override val line:  Int,
+  args:               Int
+) extends MemberReference
+
+final case class FunExprInheritor(
+  interface: String,
+  line:      Int
+)
+
+/**
+ * References found in the body of a single method.
+ * References preceding the first line number of the method have line -1,
+ * they belong to the last line of the previous method which is not filtered out.
+ *
+ * @param firstLine the smallest line number of the method, or -1 if the method has no line numbers
+ * @param lastLine  the last line number visited in the method, or -1 if the method has no line numbers
+ */
+final case class MethodReferences(
+  name:      String,
+  refs:      Seq[MemberReference],
+  funExprs:  Seq[FunExprInheritor],
+  firstLine: Int,
+  lastLine:  Int
+)
+
+/**
+ * Everything the compiler indices need from a class file.
+ * Methods are not filtered against the synthetic symbols of the enclosing Scala class yet,
+ * this requires the Scala signature, which is kept undecoded.
+ *
+ * @param fqn            Fully quialified name of a class.
+ * @param superClasses   Fully qualified names of all super classes/interfaces.
+ * @param scalaSignature Value of the `ScalaSignature` annotation, if any.
+ */
+final case class ExtractedClass(
+  isAnonymous:    Boolean,
+  fqn:            String,
+  superClasses:   Set[String],
+  methods:        Seq[MethodReferences],
+  scalaSignature: Option[String]
+)
+
+/**
+ * Classes generated from a single source file, keyed by their output files.
+ */
+final case class SourceReferences(source: File, classes: Map[File, ExtractedClass])
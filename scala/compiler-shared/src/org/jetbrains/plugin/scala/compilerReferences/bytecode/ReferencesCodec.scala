@@ -0,0 +1,168 @@
+package org.jetbrains.plugin.scala.compilerReferences.bytecode
+
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.{util => ju}
+
+import scala.collection.mutable
+
+/**
+ * Compact binary form of [[SourceReferences]] streamed from the JPS builder to the IDE.
+ *
+ * Owners, names and paths are written once and then referred to by their index,
+ * since the same few owners and method names make up most of the references of a compilation chunk.
+ */
+object ReferencesCodec {
+  private val Version = 2
+
+  private val FieldTag  = 0
+  private val MethodTag = 1
+
+  def encode(records: Seq[SourceReferences]): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream(8192)
+    val out   = new Output(new DataOutputStream(bytes))
+    out.writeInt(Version)
+    out.writeSeq(records)(writeSource(out, _))
+    out.flush()
+    bytes.toByteArray
+  }
+
+  def decode(bytes: Array[Byte]): Seq[SourceReferences] = {
+    val in      = new Input(new DataInputStream(new ByteArrayInputStream(bytes)))
+    val version = in.readInt()
+    if (version != Version) throw new IOException(s"Unsupported streamed references version: $version")
+    in.readSeq(readSource(in))
+  }
+
+  private def writeSource(out: Output, record: SourceReferences): Unit = {
+    out.writeString(record.source.getPath)
+    out.writeSeq(record.classes.toSeq) { case (output, cls) =>
+      out.writeString(output.getPath)
+      writeClass(out, cls)
+    }
+  }
+
+  private def readSource(in: Input): SourceReferences = {
+    val source  = new File(in.readString())
+    val classes = in.readSeq(new File(in.readString()) -> readClass(in))
+    SourceReferences(source, classes.toMap)
+  }
+
+  private def writeClass(out: Output, cls: ExtractedClass): Unit = {
+    out.writeBoolean(cls.isAnonymous)
+    out.writeString(cls.fqn)
+    out.writeSeq(cls.superClasses.toSeq)(out.writeString)
+    out.writeSeq(cls.methods)(writeMethod(out, _))
+    out.writeBoolean(cls.scalaSignature.isDefined)
+    // signatures may exceed the 64k limit of `writeUTF`
+    cls.scalaSignature.foreach(out.writeBytes)
+  }
+
+  private def readClass(in: Input): ExtractedClass = {
+    val isAnonymous    = in.readBoolean()
+    val fqn            = in.readString()
+    val superClasses   = in.readSeq(in.readString()).toSet
+    val methods        = in.readSeq(readMethod(in))
+    val scalaSignature = if (in.readBoolean()) Option(in.readBytes()) else None
+    ExtractedClass(isAnonymous, fqn, superClasses, methods, scalaSignature)
+  }
+
+  private def writeMethod(out: Output, method: MethodReferences): Unit = {
+    out.writeString(method.name)
+    out.writeInt(method.firstLine)
+    out.writeInt(method.lastLine)
+    out.writeSeq(method.refs) {
+      case FieldReference(owner, name, line) =>
+        out.writeByte(FieldTag)
+        out.writeString(owner)
+        out.writeString(name)
+        out.writeInt(line)
+      case MethodReference(owner, name, line, args) =>
+        out.writeByte(MethodTag)
+        out.writeString(owner)
+        out.writeString(name)
+        out.writeInt(line)
+        out.writeInt(args)
+    }
+    out.writeSeq(method.funExprs) { funExpr =>
+      out.writeString(funExpr.interface)
+      out.writeInt(funExpr.line)
+    }
+  }
+
+  private def readMethod(in: Input): MethodReferences = {
+    val name      = in.readString()
+    val firstLine = in.readInt()
+    val lastLine  = in.readInt()
+    val refs = in.readSeq {
+      in.readByte() match {
+        case FieldTag  => FieldReference(in.readString(), in.readString(), in.readInt())
+        case MethodTag => MethodReference(in.readString(), in.readString(), in.readInt(), in.readInt())
+        case tag       => throw new IOException(s"Unknown member reference tag: $tag")
+      }
+    }
+    val funExprs = in.readSeq(FunExprInheritor(in.readString(), in.readInt()))
+    MethodReferences(name, refs, funExprs, firstLine, lastLine)
+  }
+
+  private class Output(out: DataOutputStream) {
+    private[this] val strings = new ju.HashMap[String, Integer]()
+
+    def writeInt(value: Int): Unit         = out.writeInt(value)
+    def writeByte(value: Int): Unit        = out.writeByte(value)
+    def writeBoolean(value: Boolean): Unit = out.writeBoolean(value)
+    def flush(): Unit                      = out.flush()
+
+    def writeString(value: String): Unit = strings.get(value) match {
+      case null =>
+        strings.put(value, strings.size)
+        out.writeInt(-1)
+        out.writeUTF(value)
+      case index => out.writeInt(index)
+    }
+
+    def writeBytes(value: String): Unit = {
+      val bytes = value.getBytes(StandardCharsets.UTF_8)
+      out.writeInt(bytes.length)
+      out.write(bytes)
+    }
+
+    def writeSeq[T](values: Seq[T])(write: T => Unit): Unit = {
+      out.writeInt(values.size)
+      values.foreach(write)
+    }
+  }
+
+  private class Input(in: DataInputStream) {
+    private[this] val strings = mutable.ArrayBuffer.empty[String]
+
+    def readInt(): Int         = in.readInt()
+    def readByte(): Int        = in.readByte()
+    def readBoolean(): Boolean = in.readBoolean()
+
+    def readString(): String = in.readInt() match {
+      case -1 =>
+        val value = in.readUTF()
+        strings += value
+        value
+      case index => strings(index)
+    }
+
+    def readBytes(): String = {
+      val bytes = new Array[Byte](in.readInt())
+      in.readFully(bytes)
+      new String(bytes, StandardCharsets.UTF_8)
+    }
+
+    def readSeq[T](read: => T): Seq[T] = {
+      val size   = in.readInt()
+      val result = new mutable.ArrayBuffer[T](size)
+      var i      = 0
+      while (i < size) {
+        result += read
+        i += 1
+      }
+      result
+    }
+  }
+}
@@ -23,33 +23,63 @@ object Decompiler {
 
   private val ScalaSigBytes = "ScalaSig".getBytes(UTF_8)
 
-  def sourceNameAndText(fileName: String, bytes: Array[Byte]): Option[(String, String)] = {
+  /**
+    * A file with a Scala signature. The class is parsed once,
+    * the signature is only decoded and printed when the text is requested.
+    */
+  final class ScalaClassFile private[Decompiler](val sourceName: String,
+                                                 decompile: () => Option[String]) {
+
+    def sourceText: Option[String] = decompile()
+  }
 
+  def scalaClassFile(fileName: String, bytes: Array[Byte]): Option[ScalaClassFile] =
     if (fileName.endsWith(".sig")) {
-      val scalaSig = Parser.parseScalaSig(bytes, fileName)
       val isPackageObject = fileName == "package.sig"
-      val sourceNameGuess = fileName.stripSuffix(".sig") + ".scala"
 
-      return decompiledText(scalaSig, fileName, isPackageObject)
-        .map((sourceNameGuess, _))
-    }
+      Some(new ScalaClassFile(sigSourceName(fileName), () => {
+        val scalaSig = Parser.parseScalaSig(bytes, fileName)
+        decompiledText(scalaSig, fileName, isPackageObject)
+      }))
+    } else for {
+      parsed <- parseClass(fileName, bytes)
+      encodedBytes <- encodedSignatureBytes(parsed)
+      className = parsed.getClassName
+      isPackageObject = fileName == "package.class"
+    } yield new ScalaClassFile(parsed.getSourceFileName, () => {
+      val signature = Parser.parseScalaSig(decode(encodedBytes.clone()), fileName)
+      decompiledText(signature, className, isPackageObject).map(StringUtil.convertLineSeparators)
+    })
+
+  def sourceNameAndText(fileName: String, bytes: Array[Byte]): Option[(String, String)] =
+    for {
+      classFile <- scalaClassFile(fileName, bytes)
+      text <- classFile.sourceText
+    } yield (classFile.sourceName, text)
 
-    if (!containsMarker(bytes)) return None
+  /**
+    * Source file name of a class with a Scala signature, neither the signature nor the class text are decoded.
+    */
+  def sourceName(fileName: String, bytes: Array[Byte]): Option[String] =
+    scalaClassFile(fileName, bytes).map(_.sourceName)
 
-    val parsed = new ClassParser(new ByteArrayInputStream(bytes), fileName).parse()
-    for {
-      annotation <- parsed.getAnnotationEntries.find(isScalaSignatureAnnotation)
-      pair <- annotation.getElementValuePairs.find(_.getNameString == "bytes")
+  private[scala] def scalaSignatureBytes(fileName: String, bytes: Array[Byte]): Option[Array[Byte]] =
+    parseClass(fileName, bytes).flatMap(scalaSignatureBytes)
 
-      simpleValues = collectSimple(pair.getValue)
-      strings = simpleValues.map(valueBytes)
+  private def sigSourceName(fileName: String) = fileName.stripSuffix(".sig") + ".scala"
 
-      bytes = decode(strings)
-      signature = Parser.parseScalaSig(bytes, fileName)
+  private def parseClass(fileName: String, bytes: Array[Byte]): Option[JavaClass] =
+    if (containsMarker(bytes)) Some(new ClassParser(new ByteArrayInputStream(bytes), fileName).parse())
+    else None
 
-      text <- decompiledText(signature, parsed.getClassName, fileName == "package.class")
-    } yield (parsed.getSourceFileName, StringUtil.convertLineSeparators(text))
-  }
+  private def scalaSignatureBytes(parsed: JavaClass): Option[Array[Byte]] =
+    encodedSignatureBytes(parsed).map(decode)
+
+  private def encodedSignatureBytes(parsed: JavaClass): Option[Array[Byte]] =
+    for {
+      annotation <- parsed.getAnnotationEntries.find(isScalaSignatureAnnotation)
+      pair <- annotation.getElementValuePairs.find(_.getNameString == BYTES_VALUE)
+    } yield Array.concat(collectSimple(pair.getValue).map(valueBytes): _*)
 
   private def isScalaSignatureAnnotation(entry: AnnotationEntry) =
     entry.getAnnotationType match {
@@ -69,8 +99,8 @@ object Decompiler {
   private def valueBytes(value: SimpleElementValue) =
     value.getValueString.getBytes(UTF_8)
 
-  private def decode(strings: List[Array[Byte]]) = {
-    val bytes = Array.concat(strings: _*)
+  // decodes in place
+  private def decode(bytes: Array[Byte]) = {
     ByteCodecs.decode(bytes)
     bytes
   }
@@ -20,9 +20,12 @@ import scala.reflect.internal.pickling.PickleFormat._
 //Some parts of scala.reflect.internal.pickling.UnPickler used
 object Parser {
 
+  /**
+    * Reads only the index of the pickle (entry offsets and tags), entries are decoded on demand.
+    */
   def parseScalaSig(bytes: Array[Byte], fileName: String): ScalaSig = {
     try {
-      new Builder(bytes).readAll()
+      new Builder(bytes, fileName).scalaSig
     } catch {
       case ex: IOException =>
         throw ex
@@ -34,22 +37,12 @@ object Parser {
     }
   }
 
-  private class Builder(bytes: Array[Byte]) extends ScalaSigReader(bytes) {
+  private class Builder(bytes: Array[Byte], fileName: String) extends ScalaSigReader(bytes) with ScalaSig.EntryDecoder {
     val index: Array[Int] = createIndex()
 
-    private val entries = new Array[Entry](index.length)
+    implicit val scalaSig: ScalaSig = new ScalaSig(index.map(bytes(_)), this)
 
-    implicit val scalaSig: ScalaSig = new ScalaSig(entries)
-
-    def readAll(): ScalaSig = {
-      var i = 0
-      while (i < index.length) {
-        entries(i) = readEntry(i)
-        i += 1
-      }
-      scalaSig.finished()
-      scalaSig
-    }
+    override def decode(i: Int): Entry = readEntry(i)
 
     def readEntry(i: Int): Entry = {
       readIndex = index(i)
@@ -145,23 +138,15 @@ object Parser {
     def readSymbol(tag: Int): Symbol = {
       val end = readEnd()
 
-      val symbol = tag match {
+      tag match {
         case TYPEsym => TypeSymbol(readSymbolInfo(end))
         case ALIASsym => AliasSymbol(readSymbolInfo(end))
-        case CLASSsym =>
-          val clazz = ClassSymbol(readSymbolInfo(end), tryReadTypeRef(end))
-          scalaSig.addClass(clazz)
-          clazz
-        case MODULEsym =>
-          val obj = ObjectSymbol(readSymbolInfo(end))
-          scalaSig.addObject(obj)
-          obj
+        case CLASSsym => ClassSymbol(readSymbolInfo(end), tryReadTypeRef(end))
+        case MODULEsym => ObjectSymbol(readSymbolInfo(end))
         case VALsym =>
           MethodSymbol(readSymbolInfo(end), tryReadSymbolRef(end))
         case _ => errorBadSignature("bad symbol tag: " + tag)
       }
-      scalaSig.addChild(symbol.parentRef, symbol)
-      symbol
     }
 
     def readExtSymbol(tag: Int): ExternalSymbol = {
@@ -232,9 +217,7 @@ object Parser {
       val info      = readTypeRef()
       val args      = until(end, () => tryReadRef(isConstAnnotArgTag, Ref.to[ConstAnnotArg], end)).flatten
       val namedArgs = until(end, () => (readNameRef(), readConstantAnnotArgRef()))
-      val annot = SymAnnot(sym, info, args, namedArgs)
-      scalaSig.addAttribute(annot)
-      annot
+      SymAnnot(sym, info, args, namedArgs)
     }
 
     def readAnnotArgArray(): AnnotArgArray = {
@@ -258,7 +241,7 @@ object Parser {
     private def readEnd() = readNat() + readIndex
 
     protected def errorBadSignature(msg: String) =
-      throw new RuntimeException(s"malformed Scala signature " + " at " + readIndex + "; " + msg)
+      throw new RuntimeException(s"malformed Scala signature of $fileName at $readIndex; $msg")
 
   }
 }
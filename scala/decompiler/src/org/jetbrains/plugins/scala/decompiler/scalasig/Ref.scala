@@ -12,9 +12,6 @@ class Ref[T <: Entry : ClassTag](val index: Int)(implicit val scalaSig: ScalaSig
   def get: T = {
     val entry = scalaSig.get(index)
 
-    if (!scalaSig.isInitialized)
-      throw new ScalaDecompilerException("usage of scalaSig entry before initialization")
-
     val expectedClass = implicitly[ClassTag[T]].runtimeClass
     if (!expectedClass.isInstance(entry)) {
       val expName = expectedClass.getCanonicalName
@@ -27,9 +24,7 @@ class Ref[T <: Entry : ClassTag](val index: Int)(implicit val scalaSig: ScalaSig
     entry.asInstanceOf[T]
   }
 
-  override def toString: String =
-    if (!scalaSig.isInitialized) "not initialized"
-    else get.toString
+  override def toString: String = get.toString
 
   override def equals(obj: scala.Any): Boolean = obj match {
     case r: Ref[_] => r.index == index
@@ -2,23 +2,51 @@ package org.jetbrains.plugins.scala.decompiler.scalasig
 
 import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
+import scala.reflect.internal.pickling.PickleFormat._
 
 /**
+  * Entries are decoded on first access, so the cost of a query is proportional to the number of entries it reads.
+  *
+  * @param tags    tag of every entry of the pickle
+  * @param decoder decodes an entry by its index
+  *
   * Nikolay.Tropin
   * 19-Jul-17
   */
-class ScalaSig(val entries: Array[Entry]) {
-  private var initialized: Boolean = false
+class ScalaSig(tags: Array[Byte], decoder: ScalaSig.EntryDecoder) {
+  private val entries = new Array[Entry](tags.length)
 
-  def get(idx: Int): Entry = entries(idx)
+  def get(idx: Int): Entry = entries(idx) match {
+    case null =>
+      // the decoder is stateful, entries are immutable
+      decoder.synchronized {
+        entries(idx) match {
+          case null =>
+            val entry = decoder.decode(idx)
+            entries(idx) = entry
+            entry
+          case entry => entry
+        }
+      }
+    case entry => entry
+  }
+
+  def entryCount: Int = tags.length
 
-  def isInitialized: Boolean = initialized
-  def finished(): Unit = initialized = true
+  private lazy val classes: Seq[ClassSymbol] = entriesWithTag[ClassSymbol](CLASSsym)
+  private lazy val objects: Seq[ObjectSymbol] = entriesWithTag[ObjectSymbol](MODULEsym)
+  private lazy val symAnnots: Seq[SymAnnot] = entriesWithTag[SymAnnot](SYMANNOT)
 
-  private val classes = ArrayBuffer.empty[ClassSymbol]
-  private val objects = ArrayBuffer.empty[ObjectSymbol]
-  private val symAnnots = ArrayBuffer.empty[SymAnnot]
-  private val parentToChildren = mutable.HashMap.empty[Int, ArrayBuffer[Symbol]]
+  private lazy val parentToChildren: mutable.Map[Int, ArrayBuffer[Symbol]] = {
+    val result = mutable.HashMap.empty[Int, ArrayBuffer[Symbol]]
+    for {
+      i <- tags.indices
+      if isLocalSymbolTag(tags(i))
+      symbol = get(i).asInstanceOf[Symbol]
+      ref <- symbol.parentRef
+    } result.getOrElseUpdate(ref.index, ArrayBuffer.empty) += symbol
+    result
+  }
 
   def topLevelClasses: Seq[ClassSymbol] = classes.filter(isTopLevelClass)
   def topLevelObjects: Seq[ObjectSymbol] = objects.filter(isTopLevel)
@@ -47,15 +75,15 @@ class ScalaSig(val entries: Array[Entry]) {
     distinctTypes.toVector
   }
 
-  def addClass(c: ClassSymbol): Unit = classes += c
-  def addObject(o: ObjectSymbol): Unit = objects += o
-  def addAttribute(a: SymAnnot): Unit = symAnnots += a
-
-  def addChild(parent: Option[Ref[Symbol]], child: Symbol): Unit = {
-    parent.foreach { ref =>
-      val children = parentToChildren.getOrElseUpdate(ref.index, ArrayBuffer.empty)
-      children += child
+  private def entriesWithTag[T <: Entry](tag: Int): Seq[T] =
+    tags.indices.collect {
+      case i if tags(i) == tag => get(i).asInstanceOf[T]
     }
+
+  // symbols defined in this signature, as opposed to external references
+  private def isLocalSymbolTag(tag: Int): Boolean = tag match {
+    case TYPEsym | ALIASsym | CLASSsym | MODULEsym | VALsym => true
+    case _ => false
   }
 
   private def isTopLevel(symbol: Symbol): Boolean = symbol.parent match {
@@ -74,6 +102,12 @@ class ScalaSig(val entries: Array[Entry]) {
       unwrapType(m1.infoType) == unwrapType(m2.infoType)
   }
   
-  def syntheticSymbols(): Seq[Symbol] = 
+  def syntheticSymbols(): Seq[Symbol] =
     parentToChildren.valuesIterator.flatten.filter(_.isSynthetic).toList
 }
+
+object ScalaSig {
+  trait EntryDecoder {
+    def decode(index: Int): Entry
+  }
+}
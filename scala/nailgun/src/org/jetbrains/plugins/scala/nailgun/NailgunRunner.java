@@ -31,6 +31,10 @@ public class NailgunRunner {
   private static final String SERVER_DESCRIPTION = "Scala compile server";
   private static final String SERVER_CLASS_NAME = "org.jetbrains.jps.incremental.scala.remote.Main";
 
+  private static final String SESSION_ALIAS = "compile-server-session";
+  private static final String SESSION_DESCRIPTION = "Scala compile server session";
+  private static final String SESSION_CLASS_NAME = "org.jetbrains.jps.incremental.scala.remote.SessionMain";
+
   private static final String STOP_ALIAS_START = "stop_";
   private static final String STOP_CLASS_NAME = "com.martiansoftware.nailgun.builtins.NGStop";
 
@@ -103,6 +107,9 @@ public class NailgunRunner {
     Class<?> serverClass = classLoader.loadClass(SERVER_CLASS_NAME);
     server.getAliasManager().addAlias(new Alias(SERVER_ALIAS, SERVER_DESCRIPTION, serverClass));
 
+    Class<?> sessionClass = classLoader.loadClass(SESSION_CLASS_NAME);
+    server.getAliasManager().addAlias(new Alias(SESSION_ALIAS, SESSION_DESCRIPTION, sessionClass));
+
     Class<?> stopClass = classLoader.loadClass(STOP_CLASS_NAME);
     String stopAlias = STOP_ALIAS_START + id;
     server.getAliasManager().addAlias(new Alias(stopAlias, "", stopClass));
@@ -0,0 +1,198 @@
+package org.jetbrains.plugins.scala
+package caches
+
+import java.util.concurrent.atomic.{AtomicLong, LongAdder}
+
+import org.jetbrains.plugins.scala.caches.BoundedGenerationCache._
+import org.jetbrains.plugins.scala.caches.stats.CacheCapabilities
+
+/**
+  * Size-bounded concurrent cache, striped into independently locked LRU segments.
+  *
+  * Every entry is stamped with the generation it was computed in. [[invalidateAll]] only advances
+  * the current generation: entries of older generations are evicted lazily, when they are looked up
+  * or when their segment runs out of space, so an invalidation costs O(1) instead of a full flush.
+  *
+  * When a segment is full a new key is admitted only if it was requested at least as often as
+  * the least recently used entry (TinyLFU-like admission backed by a small count-min sketch),
+  * so that one-off lookups do not wash out frequently used results.
+  */
+final class BoundedGenerationCache[K, V >: Null](maximumSize: Int, segmentCount: Int = DefaultSegmentCount) {
+
+  private val generation = new AtomicLong(0)
+
+  private val hits = new LongAdder
+  private val misses = new LongAdder
+  private val evictions = new LongAdder
+
+  private val segments: Array[Segment] = {
+    val capacity = (maximumSize / segmentCount) max 1
+    Array.fill(segmentCount)(new Segment(capacity))
+  }
+
+  /**
+    * @return value stored for the key in the current generation or `null`
+    */
+  def get(key: K): V = {
+    val result = segmentFor(key).get(key, generation.get)
+    if (result == null) misses.increment()
+    else hits.increment()
+    result
+  }
+
+  def put(key: K, value: V): Unit =
+    segmentFor(key).put(key, value, generation.get)
+
+  /**
+    * Makes all stored values unreachable, they will be evicted lazily.
+    */
+  def invalidateAll(): Unit = generation.incrementAndGet()
+
+  /**
+    * Eagerly removes all entries, e.g. to free memory.
+    */
+  def clear(): Unit = segments.foreach(_.clear())
+
+  /**
+    * Number of stored entries, including not yet evicted stale ones.
+    */
+  def size: Int = segments.foldLeft(0)(_ + _.size)
+
+  def hitCount: Long = hits.sum()
+  def missCount: Long = misses.sum()
+  def evictionCount: Long = evictions.sum()
+
+  private def segmentFor(key: K): Segment = {
+    val index = (spread(key.hashCode) >>> 16) % segmentCount
+    segments(index)
+  }
+
+  private final class Segment(capacity: Int) {
+    private val map = new java.util.LinkedHashMap[K, Entry[V]](16, 0.75f, true)
+    private val sketch = new FrequencySketch(capacity)
+    private var purgedGeneration = 0L
+
+    def get(key: K, currentGeneration: Long): V = synchronized {
+      sketch.increment(key.hashCode)
+      map.get(key) match {
+        case null => null
+        case entry if entry.generation == currentGeneration => entry.value
+        case _ =>
+          map.remove(key)
+          evictions.increment()
+          null
+      }
+    }
+
+    def put(key: K, value: V, currentGeneration: Long): Unit = synchronized {
+      if (map.containsKey(key) || map.size < capacity || makeRoomFor(key, currentGeneration))
+        map.put(key, Entry(value, currentGeneration))
+    }
+
+    def clear(): Unit = synchronized {
+      map.clear()
+    }
+
+    def size: Int = synchronized {
+      map.size
+    }
+
+    private def makeRoomFor(key: K, currentGeneration: Long): Boolean = {
+      if (purgedGeneration != currentGeneration) {
+        purgedGeneration = currentGeneration
+        removeStale(currentGeneration)
+      }
+
+      map.size < capacity || {
+        val eldest = map.keySet.iterator.next()
+        val admit = sketch.frequency(key.hashCode) >= sketch.frequency(eldest.hashCode)
+        if (admit) {
+          map.remove(eldest)
+          evictions.increment()
+        }
+        admit
+      }
+    }
+
+    private def removeStale(currentGeneration: Long): Unit = {
+      val iterator = map.values.iterator
+      while (iterator.hasNext) {
+        if (iterator.next().generation != currentGeneration) {
+          iterator.remove()
+          evictions.increment()
+        }
+      }
+    }
+  }
+}
+
+object BoundedGenerationCache {
+
+  private val DefaultSegmentCount = 16
+
+  private final case class Entry[V](value: V, generation: Long)
+
+  private def spread(hash: Int): Int = {
+    val h = hash * 0x9E3779B9
+    h ^ (h >>> 16)
+  }
+
+  /**
+    * Count-min sketch with 4-bit saturating counters, periodically halved so that the frequencies
+    * reflect recent history only. Not thread-safe, guarded by the owning segment.
+    */
+  private final class FrequencySketch(capacity: Int) {
+    private val Depth = 4
+    private val MaxCount = 15
+    private val Seeds = Array(0x97CB3127, 0xB3E3C5E7, 0xC2B2AE35, 0x27D4EB2F)
+
+    private val width = Integer.highestOneBit(((capacity * 2) max 16) - 1) << 1
+    private val table = new Array[Byte](Depth * width)
+    private val sampleSize = width * 10
+    private var additions = 0
+
+    def increment(hash: Int): Unit = {
+      var row = 0
+      while (row < Depth) {
+        val i = index(hash, row)
+        if (table(i) < MaxCount) table(i) = (table(i) + 1).toByte
+        row += 1
+      }
+
+      additions += 1
+      if (additions >= sampleSize) reset()
+    }
+
+    def frequency(hash: Int): Int = {
+      var result = MaxCount
+      var row = 0
+      while (row < Depth) {
+        result = result min table(index(hash, row))
+        row += 1
+      }
+      result
+    }
+
+    private def index(hash: Int, row: Int): Int =
+      row * width + (spread(hash * Seeds(row)) & (width - 1))
+
+    private def reset(): Unit = {
+      var i = 0
+      while (i < table.length) {
+        table(i) = (table(i) >> 1).toByte
+        i += 1
+      }
+      additions /= 2
+    }
+  }
+
+  implicit def BoundedGenerationCacheCapabilities[K, V >: Null]: CacheCapabilities[BoundedGenerationCache[K, V]] =
+    new CacheCapabilities[BoundedGenerationCache[K, V]] {
+      override def cachedEntitiesCount(cache: CacheType): Int = cache.size
+      override def clear(cache: CacheType): Unit = cache.clear()
+
+      override def hitCount(cache: CacheType): Long = cache.hitCount
+      override def missCount(cache: CacheType): Long = cache.missCount
+      override def evictionCount(cache: CacheType): Long = cache.evictionCount
+    }
+}
@@ -2,6 +2,7 @@ package org.jetbrains.plugins.scala.caches
 
 import java.util
 import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.atomic.AtomicInteger
 
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.util.RecursionGuard.StackStamp
@@ -47,6 +48,60 @@ object RecursionManager {
     ourStack.get().prohibitCaching()
   }
 
+  /**
+    * Guards in progress in the current thread, to continue its calculation in other threads.
+    */
+  def snapshot(): StackSnapshot = {
+    val entries = ourStack.get().progressMap.entrySet().iterator().asScala.map(e => (e.getKey, e.getValue)).toList
+    new StackSnapshot(entries)
+  }
+
+  /**
+    * Calculations continued with [[StackSnapshot.continueWith]] see the guards in progress of the snapshot thread,
+    * recursions they prevent are reported to the snapshot thread by [[StackSnapshot.merge]].
+    */
+  final class StackSnapshot private[RecursionManager](entries: List[(MyKey[_], Integer)]) {
+    private val minDepthInRecursion = new AtomicInteger(Int.MaxValue)
+
+    @volatile
+    private var mayCache = true
+
+    def continueWith[T](body: => T): T = {
+      val stackBefore = ourStack.get()
+      val stack = new CalculationStack
+      stack.continueFrom(entries)
+      ourStack.set(stack)
+
+      val platformStamp = PlatformRM.markStack()
+      try body
+      finally {
+        ourStack.set(stackBefore)
+
+        minDepthInRecursion.accumulateAndGet(stack.minStackDepthInRecursion, math.min(_, _))
+        if (stack.isDirty || !platformStamp.mayCacheNow()) mayCache = false
+      }
+    }
+
+    /**
+      * Must be called in the snapshot thread, after all continued calculations are finished.
+      *
+      * Prevented recursions are applied to the stack of the snapshot thread, so its stamps see them.
+      *
+      * @return false if some continued calculation may not be cached for another reason,
+      *         which stamps of the snapshot thread taken outside of guarded calculations don't see
+      */
+    def merge(): Boolean = {
+      val stack = ourStack.get()
+      val minDepth = minDepthInRecursion.get()
+      if (minDepth < Int.MaxValue) {
+        stack.minStackDepthInRecursion = math.min(stack.minStackDepthInRecursion, minDepth)
+      }
+      if (!mayCache) stack.prohibitCaching()
+
+      mayCache
+    }
+  }
+
   class RecursionGuard[Data >: Null <: AnyRef, LocalCacheValue] private (id: String) {
 
     //see also org.jetbrains.plugins.scala.macroAnnotations.CachedMacroUtil.doPreventingRecursion
@@ -164,6 +219,11 @@ object RecursionManager {
       }
     }
 
+    private[RecursionManager] def continueFrom(entries: List[(MyKey[_], Integer)]): Unit = {
+      entries.foreach { case (key, keyDepth) => progressMap.put(key, keyDepth) }
+      depth = progressMap.size
+    }
+
     private[RecursionManager] def stamp(): Int = depth
     private[RecursionManager] def currentStackHasRecursion: Boolean = minStackDepthInRecursion < Int.MaxValue
     private[RecursionManager] def isStampWithinRecursion(stamp: Int): Boolean =
@@ -7,4 +7,8 @@ trait CacheCapabilities[T] {
 
   def cachedEntitiesCount(cache: CacheType): Int
   def clear(cache: CacheType): Unit
+
+  def hitCount(cache: CacheType): Long = 0
+  def missCount(cache: CacheType): Long = 0
+  def evictionCount(cache: CacheType): Long = 0
 }
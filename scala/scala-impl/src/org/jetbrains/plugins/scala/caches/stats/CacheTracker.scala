@@ -21,6 +21,9 @@ object CacheTracker {
 
     override def tracked: Seq[Cache] = trackedCaches.toStrongList.asScala
     override def cachedEntityCount: Int = tracked.foldLeft(0)(_ + capabilities.cachedEntitiesCount(_))
+    override def hitCount: Long = tracked.foldLeft(0L)(_ + capabilities.hitCount(_))
+    override def missCount: Long = tracked.foldLeft(0L)(_ + capabilities.missCount(_))
+    override def evictionCount: Long = tracked.foldLeft(0L)(_ + capabilities.evictionCount(_))
     override def clear(): Unit = tracked.foreach(capabilities.clear)
   }
 
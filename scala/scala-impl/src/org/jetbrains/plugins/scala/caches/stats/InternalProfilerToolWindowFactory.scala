@@ -68,8 +68,11 @@ object InternalProfilerToolWindowFactory {
       dataById,
       dataById.stringColumn("Computation", _.name),
       dataById.numColumn("Tracked caches", _.trackedCaches),
-      dataById.numColumn("Tracked cache entries", _.trackedCacheEntries)
-    )(preferredWidths = Seq(5, 1, 1))
+      dataById.numColumn("Tracked cache entries", _.trackedCacheEntries),
+      dataById.numColumn("Hits", _.hits),
+      dataById.numColumn("Misses", _.misses),
+      dataById.numColumn("Evictions", _.evictions)
+    )(preferredWidths = Seq(5, 1, 1, 1, 1, 1))
   }
 
   private def parentCallsText(data: TracerData): String = {
@@ -3,4 +3,7 @@ package org.jetbrains.plugins.scala.caches.stats
 case class MemoryData(id: String,
                       name: String,
                       trackedCaches: Int,
-                      trackedCacheEntries: Int)
+                      trackedCacheEntries: Int,
+                      hits: Long,
+                      misses: Long,
+                      evictions: Long)
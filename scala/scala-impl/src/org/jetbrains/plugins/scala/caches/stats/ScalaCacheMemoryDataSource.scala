@@ -24,7 +24,10 @@ object ScalaCacheMemoryDataSource extends DataSource[MemoryData] {
           tracker.id,
           tracker.name + tracker.alwaysTrack.fold(ifTrue = " (always tracked)", ifFalse = ""),
           tracked.length,
-          tracked.foldLeft(0) { _ + capabilities.cachedEntitiesCount(_)}
+          tracked.foldLeft(0) { _ + capabilities.cachedEntitiesCount(_)},
+          tracker.hitCount,
+          tracker.missCount,
+          tracker.evictionCount
         )
         arrayBuffer.add(data)
     }
@@ -9,5 +9,8 @@ trait TrackedCacheType {
   def capabilities: CacheCapabilities[Cache]
   def tracked: Seq[Cache]
   def cachedEntityCount: Int
+  def hitCount: Long
+  def missCount: Long
+  def evictionCount: Long
   def clear(): Unit
 }
@@ -0,0 +1,179 @@
+package org.jetbrains.plugins.scala.debugger
+
+import com.intellij.debugger.engine.{DebugProcess, DebuggerManagerThreadImpl}
+import com.intellij.debugger.impl.DebuggerUtilsEx
+import com.intellij.debugger.requests.ClassPrepareRequestor
+import com.sun.jdi.request.{ClassPrepareRequest, EventRequest}
+import com.sun.jdi.{ArrayType, ReferenceType}
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.Try
+
+/**
+  * Reference types loaded to the debuggee, indexed by package and by outer class name.
+  *
+  * It's filled with a snapshot of all loaded classes when the debugger is attached and then kept up to date with
+  * ClassPrepare events, so position queries don't have to iterate all classes of the VM
+  * (which can be tens of thousands in a big application).
+  * Queries before initialization fall back to all classes of the VM.
+  * Indices are immutable sequences which are replaced on updates, so queries return them without copying.
+  *
+  * A class is unloaded together with its class loader. The debugger doesn't dispatch ClassUnload events,
+  * so when a class with the name of a registered one is prepared, which is the case when classes are reloaded
+  * by a new class loader, registered classes with that name are removed if their class loader is collected.
+  *
+  * Lambda classes (e.g. `Foo$$Lambda$1.1836643189`) are indexed by the name of their owner.
+  *
+  * @param onPrepare is called for every class prepared after the registry is initialized
+  * @param onUnload  is called for every removed class of a collected class loader
+  */
+private[debugger] class LoadedClassesRegistry(debugProcess: DebugProcess,
+                                              onPrepare: ReferenceType => Unit,
+                                              onUnload: ReferenceType => Unit) {
+  import LoadedClassesRegistry._
+
+  private val byPackage = mutable.HashMap.empty[String, Vector[ReferenceType]]
+  private val byOuterName = mutable.HashMap.empty[String, Vector[ReferenceType]]
+  private val byName = mutable.HashMap.empty[String, List[ReferenceType]]
+  private var all = Vector.empty[ReferenceType]
+
+  private var prepareRequest: Option[ClassPrepareRequest] = None
+
+  def classesInPackage(packageName: String): Seq[ReferenceType] = synchronized {
+    if (prepareRequest.isEmpty) vmClasses.filter(refType => packageName == LoadedClassesRegistry.packageName(nonLambdaName(refType.name)))
+    else byPackage.getOrElse(packageName, Vector.empty)
+  }
+
+  /**
+    * Loaded classes which names start with `outerName` followed by `$`, including `outerName` itself.
+    */
+  def classesWithOuter(outerName: String): Seq[ReferenceType] = synchronized {
+    if (prepareRequest.isEmpty) vmClasses.filter(refType => outerName == LoadedClassesRegistry.outerName(nonLambdaName(refType.name)))
+    else byOuterName.getOrElse(outerName, Vector.empty)
+  }
+
+  def allClasses: Seq[ReferenceType] = synchronized {
+    if (prepareRequest.isEmpty) vmClasses
+    else all
+  }
+
+  /**
+    * Starts following ClassPrepare events, must be called in the debugger manager thread.
+    */
+  def initialize(): Unit = synchronized {
+    if (prepareRequest.isEmpty) {
+      DebuggerManagerThreadImpl.assertIsManagerThread()
+
+      val requestsManager = debugProcess.getRequestsManager
+      val request = requestsManager.createClassPrepareRequest(Requestor, "*")
+      // only the registry is interested in these events, there is no need to stop the debuggee
+      request.setSuspendPolicy(EventRequest.SUSPEND_NONE)
+      requestsManager.enableRequest(request)
+      prepareRequest = Some(request)
+
+      // classes prepared after the request is enabled may be added twice, `add` ignores duplicates
+      debugProcess.getVirtualMachineProxy.allClasses().asScala.foreach(add)
+    }
+  }
+
+  def clear(): Unit = synchronized {
+    if (prepareRequest.isDefined) {
+      Try(debugProcess.getRequestsManager.deleteRequest(Requestor))
+      prepareRequest = None
+    }
+    all = Vector.empty
+    byName.clear()
+    byPackage.clear()
+    byOuterName.clear()
+  }
+
+  private def vmClasses: Seq[ReferenceType] =
+    debugProcess.getVirtualMachineProxy.allClasses().asScala.filterNot(_.isInstanceOf[ArrayType])
+
+  private def add(refType: ReferenceType): Unit = refType match {
+    case _: ArrayType =>
+    case _ =>
+      val sameName = byName.getOrElse(refType.name, Nil)
+      if (!sameName.contains(refType)) {
+        byName.update(refType.name, refType :: sameName)
+        all :+= refType
+
+        val name = nonLambdaName(refType.name)
+        appendTo(byPackage, packageName(name), refType)
+        appendTo(byOuterName, outerName(name), refType)
+      }
+  }
+
+  // only classes with the name of a newly prepared class are checked, every check is a call to the debuggee
+  private def removeUnloaded(name: String): Seq[ReferenceType] = {
+    val sameName = byName.getOrElse(name, Nil)
+
+    // classes of the bootstrap class loader are never unloaded
+    def isUnloaded(refType: ReferenceType) =
+      Try(refType.classLoader()).toOption match {
+        case Some(null)   => false
+        case Some(loader) => Try(loader.isCollected).getOrElse(true)
+        case None         => true
+      }
+
+    val (unloaded, loaded) = sameName.partition(isUnloaded)
+    if (unloaded.nonEmpty) {
+      if (loaded.isEmpty) byName.remove(name)
+      else byName.update(name, loaded)
+
+      all = all.filterNot(unloaded.contains)
+      unloaded.foreach { refType =>
+        val nonLambda = nonLambdaName(refType.name)
+        removeFrom(byPackage, packageName(nonLambda), refType)
+        removeFrom(byOuterName, outerName(nonLambda), refType)
+      }
+    }
+    unloaded
+  }
+
+  private object Requestor extends ClassPrepareRequestor {
+    override def processClassPrepare(debuggerProcess: DebugProcess, referenceType: ReferenceType): Unit = {
+      val (initialized, unloaded) = LoadedClassesRegistry.this.synchronized {
+        if (prepareRequest.isEmpty) (false, Nil)
+        else {
+          // a new class with a known name, the old one may be unloaded
+          val unloaded = removeUnloaded(referenceType.name)
+          add(referenceType)
+          (true, unloaded)
+        }
+      }
+      unloaded.foreach(onUnload)
+      if (initialized) onPrepare(referenceType)
+    }
+  }
+}
+
+private[debugger] object LoadedClassesRegistry {
+
+  //typeName can be SomeClass$$Lambda$1.1836643189
+  def nonLambdaName(typeName: String): String =
+    DebuggerUtilsEx.getLambdaBaseClassName(typeName) match {
+      case null => typeName
+      case name => name
+    }
+
+  def packageName(typeName: String): String = typeName.lastIndexOf('.') match {
+    case -1 => ""
+    case lastDot => typeName.substring(0, lastDot)
+  }
+
+  def outerName(typeName: String): String = typeName.indexOf('$') match {
+    case -1 => typeName
+    case index => typeName.substring(0, index)
+  }
+
+  private def appendTo(index: mutable.Map[String, Vector[ReferenceType]], key: String, refType: ReferenceType): Unit =
+    index.update(key, index.getOrElse(key, Vector.empty) :+ refType)
+
+  private def removeFrom(index: mutable.Map[String, Vector[ReferenceType]], key: String, refType: ReferenceType): Unit =
+    index.get(key).map(_.filterNot(_ == refType)) match {
+      case Some(remaining) if remaining.nonEmpty => index.update(key, remaining)
+      case _                                     => index.remove(key)
+    }
+}
@@ -3,7 +3,9 @@ package org.jetbrains.plugins.scala.debugger
 import java.util
 
 import com.intellij.debugger.SourcePosition
-import com.intellij.debugger.engine.{DebugProcess, SyntheticTypeComponentProvider}
+import com.intellij.debugger.engine.events.DebuggerCommandImpl
+import com.intellij.debugger.engine.{DebugProcess, DebugProcessImpl, SyntheticTypeComponentProvider}
+import com.intellij.debugger.impl.PrioritizedTask
 import com.intellij.debugger.jdi.GeneratedLocation
 import com.intellij.debugger.settings.DebuggerSettings
 import com.intellij.psi.util.PsiTreeUtil
@@ -16,6 +18,7 @@ import org.jetbrains.plugins.scala.lang.psi.api.expr.{ScBlock, ScBlockStatement,
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScEarlyDefinitions
 
 import scala.collection.JavaConverters._
+import scala.collection.mutable
 import scala.util.Try
 
 /**
@@ -25,22 +28,22 @@ trait LocationLineManager {
   self: ScalaPositionManager =>
 
   import LocationLineManager._
+  import ScalaPositionManager.{maxCustomizedLocationsCacheSize, maxPendingPrecomputations}
   import self.caches._
 
   private val syntheticProvider = SyntheticTypeComponentProvider.EP_NAME.findExtension(classOf[ScalaSyntheticProvider])
 
   def clearLocationLineCaches(): Unit = {
     customizedLocationsCache.clear()
-    lineToCustomizedLocationCache.clear()
-    seenRefTypes.clear()
   }
 
   def exactLineNumber(location: Location): Int = location match {
     case gen: GeneratedLocation =>
       gen.lineNumber()
     case _ =>
-      checkAndUpdateCaches(location.declaringType())
-      customizedLocationsCache.getOrElse(location, ScalaPositionManager.checkedLineNumber(location))
+      customizedLocationsFor(location.declaringType())
+        .customLine(location)
+        .getOrElse(ScalaPositionManager.checkedLineNumber(location))
   }
 
   def shouldSkip(location: Location): Boolean = {
@@ -60,40 +63,69 @@ trait LocationLineManager {
         case _: AbsentInformationException => return Seq.empty
       }
 
-    checkAndUpdateCaches(refType)
+    val customized = customizedLocationsFor(refType)
 
-    val nonCustomized = jvmLocations.asScala.filterNot(customizedLocationsCache.contains)
-    val customized = customizedLocations(refType, line)
-    (nonCustomized ++ customized).filter(!shouldSkip(_))
+    val nonCustomized = jvmLocations.asScala.filterNot(customized.contains)
+    (nonCustomized ++ customized.locationsOfLine(line)).filter(!shouldSkip(_))
   }
 
-  private def customizedLocations(refType: ReferenceType, line: Int): Seq[Location] = {
-    lineToCustomizedLocationCache.getOrElse((refType, line), Seq.empty)
-  }
-
-  private def checkAndUpdateCaches(refType: ReferenceType): Unit = {
-    if (!seenRefTypes.contains(refType)) inReadAction(computeCustomizedLocationsFor(refType))
+  /**
+    * Schedules computation of customized locations of a just prepared class,
+    * so they are ready when the debugger stops in this class for the first time.
+    *
+    * The computation is a low priority command of the debugger manager thread: commands of the user go first,
+    * and JDI and the position manager caches are used in the same thread as by position queries.
+    * The number of pending classes is bounded, other classes are computed on demand.
+    * Precomputed locations don't evict the ones computed for position queries.
+    * A pending computation is cancelled when its class is unloaded or the debugger is detached.
+    */
+  def precomputeCustomizedLocations(refType: ReferenceType): Unit = debugProcess match {
+    case process: DebugProcessImpl if pendingPrecomputations.size < maxPendingPrecomputations =>
+      if (pendingPrecomputations.add(refType)) {
+        process.getManagerThread.schedule(new DebuggerCommandImpl {
+          override def getPriority: PrioritizedTask.Priority = PrioritizedTask.Priority.LOW
+
+          override def action(): Unit =
+            if (pendingPrecomputations.remove(refType) && shouldPrecompute(refType)) {
+              Try(inReadAction(computeCustomizedLocationsFor(refType)))
+                .foreach(customizedLocationsCache.put(refType, _))
+            }
+
+          override def commandCancelled(): Unit = pendingPrecomputations.remove(refType)
+        })
+      }
+    case _ =>
   }
 
-  private def cacheCustomLine(location: Location, customLine: Int): Unit = location match {
-    case _: GeneratedLocation => //don't cache, equals is broken
-    case _ =>
-      customizedLocationsCache.put(location, customLine)
+  private def shouldPrecompute(refType: ReferenceType): Boolean =
+    !debugProcess.getProject.isDisposed &&
+      customizedLocationsCache.size < maxCustomizedLocationsCacheSize &&
+      !customizedLocationsCache.containsKey(refType) &&
+      DebuggerUtil.isScala(refType, default = false)
+
+  private def customizedLocationsFor(refType: ReferenceType): CustomizedLocations =
+    customizedLocationsCache.get(refType) match {
+      case null =>
+        val computed = inReadAction(computeCustomizedLocationsFor(refType))
+        customizedLocationsCache.put(refType, computed)
+        computed
+      case cached => cached
+    }
 
-      val key = (location.declaringType(), customLine)
-      val old = lineToCustomizedLocationCache.getOrElse(key, Seq.empty)
-      lineToCustomizedLocationCache.update(key, (old :+ location).sortBy(_.codeIndex()))
-  }
+  private def computeCustomizedLocationsFor(refType: ReferenceType): CustomizedLocations = {
+    val customized = new CustomizedLocations
 
-  private def computeCustomizedLocationsFor(refType: ReferenceType): Unit = {
-    seenRefTypes += refType
+    def cacheCustomLine(location: Location, customLine: Int): Unit = location match {
+      case _: GeneratedLocation => //don't cache, equals is broken
+      case _ => customized.add(location, customLine)
+    }
 
     val generatingElem = findElementByReferenceType(refType).orNull
-    if (generatingElem == null) return
+    if (generatingElem == null) return customized
     val containingFile = generatingElem.getContainingFile
-    if (containingFile == null) return
+    if (containingFile == null) return customized
     val document = PsiDocumentManager.getInstance(debugProcess.getProject).getDocument(containingFile)
-    if (document == null) return
+    if (document == null) return customized
 
     def elementStartLine(e: PsiElement) = document.getLineNumber(e.getTextOffset)
     def locationsOfLine(m: Method, line: Int) = Try(m.locationsOfLine(line + 1).asScala).getOrElse(Seq.empty)
@@ -180,7 +212,7 @@ trait LocationLineManager {
           if (code.nonEmpty) Some(code) else None
         }
 
-        val notCustomizedYet = caseLinesLocations.map(_.filter(!customizedLocationsCache.contains(_)))
+        val notCustomizedYet = caseLinesLocations.map(_.filter(!customized.contains(_)))
         val repeating = notCustomizedYet.filter(_.size > 1)
         val lastLocations = repeating.map(_.last)
         val withStoreCode = for (loc <- lastLocations; code <- storeCode(loc)) yield (loc, code)
@@ -199,7 +231,7 @@ trait LocationLineManager {
       }
 
       def skipBaseLineExtraLocations(method: Method, locations: Seq[Location]): Unit = {
-        val filtered = locations.filter(!customizedLocationsCache.contains(_))
+        val filtered = locations.filter(!customized.contains(_))
         if (filtered.size <= 1) return
 
         val bytecodes =
@@ -277,11 +309,33 @@ trait LocationLineManager {
 
     customizeLineForConstructors()
     customizeCaseClauses()
+    customized
   }
 }
 
 object LocationLineManager {
 
+  /**
+    * Locations of a reference type which line numbers generated by scalac are changed (-1 means skipped).
+    */
+  private[debugger] class CustomizedLocations {
+    private val lines = mutable.HashMap.empty[Location, Int]
+    private val lineToLocations = mutable.HashMap.empty[Int, Seq[Location]]
+
+    def customLine(location: Location): Option[Int] = lines.get(location)
+
+    def contains(location: Location): Boolean = lines.contains(location)
+
+    def locationsOfLine(line: Int): Seq[Location] = lineToLocations.getOrElse(line, Seq.empty)
+
+    private[LocationLineManager] def add(location: Location, customLine: Int): Unit = {
+      lines.put(location, customLine)
+
+      val old = lineToLocations.getOrElse(customLine, Seq.empty)
+      lineToLocations.update(customLine, (old :+ location).sortBy(_.codeIndex()))
+    }
+  }
+
   val iconst_0 = 0x03.toByte
 
   val istore_0 = 0x3b.toByte
@@ -20,6 +20,7 @@ import com.sun.jdi._
 import com.sun.jdi.request.ClassPrepareRequest
 import org.jetbrains.annotations.{NotNull, Nullable}
 import org.jetbrains.plugins.scala.caches.ScalaShortNamesCacheManager
+import org.jetbrains.plugins.scala.debugger.LocationLineManager.CustomizedLocations
 import org.jetbrains.plugins.scala.debugger.ScalaPositionManager._
 import org.jetbrains.plugins.scala.debugger.evaluation.ScalaEvaluatorBuilderUtil
 import org.jetbrains.plugins.scala.debugger.evaluation.evaluator.ScalaCompilingEvaluator
@@ -51,8 +52,7 @@ import scala.util.Try
   */
 class ScalaPositionManager(val debugProcess: DebugProcess) extends PositionManager with MultiRequestPositionManager with LocationLineManager {
 
-  protected[debugger] val caches = new ScalaPositionManagerCaches(debugProcess)
-  private val outerAndNestedTypePartsPattern = """([^\$]*)(\$.*)?""".r
+  protected[debugger] val caches = new ScalaPositionManagerCaches(debugProcess, precomputeCustomizedLocations)
   import caches._
 
   private val debugProcessScope: ElementScope = ElementScope(debugProcess.getProject, debugProcess.getSearchScope)
@@ -266,24 +266,15 @@ class ScalaPositionManager(val debugProcess: DebugProcess) extends PositionManag
   }
 
   private def filterAllClasses(condition: ReferenceType => Boolean, packageName: Option[String]): Seq[ReferenceType] = {
-    def samePackage(refType: ReferenceType) = {
-      val name = nonLambdaName(refType)
-      val lastDot = name.lastIndexOf('.')
-      val refTypePackageName = if (lastDot < 0) "" else name.substring(0, lastDot)
-      packageName.isEmpty || packageName.contains(refTypePackageName)
-    }
-
     def isAppropriate(refType: ReferenceType) = {
-      Try(samePackage(refType) && refType.isInitialized && condition(refType)).getOrElse(false)
+      Try(refType.isInitialized && condition(refType)).getOrElse(false)
     }
 
-    import scala.collection.JavaConverters._
-    for {
-      refType <- debugProcess.getVirtualMachineProxy.allClasses.asScala
-      if isAppropriate(refType)
-    } yield {
-      refType
+    val candidates = packageName match {
+      case Some(name) => loadedClasses.classesInPackage(name)
+      case None => loadedClasses.allClasses
     }
+    candidates.filter(isAppropriate)
   }
 
   @Nullable
@@ -440,7 +431,7 @@ class ScalaPositionManager(val debugProcess: DebugProcess) extends PositionManag
 
       val scriptFile = findScriptFile(refType)
       val file = scriptFile.getOrElse {
-        val originalQName = NameTransformer.decode(nonLambdaName(refType))
+        val originalQName = NameTransformer.decode(LoadedClassesRegistry.nonLambdaName(refType.name))
 
         val clazz = withDollarTestName(originalQName)
           .flatMap(tryToFindClass)
@@ -638,31 +629,17 @@ class ScalaPositionManager(val debugProcess: DebugProcess) extends PositionManag
       yield elem
   }
 
-  private def nonLambdaName(refType: ReferenceType): String = {
-    val fullName = refType.name()
-    //typeName can be SomeClass$$Lambda$1.1836643189
-    DebuggerUtilsEx.getLambdaBaseClassName(fullName) match {
-      case null => fullName
-      case name => name
-    }
-  }
-
   /**
-   * Retrieve potentially nested classes currently loaded to VM just by iterating all classes and taking into account
+   * Retrieve potentially nested classes currently loaded to VM taking into account
    * the name mangling - instead of using VirtualMachineProxy's nestedTypes method (with caches etc.).
    */
   private def getNestedClasses(outerClasses: Seq[ReferenceType]) = {
-    import JavaConverters._
     for {
       outer <- outerClasses
-      nested <- debugProcess.getVirtualMachineProxy.allClasses().asScala
-      if outer != nested && extractOuterTypeName(nested.name) == outer.name
+      nested <- loadedClasses.classesWithOuter(outer.name)
+      if outer != nested
     } yield nested
   }
-
-  private def extractOuterTypeName(typeName: String) = typeName match {
-    case outerAndNestedTypePartsPattern(outerTypeName, _) => outerTypeName
-  }
 }
 
 object ScalaPositionManager {
@@ -671,6 +648,10 @@ object ScalaPositionManager {
 
   private val isCompiledWithIndyLambdasCache = mutable.HashMap[PsiFile, Boolean]()
 
+  private[debugger] val maxCustomizedLocationsCacheSize = 1000
+
+  private[debugger] val maxPendingPrecomputations = 1000
+
   private val instances = mutable.HashMap[DebugProcess, ScalaPositionManager]()
   private def cacheInstance(scPosManager: ScalaPositionManager): Unit = {
     val debugProcess = scPosManager.debugProcess
@@ -1015,9 +996,12 @@ object ScalaPositionManager {
     }
   }
 
-  private[debugger] class ScalaPositionManagerCaches(debugProcess: DebugProcess) {
+  private[debugger] class ScalaPositionManagerCaches(debugProcess: DebugProcess, onClassPrepare: ReferenceType => Unit) {
 
     debugProcess.addDebugProcessListener(new DebugProcessListener {
+      override def processAttached(process: DebugProcess): Unit =
+        loadedClasses.initialize()
+
       override def processDetached(process: DebugProcess, closedByUser: Boolean): Unit = {
         clear()
         process.removeDebugProcessListener(this)
@@ -1028,15 +1012,41 @@ object ScalaPositionManager {
       mutable.HashMap[ReferenceType, PsiFile]()
     val refTypeToElementCache: mutable.HashMap[ReferenceType, Option[SmartPsiElementPointer[PsiElement]]] =
       mutable.HashMap[ReferenceType, Option[SmartPsiElementPointer[PsiElement]]]()
-
-    val customizedLocationsCache: mutable.HashMap[Location, Int] = mutable.HashMap[Location, Int]()
-    val lineToCustomizedLocationCache: mutable.HashMap[(ReferenceType, Int), Seq[Location]] = mutable.HashMap[(ReferenceType, Int), Seq[Location]]()
-    val seenRefTypes: mutable.Set[ReferenceType] = mutable.Set[ReferenceType]()
     val sourceNames: mutable.HashMap[ReferenceType, Option[String]] = mutable.HashMap[ReferenceType, Option[String]]()
 
+    // precomputed for prepared classes or computed by position queries, entries of unloaded classes are released
+    val customizedLocationsCache: ju.Map[ReferenceType, CustomizedLocations] =
+      new ju.LinkedHashMap[ReferenceType, CustomizedLocations](16, 0.75f, true) {
+        override def removeEldestEntry(eldest: ju.Map.Entry[ReferenceType, CustomizedLocations]): Boolean =
+          size() > maxCustomizedLocationsCacheSize
+      }
+
+    // classes waiting for precomputation of their customized locations, only used in the manager thread
+    val pendingPrecomputations: mutable.Set[ReferenceType] = mutable.HashSet[ReferenceType]()
+
+    val loadedClasses: LoadedClassesRegistry = new LoadedClassesRegistry(debugProcess, onClassPrepare, release)
+
+    // a position manager may be created after the process is attached, the registry is seeded right away then
+    if (debugProcess.isAttached) {
+      if (DebuggerManagerThreadImpl.isManagerThread) loadedClasses.initialize()
+      else debugProcess.getManagerThread.invokeCommand(new DebuggerCommand {
+        override def action(): Unit = if (debugProcess.isAttached) loadedClasses.initialize()
+        override def commandCancelled(): Unit = {}
+      })
+    }
+
     def cachedSourceName(refType: ReferenceType): Option[String] =
       sourceNames.getOrElseUpdate(refType, Try(refType.sourceName()).toOption)
 
+    // entries of an unloaded class
+    private def release(refType: ReferenceType): Unit = {
+      refTypeToFileCache.remove(refType)
+      refTypeToElementCache.remove(refType)
+      customizedLocationsCache.remove(refType)
+      pendingPrecomputations.remove(refType)
+      sourceNames.remove(refType)
+    }
+
     def clear(): Unit = {
       isCompiledWithIndyLambdasCache.clear()
 
@@ -1044,9 +1054,9 @@ object ScalaPositionManager {
       refTypeToElementCache.clear()
 
       customizedLocationsCache.clear()
-      lineToCustomizedLocationCache.clear()
-      seenRefTypes.clear()
+      pendingPrecomputations.clear()
       sourceNames.clear()
+      loadedClasses.clear()
     }
   }
 }
@@ -152,15 +152,9 @@ object ScalaSyntheticProvider {
       case ct: ClassType =>
         val interfaces = ct.allInterfaces().asScala
         val vm = ct.virtualMachine()
-        val allTraitImpls = vm.allClasses().asScala.filter(_.name().endsWith("$class"))
-        for {
-          interface <- interfaces
-          traitImpl <- allTraitImpls
-          if traitImpl.name().stripSuffix("$class") == interface.name() && !traitImpl.methodsByName(m.name).isEmpty
-        } {
-          return true
+        interfaces.exists { interface =>
+          vm.classesByName(interface.name() + "$class").asScala.exists(!_.methodsByName(m.name).isEmpty)
         }
-        false
       case _ => false
     }
   }
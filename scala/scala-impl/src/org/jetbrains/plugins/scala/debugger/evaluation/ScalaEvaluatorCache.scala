@@ -1,27 +1,44 @@
 package org.jetbrains.plugins.scala
 package debugger.evaluation
 
-import com.intellij.codeInsight.PsiEquivalenceUtil
+import java.{util => ju}
+import java.util.concurrent.ConcurrentHashMap
+
 import com.intellij.debugger.engine.evaluation.expression.Evaluator
 import com.intellij.debugger.impl.{DebuggerManagerListener, DebuggerSession}
 import com.intellij.debugger.{DebuggerManagerEx, SourcePosition}
 import com.intellij.openapi.components.ProjectComponent
 import com.intellij.openapi.project.Project
-import com.intellij.psi.{PsiElement, PsiFile}
-
-import scala.collection.mutable
+import com.intellij.psi.{JavaCodeFragment, PsiComment, PsiElement, PsiFile, PsiWhiteSpace}
+import org.jetbrains.plugins.scala.caches.stats.CacheTracker
+import org.jetbrains.plugins.scala.debugger.evaluation.ScalaEvaluatorCache._
+import org.jetbrains.plugins.scala.debugger.evaluation.evaluator.CompiledEvaluatorCache
+import org.jetbrains.plugins.scala.extensions._
 
 /**
+ * Evaluators are cached per file and reused while the file is not modified.
+ *
+ * An evaluator is found by its position in the file and by the tokens of the evaluated code fragment,
+ * so a watch or a breakpoint condition is found without comparing it with every fragment evaluated at this position.
+ * Number of cached evaluators of a file is limited, the least recently used are dropped.
+ *
  * Nikolay.Tropin
  * 2014-06-03
  */
 class ScalaEvaluatorCache(project: Project) extends ProjectComponent {
 
-  private val cachedEvaluators = mutable.HashMap[(PsiFile, Int), mutable.HashMap[PsiElement, Evaluator]]()
-  private val cachedStamp = mutable.HashMap[PsiFile, Long]()
+  private val fileCaches = new ConcurrentHashMap[PsiFile, FileEvaluators]()
+
+  private[evaluation] val compiledEvaluators: CompiledEvaluatorCache =
+    CacheTracker.alwaysTrack("ScalaEvaluatorCache.compiledEvaluators", "ScalaEvaluatorCache.compiledEvaluators") {
+      new CompiledEvaluatorCache
+    }
 
   private val listener = new DebuggerManagerListener {
-    override def sessionDetached(session: DebuggerSession): Unit = clear()
+    override def sessionDetached(session: DebuggerSession): Unit = {
+      fileCaches.clear()
+      compiledEvaluators.release(session.getProcess)
+    }
   }
 
   override def projectOpened(): Unit = {
@@ -34,48 +51,78 @@ class ScalaEvaluatorCache(project: Project) extends ProjectComponent {
   }
 
   def clear() {
-    cachedEvaluators.values.foreach(_.clear())
-    cachedEvaluators.clear()
-    cachedStamp.clear()
+    fileCaches.clear()
+    compiledEvaluators.clear()
   }
 
   def get(position: SourcePosition, element: PsiElement): Option[Evaluator] = {
     if (position == null) return None
 
     val file = position.getFile
-    val offset = position.getOffset
-    if (!cachedStamp.get(file).contains(file.getModificationStamp)) {
-      cachedStamp(file) = file.getModificationStamp
-      cachedEvaluators.filterKeys(_._1 == file).foreach {
-        case (pos, map) =>
-          map.clear()
-          cachedEvaluators.remove(pos)
-      }
-      None
-    } else {
-      cachedEvaluators.get((file, offset)) match {
-        case Some(map) => map.collectFirst {
-          case (elem, eval) if PsiEquivalenceUtil.areElementsEquivalent(element, elem) => eval
-        }
-        case None => None
-      }
+    fileCaches.get(file) match {
+      case cache if cache != null && cache.stamp == file.getModificationStamp =>
+        cache.get(EvaluatorKey(position.getOffset, element))
+      case _ => None
     }
   }
 
   def add(position: SourcePosition, element: PsiElement, evaluator: Evaluator): Evaluator = {
     if (position != null) {
       val file = position.getFile
-      val offset = position.getOffset
-      cachedEvaluators.get((file, offset)) match {
-        case Some(map) => map += (element -> evaluator)
-        case None =>
-          cachedEvaluators += ((file, offset) -> mutable.HashMap(element -> evaluator))
-      }
+      val stamp = file.getModificationStamp
+
+      val cache = fileCaches.compute(file, (_, existing) =>
+        if (existing != null && existing.stamp == stamp) existing
+        else new FileEvaluators(stamp)
+      )
+      cache.put(EvaluatorKey(position.getOffset, element), evaluator)
     }
     evaluator
   }
 }
 
 object ScalaEvaluatorCache {
+  private val MaxEvaluatorsPerFile = 200
+
   def getInstance(project: Project): ScalaEvaluatorCache = project.getComponent(classOf[ScalaEvaluatorCache])
+
+  /**
+   * Identifies a code fragment by its tokens, so fragments which differ only in whitespace and comments are equal.
+   * Imports of the fragment are a part of the key, as the same tokens may refer to different symbols.
+   */
+  private case class EvaluatorKey(offset: Int, tokens: Seq[String], imports: Set[String])
+
+  private object EvaluatorKey {
+    def apply(offset: Int, element: PsiElement): EvaluatorKey = {
+      val tokens = element.depthFirst().collect {
+        case leaf if leaf.getFirstChild == null && !isWhitespaceOrComment(leaf) => leaf.getText
+      }
+      EvaluatorKey(offset, tokens.toVector, imports(element))
+    }
+
+    private def imports(element: PsiElement): Set[String] = element match {
+      case fragment: JavaCodeFragment => fragment.importsToString().split(',').filter(_.nonEmpty).toSet
+      case _ => Set.empty
+    }
+
+    private def isWhitespaceOrComment(element: PsiElement) = element match {
+      case _: PsiWhiteSpace | _: PsiComment => true
+      case _ => false
+    }
+  }
+
+  private class FileEvaluators(val stamp: Long) {
+    private val evaluators = new ju.LinkedHashMap[EvaluatorKey, Evaluator](16, 0.75f, true) {
+      override def removeEldestEntry(eldest: ju.Map.Entry[EvaluatorKey, Evaluator]): Boolean =
+        size() > MaxEvaluatorsPerFile
+    }
+
+    def get(key: EvaluatorKey): Option[Evaluator] = evaluators.synchronized {
+      Option(evaluators.get(key))
+    }
+
+    def put(key: EvaluatorKey, evaluator: Evaluator): Unit = evaluators.synchronized {
+      evaluators.put(key, evaluator)
+    }
+  }
 }
@@ -0,0 +1,109 @@
+package org.jetbrains.plugins.scala
+package debugger.evaluation.evaluator
+
+import java.{util => ju}
+import java.util.concurrent.atomic.LongAdder
+
+import com.intellij.debugger.engine.DebugProcess
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.ModuleUtilCore.findModuleForPsiElement
+import com.intellij.openapi.roots.{OrderEnumerator, ProjectRootManager}
+import com.intellij.psi.PsiElement
+import org.jetbrains.plugins.scala.caches.stats.CacheCapabilities
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.impl.source.ScalaCodeFragment
+import org.jetbrains.plugins.scala.macroAnnotations.CachedInUserData
+
+/**
+ * Classes generated and compiled for code fragments that can't be evaluated without compilation.
+ *
+ * A fragment is compiled once per context and module classpath. Its classes are defined once in every debuggee
+ * it's evaluated in, in a class loader of that debuggee, which is not collected until the entry is evicted
+ * or the debugger session ends. Subsequent evaluations, e.g. for every hit of a conditional breakpoint,
+ * invoke the defined classes directly.
+ */
+private[evaluation] class CompiledEvaluatorCache(maximumSize: Int = CompiledEvaluatorCache.DefaultMaximumSize) {
+  import CompiledEvaluatorCache._
+
+  private val compilations = new LongAdder
+  private val cachedEvaluations = new LongAdder
+
+  private val generatedClasses = new ju.LinkedHashMap[Key, GeneratedClass](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: ju.Map.Entry[Key, GeneratedClass]): Boolean = {
+      val remove = size() > maximumSize
+      if (remove) eldest.getValue.dispose()
+      remove
+    }
+  }
+
+  private[evaluator] def generatedClass(fragment: ScalaCodeFragment, context: PsiElement): GeneratedClass = {
+    val key = inReadAction(Key(fragment, context))
+    generatedClasses.synchronized {
+      generatedClasses.get(key) match {
+        case null =>
+          val generated = GeneratedClass(fragment, context)
+          generatedClasses.put(key, generated)
+          generated
+        case cached => cached
+      }
+    }
+  }
+
+  private[evaluator] def compiled(): Unit = compilations.increment()
+
+  private[evaluator] def evaluatedWithoutCompilation(): Unit = cachedEvaluations.increment()
+
+  def compilationCount: Long = compilations.sum()
+
+  def cachedEvaluationCount: Long = cachedEvaluations.sum()
+
+  def size: Int = generatedClasses.synchronized(generatedClasses.size)
+
+  /**
+   * Releases class loaders created in the debuggee of `process`, compiled classes are kept for other sessions.
+   */
+  def release(process: DebugProcess): Unit = generatedClasses.synchronized {
+    generatedClasses.values.forEach(_.dispose(process))
+  }
+
+  def clear(): Unit = generatedClasses.synchronized {
+    generatedClasses.values.forEach(_.dispose())
+    generatedClasses.clear()
+  }
+}
+
+private[evaluation] object CompiledEvaluatorCache {
+  private val DefaultMaximumSize = 100
+
+  /**
+   * @param contextSignature position of the context in the original file and modification stamp of the file
+   */
+  private case class Key(fragmentText: String, imports: String, contextSignature: (String, Int, Int, Long), classpathHash: Int)
+
+  private object Key {
+    def apply(fragment: ScalaCodeFragment, context: PsiElement): Key = {
+      val file = context.getContainingFile
+      val range = context.getTextRange
+      val filePath = Option(file.getVirtualFile).fold(file.getName)(_.getPath)
+      val contextSignature = (filePath, range.getStartOffset, range.getEndOffset, file.getModificationStamp)
+
+      val classpathHash = Option(findModuleForPsiElement(context)).fold(0)(moduleClasspathHash)
+
+      Key(fragment.getText, fragment.importsToString(), contextSignature, classpathHash)
+    }
+
+    @CachedInUserData(module, ProjectRootManager.getInstance(module.getProject))
+    private def moduleClasspathHash(module: Module): Int =
+      OrderEnumerator.orderEntries(module).recursively().getPathsList.getPathsString.hashCode
+  }
+
+  // compilations are counted as misses, evaluations with already compiled classes as hits
+  implicit val CompiledEvaluatorCacheCapabilities: CacheCapabilities[CompiledEvaluatorCache] =
+    new CacheCapabilities[CompiledEvaluatorCache] {
+      override def cachedEntitiesCount(cache: CacheType): Int = cache.size
+      override def clear(cache: CacheType): Unit = cache.clear()
+
+      override def hitCount(cache: CacheType): Long = cache.cachedEvaluationCount
+      override def missCount(cache: CacheType): Long = cache.compilationCount
+    }
+}
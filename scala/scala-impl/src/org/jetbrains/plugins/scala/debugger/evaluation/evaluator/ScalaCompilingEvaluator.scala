@@ -4,6 +4,7 @@ package debugger.evaluation.evaluator
 import java.io.File
 import java.net.URI
 import java.util
+import java.util.concurrent.ConcurrentHashMap
 
 import com.intellij.codeInsight.CodeInsightUtilCore.findElementInRange
 import com.intellij.debugger.SourcePosition
@@ -30,6 +31,7 @@ import org.jetbrains.plugins.scala.project.ProjectContext
 
 import scala.annotation.tailrec
 import scala.collection.JavaConverters._
+import scala.util.Try
 
 /**
  * Nikolay.Tropin
@@ -50,22 +52,32 @@ class ScalaCompilingEvaluator(psiContext: PsiElement, fragment: ScalaCodeFragmen
   import org.jetbrains.plugins.scala.debugger.evaluation.evaluator.ScalaCompilingEvaluator._
 
   private val project = inReadAction(fragment.getProject)
-  private val generatedClass = GeneratedClass(fragment, psiContext)
-  private var classLoader: ClassLoaderReference = null
+  private val compiledEvaluators = ScalaEvaluatorCache.getInstance(project).compiledEvaluators
+  private val generatedClass = compiledEvaluators.generatedClass(fragment, psiContext)
 
   override def getModifier: Modifier = null
 
   override def evaluate(context: EvaluationContextImpl): Value = {
     val process: DebugProcess = context.getDebugProcess
 
-    try {
-      if (classLoader == null || classLoader.isCollected) classLoader = getClassLoader(context)
+    val classLoader = try {
+      generatedClass.classLoader(process) match {
+        case Some(loader) => loader
+        case None =>
+          val loader = getClassLoader(context)
+          // the class loader and the generated classes are reused by subsequent evaluations in this debuggee
+          loader.disableCollection()
+          generatedClass.setClassLoader(process, loader)
+          loader
+      }
     }
     catch {
       case e: Exception =>
         throw new EvaluateException("Error creating evaluation class loader:\n " + e, e)
     }
 
+    val wasCompiled = generatedClass.isCompiled
+
     try {
       defineClasses(generatedClass.compiledClasses, context, process, classLoader)
     }
@@ -74,7 +86,7 @@ class ScalaCompilingEvaluator(psiContext: PsiElement, fragment: ScalaCodeFragmen
         throw new EvaluateException("Error during classes definition:\n " + e, e)
     }
 
-    try {
+    val result = try {
       val evaluator = callEvaluator(context)
       context.asInstanceOf[EvaluationContextImpl].setClassLoader(classLoader)
       evaluator.evaluate(context)
@@ -83,6 +95,11 @@ class ScalaCompilingEvaluator(psiContext: PsiElement, fragment: ScalaCodeFragmen
       case e: Exception =>
         throw new EvaluateException("Error during generated code invocation:\n " + e, e)
     }
+
+    if (wasCompiled) compiledEvaluators.evaluatedWithoutCompilation()
+    else compiledEvaluators.compiled()
+
+    result
   }
 
   private def callEvaluator(evaluationContext: EvaluationContext): ExpressionEvaluator =
@@ -97,7 +114,7 @@ class ScalaCompilingEvaluator(psiContext: PsiElement, fragment: ScalaCodeFragmen
     if (classes.isEmpty) throw EvaluationException("Could not compile generated class")
     val proxy: VirtualMachineProxyImpl = process.getVirtualMachineProxy.asInstanceOf[VirtualMachineProxyImpl]
     def alreadyDefined(clsName: String) = {
-      proxy.classesByName(clsName).asScala.exists(refType => refType.isPrepared)
+      proxy.classesByName(clsName).asScala.exists(refType => refType.isPrepared && refType.classLoader == classLoader)
     }
 
     val classLoaderType = classLoader.referenceType.asInstanceOf[ClassType]
@@ -168,25 +185,65 @@ object ScalaCompilingEvaluator {
   }
 }
 
-class OutputFileObject(file: File, val origName: String) {
+/**
+ * Bytes of a compiled class are loaded once the class is compiled, because compiled classes are cached
+ * longer than the temporary output directory of the compiler, which is deleted when a debugger session ends.
+ */
+class OutputFileObject(bytes: Array[Byte], val origName: String) {
   private def getUri(name: String): URI = {
     URI.create("memo:///" + name.replace('.', '/') + ".class")
   }
 
   def getName: String = getUri(origName).getPath
-  def toByteArray: Array[Byte] = FileUtil.loadFileBytes(file)
+  def toByteArray: Array[Byte] = bytes
 }
 
-private case class GeneratedClass(syntheticFile: PsiFile, newContext: PsiElement, generatedClassName: String) {
+object OutputFileObject {
+  def load(file: File, origName: String): OutputFileObject =
+    new OutputFileObject(FileUtil.loadFileBytes(file), origName)
+}
+
+private[evaluation] case class GeneratedClass(syntheticFile: PsiFile, newContext: PsiElement, generatedClassName: String) {
 
   private val module: Module = inReadAction {
     val originalFile = syntheticFile.getUserData(ScalaCompilingEvaluator.originalFileKey)
     Option(originalFile).map(findModuleForPsiElement).orNull
   }
 
+  private var compiled: Option[Seq[OutputFileObject]] = None
+
+  // class loaders belong to virtual machines of debug processes
+  private val classLoaders = new ConcurrentHashMap[DebugProcess, ClassLoaderReference]
+
+  private[evaluator] def classLoader(process: DebugProcess): Option[ClassLoaderReference] =
+    Option(classLoaders.get(process)).filterNot(_.isCollected)
+
+  private[evaluator] def setClassLoader(process: DebugProcess, loader: ClassLoaderReference): Unit =
+    Option(classLoaders.put(process, loader)).foreach(enableCollection)
+
   val callText = s"new $generatedClassName().$generatedMethodName()"
 
-  def compiledClasses: Seq[OutputFileObject] = compileGeneratedClass(syntheticFile.getText)
+  def isCompiled: Boolean = synchronized(compiled.isDefined)
+
+  def compiledClasses: Seq[OutputFileObject] = synchronized {
+    compiled.getOrElse {
+      val classes = compileGeneratedClass(syntheticFile.getText)
+      compiled = Some(classes)
+      classes
+    }
+  }
+
+  def dispose(process: DebugProcess): Unit =
+    Option(classLoaders.remove(process)).foreach(enableCollection)
+
+  def dispose(): Unit = {
+    classLoaders.values.forEach(enableCollection)
+    classLoaders.clear()
+  }
+
+  // the virtual machine may be already disconnected
+  private def enableCollection(loader: ClassLoaderReference): Unit =
+    Try(loader.enableCollection())
 
   private def compileGeneratedClass(fileText: String): Seq[OutputFileObject] = {
     if (module == null) throw EvaluationException("Module for compilation is not found")
@@ -196,7 +253,7 @@ private case class GeneratedClass(syntheticFile: PsiFile, newContext: PsiElement
     }
     val compiled = helper.compile(fileText, module)
     compiled.collect {
-      case (f, name) if name.contains(generatedClassName) => new OutputFileObject(f, name)
+      case (f, name) if name.contains(generatedClassName) => OutputFileObject.load(f, name)
     }
   }
 }
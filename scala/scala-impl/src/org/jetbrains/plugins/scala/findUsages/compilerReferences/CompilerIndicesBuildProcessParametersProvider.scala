@@ -1,16 +1,25 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences
 
 import java.util
-import java.util.Collections
 
 import com.intellij.compiler.server.BuildProcessParametersProvider
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.registry.Registry
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.indices.ScalaCompilerIndices
 import org.jetbrains.plugin.scala.compilerReferences.Builder
 
+import scala.collection.JavaConverters._
+
 class CompilerIndicesBuildProcessParametersProvider(project: Project) extends BuildProcessParametersProvider {
-  override def getVMArguments: util.List[String] =
-    if (upToDateCompilerIndexExists(project, ScalaCompilerIndices.version))
-      Collections.emptyList()
-    else Collections.singletonList(s"""-D${Builder.rebuildPropertyKey}=true""")
+  override def getVMArguments: util.List[String] = {
+    val rebuild =
+      if (upToDateCompilerIndexExists(project, ScalaCompilerIndices.version)) None
+      else                                                                    Option(s"""-D${Builder.rebuildPropertyKey}=true""")
+
+    val streamReferences =
+      if (Registry.is(Builder.streamReferencesPropertyKey)) Option(s"""-D${Builder.streamReferencesPropertyKey}=true""")
+      else                                                  None
+
+    (rebuild ++ streamReferences).toList.asJava
+  }
 }
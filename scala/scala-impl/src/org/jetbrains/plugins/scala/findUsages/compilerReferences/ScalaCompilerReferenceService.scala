@@ -17,6 +17,7 @@ import com.intellij.psi.{PsiClass, PsiDocumentManager, PsiElement}
 import com.intellij.util.containers.ContainerUtil
 import org.jetbrains.jps.backwardRefs.CompilerRef
 import org.jetbrains.jps.backwardRefs.index.CompilerReferenceIndex
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.SourceReferences
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.compilation._
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.indices.IndexerFailure._
@@ -118,6 +119,11 @@ private[findUsages] class ScalaCompilerReferenceService(
       }))
     }
 
+    override def processStreamedReferences(references: Seq[SourceReferences]): Unit = {
+      indexerScheduler.schedule(RegisterStreamedReferences(references))
+      logger.debug(s"[compiler indices] processStreamedReferences. sources: ${references.size}")
+    }
+
     override def finishIndexing(): Unit = {
       indexerScheduler.schedule(CloseWriter(_.foreach(processIndexingFailure)))
       logCompilerIndicesEvent("finishIndexing.")
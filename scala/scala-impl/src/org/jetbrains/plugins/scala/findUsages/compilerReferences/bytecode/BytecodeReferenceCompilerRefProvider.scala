@@ -3,6 +3,7 @@ package bytecode
 
 import org.jetbrains.jps.backwardRefs.CompilerRef
 import org.jetbrains.jps.backwardRefs.CompilerRef.{JavaCompilerFieldRef, JavaCompilerMethodRef}
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.{FieldReference, MemberReference, MethodReference}
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.indices.ScalaCompilerReferenceWriter
 
 private class BytecodeReferenceCompilerRefProvider(writer: ScalaCompilerReferenceWriter)
@@ -1,22 +1,17 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences
 package bytecode
 
-import java.{util => ju}
 import java.io._
 import java.nio.charset.StandardCharsets
-import java.util.regex.Pattern
+import java.nio.file.Files
 
+import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.vfs.VirtualFile
-import com.intellij.util.BitUtil.isSet
-import org.jetbrains.org.objectweb.asm.Opcodes._
-import org.jetbrains.org.objectweb.asm._
-import org.jetbrains.plugins.scala.decompiler.Decompiler.{BYTES_VALUE, SCALA_LONG_SIG_ANNOTATION, SCALA_SIG_ANNOTATION}
+import org.jetbrains.plugin.scala.compilerReferences.bytecode._
 import org.jetbrains.plugins.scala.decompiler.scalasig._
 import org.jetbrains.plugins.scala.extensions.using
 
 import scala.annotation.tailrec
-import scala.collection.mutable
-import scala.collection.JavaConverters._
 import scala.reflect.NameTransformer
 import scala.reflect.internal.pickling.ByteCodecs
 
@@ -69,175 +64,94 @@ private[compilerReferences] object ClassfileParser {
     }
   }
 
-  def parse(classFiles: Set[File]): Set[ParsedClass] = {
-    val outer = classFiles.minBy(_.getPath.length)
+  /**
+   * Parses all class files generated from a single source, every file is read only once.
+   */
+  def parse(classFiles: Set[File]): Set[ParsedClass] =
+    parse(classFiles.iterator.map(file => file -> ReferenceExtractor.extract(Files.readAllBytes(file.toPath))).toMap)
 
-    val scalaSig = using(new FileInputStream(outer)) { in =>
-      val reader  = new ClassReader(in)
-      val visitor = new ScalaSigVisitor(outer.getPath)
-      reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES)
-      visitor.scalaSig
-    }
+  /**
+   * Builds parsed classes of a source from references streamed by the build process, without reading class files.
+   */
+  def parse(references: SourceReferences): Set[ParsedClass] = parse(references.classes)
+
+  private[this] def parse(classes: Map[File, ExtractedClass]): Set[ParsedClass] = {
+    val outer = classes.keys.minBy(_.getPath.length)
 
-    val synthetics: Set[String] = scalaSig.fold(Set.empty[String])(
-      _.syntheticSymbols().map(_.qualifiedName)(collection.breakOut)
-    )
+    val synthetics: Set[String] = classes(outer).scalaSignature
+      .flatMap(scalaSig(_, outer.getPath))
+      .fold(Set.empty[String])(_.syntheticSymbols().map(_.qualifiedName)(collection.breakOut))
 
-    classFiles.map(parse(_, synthetics))
+    classes.valuesIterator.map(toParsedClass(_, synthetics)).toSet
   }
 
-  private[this] class ScalaSigVisitor(file: String) extends ClassVisitor(Opcodes.ASM6) {
-    var scalaSig: Option[ScalaSig] = None
-
-    override def visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor = desc match {
-      case SCALA_SIG_ANNOTATION | SCALA_LONG_SIG_ANNOTATION =>
-        new AnnotationVisitor(ASM6) {
-          override def visit(name: String, value: scala.Any): Unit =
-            if (name == BYTES_VALUE) {
-              val bytes = value.asInstanceOf[String].getBytes(StandardCharsets.UTF_8)
-              ByteCodecs.decode(bytes)
-              scalaSig = Option(Parser.parseScalaSig(bytes, file))
-            }
-        }
-      case _ => null
-    }
+  private[this] def scalaSig(signature: String, file: String): Option[ScalaSig] = {
+    val bytes = signature.getBytes(StandardCharsets.UTF_8)
+    ByteCodecs.decode(bytes)
+    Option(Parser.parseScalaSig(bytes, file))
   }
 
   def parse(is: InputStream, synthetics: Set[String] = Set.empty): ParsedClass = using(is) { in =>
-    val reader  = new ClassReader(in)
-    val visitor = new ParsingVisitor(synthetics)
-    reader.accept(visitor, ClassReader.SKIP_FRAMES)
-    visitor.result
+    parse(FileUtil.loadBytes(in), synthetics)
   }
 
   def parse(bytes: Array[Byte], synthetics: Set[String]): ParsedClass =
-    parse(new ByteArrayInputStream(bytes), synthetics)
+    toParsedClass(ReferenceExtractor.extract(bytes), synthetics)
 
   def parse(file: File, synthetics: Set[String]): ParsedClass =
-    parse(new BufferedInputStream(new FileInputStream(file)), synthetics)
+    parse(Files.readAllBytes(file.toPath), synthetics)
 
   def parse(vfile: VirtualFile, synthetics: Set[String]): ParsedClass =
-    parse(vfile.getInputStream, synthetics)
-
-  private[this] val pattern = Pattern.compile("/")
-  private[this] def fqnFromInternalName(internal: String): String  = pattern.matcher(internal).replaceAll(".")
-  private[this] def isFunExprClassname(name:      String): Boolean = name.contains("$anonfun$")
-
-  private[this] trait ReferenceCollector {
-    def handleMemberRef(ref:   MemberReference): Unit
-    def handleSAMRef(ref:      FunExprInheritor): Unit
-    def handleLineNumber(line: Int): Unit
-  }
-
-  private[this] class ParsingVisitor(synthetics: Set[String]) extends ClassVisitor(ASM6) {
-    private[this] var internalName: String                             = _
-    private[this] var className: String                                = _
-    private[this] var isAnon: Boolean                                  = false
-    private[this] val superNames: mutable.Builder[String, Set[String]] = Set.newBuilder[String]
-    private[this] val innerRefs: ju.List[MemberReference]              = new ju.ArrayList[MemberReference]()
-    private[this] val funExprs: ju.List[FunExprInheritor]              = new ju.ArrayList[FunExprInheritor]()
-    private[this] var earliestSeen: Option[Int]                        = None
-
-    private[this] val methodVisitor = new MethodVisitor(ASM6) with ReferenceInMethodCollector {
-      override def handleMemberRef(ref: MemberReference): Unit  = innerRefs.add(ref)
-      override def handleSAMRef(ref:    FunExprInheritor): Unit = funExprs.add(ref)
-
-      override def handleLineNumber(line: Int): Unit =
-        if (isFunExprClassname(className) && earliestSeen.forall(_ > line))
-          earliestSeen = Option(line)
-    }
-
-    override def visit(
-      version:    Int,
-      access:     Int,
-      name:       String,
-      signature:  String,
-      superName:  String,
-      interfaces: Array[String]
-    ): Unit = {
-      internalName = name
-      className    = fqnFromInternalName(internalName)
-      superNames += fqnFromInternalName(superName)
-
-      if (interfaces != null) {
-        interfaces.map(fqnFromInternalName).foreach(superNames += _)
-      }
-    }
-
-    override def visitInnerClass(name: String, outerName: String, innerName: String, access: Int): Unit =
-      if (name == internalName) isAnon = innerName == null
-
-    /**
-      * We are only interested in static bytecode entries if it is one of the following:
-      * 1. Static initializer in trait/object ($init$, <clinit>)
-      * 2. Bodies of anonymous functions ($anonfun$).
-      *
-      * This avoids indexing various flavours of static forwarders generated by scalac.
-      */
-    private[this] def isStaticForwarder(access: Int, name: String): Boolean =
-      isSet(access, ACC_STATIC) &&
-        name != "<clinit>" &&
-        name != "$init$" &&
-        !name.contains("$anonfun$")
-
-    private[this] def isSynthetic(access: Int, name: String): Boolean = {
-      val simpleClassName = className.split("\\.").lastOption.getOrElse("")
-      synthetics.contains(s"$simpleClassName.$name")
-    }
+    parse(vfile.contentsToByteArray(), synthetics)
 
-    override def visitMethod(
-      access:     Int,
-      name:       String,
-      desc:       String,
-      signature:  String,
-      exceptions: Array[String]
-    ): MethodVisitor =
-      if (isStaticForwarder(access, name) || isSynthetic(access, name)) null
-      else                                                              methodVisitor
+  private[this] def isFunExprClassname(name: String): Boolean = name.contains("$anonfun$")
 
+  private[bytecode] def toParsedClass(extracted: ExtractedClass, synthetics: Set[String]): ParsedClass = {
+    val className       = extracted.fqn
+    val simpleClassName = className.split("\\.").lastOption.getOrElse("")
+    val methods         = extracted.methods.filterNot(method => synthetics.contains(s"$simpleClassName.${method.name}"))
 
-    def result: ParsedClass = {
-      val classInfo = ClassInfo(isAnon, className, superNames.result())
-      val refs      = innerRefs.asScala
+    val classInfo = ClassInfo(extracted.isAnonymous, className, extracted.superClasses)
+    val (refs, funExprs) = resolveLines(methods)
 
-      if (isFunExprClassname(className)) FunExprClass(classInfo, refs, earliestSeen.getOrElse(-1))
-      else                               RegularClass(classInfo, refs, funExprs.asScala)
-    }
+    if (isFunExprClassname(className)) {
+      val lines = methods.map(_.firstLine).filter(_ != -1)
+      FunExprClass(classInfo, refs, if (lines.isEmpty) -1 else lines.min)
+    } else RegularClass(classInfo, refs, funExprs)
   }
 
-  private[this] trait ReferenceInMethodCollector extends ReferenceCollector {
-    self: MethodVisitor =>
-
-    private[this] var currentLineNumber = -1
-
-    private[this] def handleMemberRef(
-      owner:   String,
-      name:    String
-    )(builder: (String, String, Int) => MemberReference): Unit = {
-      val ownerFqn = fqnFromInternalName(owner)
-      val ref      = builder(ownerFqn, name, currentLineNumber)
-      handleMemberRef(ref)
-    }
-
-    override def visitLineNumber(line: Int, start: Label): Unit = {
-      currentLineNumber = line
-      handleLineNumber(line)
-    }
-
-    override def visitMethodInsn(opcode: Int, owner: String, name: String, desc: String, itf: Boolean): Unit =
-      if (currentLineNumber != -1) {
-        val argsCount = Type.getArgumentTypes(desc).length
-        handleMemberRef(owner, name)(MethodReference(_, _, _, argsCount))
+  /**
+   * References preceding the first line number of a method belong to the last line of the previous method,
+   * references before any line number of the class are dropped.
+   */
+  private[this] def resolveLines(methods: Seq[MethodReferences]): (Seq[MemberReference], Seq[FunExprInheritor]) = {
+    val refs     = Seq.newBuilder[MemberReference]
+    val funExprs = Seq.newBuilder[FunExprInheritor]
+    var previousLine = -1
+
+    def lineOf(line: Int): Int = if (line == -1) previousLine else line
+
+    methods.foreach { method =>
+      method.refs.foreach { ref =>
+        lineOf(ref.line) match {
+          case -1   =>
+          case line => refs += withLine(ref, line)
+        }
       }
-
-    override def visitInvokeDynamicInsn(name: String, desc: String, bsm: Handle, bsmArgs: AnyRef*): Unit =
-      if (currentLineNumber != -1 && bsm.getOwner == "java/lang/invoke/LambdaMetafactory") {
-        val samType = Type.getReturnType(desc)
-        val ref     = FunExprInheritor(samType.getClassName, currentLineNumber)
-        handleSAMRef(ref)
+      method.funExprs.foreach { funExpr =>
+        lineOf(funExpr.line) match {
+          case -1   =>
+          case line => funExprs += funExpr.copy(line = line)
+        }
       }
+      if (method.lastLine != -1) previousLine = method.lastLine
+    }
+    (refs.result(), funExprs.result())
+  }
 
-    override def visitFieldInsn(opcode: Int, owner: String, name: String, desc: String): Unit =
-      if (currentLineNumber != -1) handleMemberRef(owner, name)(FieldReference)
+  private[this] def withLine(ref: MemberReference, line: Int): MemberReference = ref match {
+    case _ if ref.line == line   => ref
+    case field: FieldReference   => field.copy(line = line)
+    case method: MethodReference => method.copy(line = line)
   }
 }
@@ -5,6 +5,7 @@ import java.io.File
 import java.{util => ju}
 
 import org.jetbrains.jps.backwardRefs.CompilerRef
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.{FieldReference, MethodReference}
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.indices.{ScFunExprCompilerRef, ScalaCompilerReferenceWriter}
 
 private[findUsages] final case class CompiledScalaFile private (
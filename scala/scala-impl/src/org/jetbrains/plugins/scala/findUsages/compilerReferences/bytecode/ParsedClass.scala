@@ -1,5 +1,7 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences.bytecode
 
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.{FunExprInheritor, MemberReference}
+
 /**
  * @param fqn          Fully quialified name of a class.
  * @param superClasses Fully qualified names of all super classes/interfaces.
@@ -10,47 +12,6 @@ private[compilerReferences] final case class ClassInfo(
   superClasses: Set[String]
 )
 
-/**
- * Represents a reference to a method or field in compiled class file
- */
-private[compilerReferences] sealed trait MemberReference {
-
-  /**
-   * Fqn of an enclosing class
-   */
-  def owner: String
-
-  /**
-   * Field/method name
-   */
-  def name: String
-
-  /**
-   * Line of occurence in source file, or -1 if indeterminable
-   */
-  def line: Int
-
-  def fqn: String = s"$owner.$name"
-}
-
-private[compilerReferences] final case class FieldReference(
-  override val owner: String,
-  override val name:  String,
-  override val line:  Int
-) extends MemberReference
-
-private[compilerReferences] final case class MethodReference(
-  override val owner: String,
-  override val name:  String,
-  override val line:  Int,
-  args:               Int
-) extends MemberReference
-
-private[compilerReferences] final case class FunExprInheritor(
-  interface: String,
-  line:      Int
-)
-
 private[compilerReferences] sealed trait ParsedClass {
   def classInfo: ClassInfo
   def refs: Seq[MemberReference]
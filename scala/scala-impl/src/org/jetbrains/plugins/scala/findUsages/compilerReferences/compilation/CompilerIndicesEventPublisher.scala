@@ -1,5 +1,6 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences.compilation
 
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.SourceReferences
 import org.jetbrains.plugins.scala.indices.protocol.CompilationInfo
 
 /**
@@ -14,5 +15,6 @@ private[compilerReferences] trait CompilerIndicesEventPublisher {
   def onCompilationFinish(success: Boolean): Unit                           = ()
   def startIndexing(isCleanBuild: Boolean): Unit                            = ()
   def processCompilationInfo(info: CompilationInfo, offline: Boolean): Unit = ()
+  def processStreamedReferences(references: Seq[SourceReferences]): Unit    = ()
   def finishIndexing(): Unit                                                = ()
 }
@@ -44,6 +44,13 @@ private[compilerReferences] class JpsCompilationWatcher(
           },
           publisher.processCompilationInfo(_, offline = false)
         )
+      case Messages.streamedReferencesType =>
+        Messages.decompressReferences(messageText).fold(
+          error => {
+            publisher.onError("Malformed streamed references from builder", Option(error))
+          },
+          publisher.processStreamedReferences
+        )
       case Messages.compilationStartedType =>
         val isCleanBuild = java.lang.Boolean.valueOf(messageText)
         buildCompilationDiff -= 1
@@ -3,13 +3,15 @@ package indices
 
 import java.io.File
 import java.util.concurrent._
-import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.{AtomicReference, LongAdder}
+import java.{util => ju}
 
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.progress.{ProgressIndicator, Task}
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Disposer
 import com.intellij.util.containers.ContainerUtil
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.SourceReferences
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.bytecode.{ClassfileParser, CompiledScalaFile}
 import org.jetbrains.plugins.scala.findUsages.compilerReferences.indices.IndexerFailure._
@@ -24,6 +26,8 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
 
   private[this] val indexerJobQueue = new ConcurrentLinkedQueue[IndexerJob]()
   private[this] val nThreads        = Runtime.getRuntime.availableProcessors()
+  // the writer stage runs in the indexing task thread
+  private[this] val nParsingThreads = math.max(nThreads - 1, 1)
 
   private[this] var indexingExecutor: ExecutorService                 = _
   private[this] var indexWriter: Option[ScalaCompilerReferenceWriter] = None
@@ -31,6 +35,9 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
   private[this] val jobFailures  = ContainerUtil.newConcurrentSet[IndexerJobFailure]()
   private[this] val fatalFailure = new AtomicReference[Option[Throwable]](Option.empty)
 
+  // references extracted by the build process, by source file, consumed instead of reading class files
+  private[this] val streamedReferences = new ConcurrentHashMap[File, SourceReferences]()
+
   Disposer.register(project, () => shutdown())
 
   private[this] def shutdown(): Unit =
@@ -48,25 +55,87 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
   private[this] def checkInterruptStatus(): Unit =
     if (Thread.interrupted()) throw new InterruptedException
 
-  private def parseClassfiles(writer: ScalaCompilerReferenceWriter): Unit =
+  /**
+   * Parsing stage: parses class files of a source and hands the result over to the writer stage,
+   * blocks while the hand-off queue is full.
+   */
+  private def parseClassfiles(writer: ScalaCompilerReferenceWriter,
+                              parsed: BlockingQueue[ParsedJob],
+                              stats: PipelineStatistics): Unit =
     try {
       while (!indexerJobQueue.isEmpty) {
         checkInterruptStatus()
         val job = indexerJobQueue.poll()
 
-        try job match {
-          case ProcessRemovedSource(file) => writer.processDeletedFile(file.getPath)
+        val result = try job match {
+          case ProcessRemovedSource(_) => Option(ParsedJob(job, None))
           case ProcessGeneratedClasses(classes) =>
+            val start      = System.nanoTime()
             val sourceFile = classes.head.source // guaranteed to be non-empty
             val classfiles = classes.map(_.output)
-            val parsed     = ClassfileParser.parse(classfiles)
-            val data       = CompiledScalaFile(sourceFile, parsed, writer)
-            writer.registerClassfileData(data)
-          case null => ()
-        } catch { case NonFatal(e) => jobFailures.add(IndexerJobFailure(job, e)) }
+            val parsedData = Option(streamedReferences.remove(sourceFile)) match {
+              case Some(streamed) if streamed.classes.keySet == classfiles =>
+                stats.streamed.increment()
+                ClassfileParser.parse(streamed)
+              case _ => ClassfileParser.parse(classfiles)
+            }
+            val data       = CompiledScalaFile(sourceFile, parsedData, writer)
+            stats.parsing.add(System.nanoTime() - start)
+            Option(ParsedJob(job, Option(data)))
+          case null => None
+        } catch {
+          case NonFatal(e) =>
+            jobFailures.add(IndexerJobFailure(job, e))
+            None
+        }
+
+        result.foreach { parsedJob =>
+          val start = System.nanoTime()
+          parsed.put(parsedJob)
+          stats.handOffWait.add(System.nanoTime() - start)
+        }
       }
     } catch { case e: Throwable => onException(e, shouldClearIndex = false) }
 
+  /**
+   * Writer stage: the only stage which writes to the index, commits parsed jobs in batches
+   * until all parsing stages are finished and the hand-off queue is drained.
+   */
+  private def writeParsed(writer: ScalaCompilerReferenceWriter,
+                          parsed: BlockingQueue[ParsedJob],
+                          parsingDone: => Boolean,
+                          stats: PipelineStatistics): Unit = {
+    val batch = new ju.ArrayList[ParsedJob](WriterBatchSize)
+
+    def writeBatch(): Unit = {
+      val start = System.nanoTime()
+      batch.asScala.foreach { case ParsedJob(job, data) =>
+        try job match {
+          case ProcessRemovedSource(file) => writer.processDeletedFile(file.getPath)
+          case _                          => data.foreach(writer.registerClassfileData)
+        } catch { case NonFatal(e) => jobFailures.add(IndexerJobFailure(job, e)) }
+      }
+      stats.writing.add(System.nanoTime() - start)
+      stats.batches.increment()
+      batch.clear()
+    }
+
+    var finished = false
+    while (!finished) {
+      checkInterruptStatus()
+      // the flag is read before draining, so nothing put by a finished parsing stage can be missed
+      val lastRound = parsingDone
+
+      Option(parsed.poll(WriterPollIntervalMs, TimeUnit.MILLISECONDS)).foreach { first =>
+        batch.add(first)
+        parsed.drainTo(batch, WriterBatchSize - 1)
+        writeBatch()
+      }
+
+      finished = lastRound && parsed.isEmpty
+    }
+  }
+
   private[this] def initialiseExecutorIfNeeded(): Unit =
     if (isShutdown) indexingExecutor = Executors.newFixedThreadPool(nThreads)
 
@@ -88,6 +157,10 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
         onFinish(maybeFailure)
       }
       case ProcessCompilationInfo(info, onFinish) => new IndexCompilationInfoTask(info, onFinish)
+      case RegisterStreamedReferences(references) =>
+        task(project, "Registering streamed compiler references") { _ =>
+          references.foreach(record => streamedReferences.put(record.source, record))
+        }
       case InvalidateIndex(index) =>
         task(project, "Invalidating compiler indices") { _ =>
           index.foreach(_.close())
@@ -103,6 +176,7 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
     } finally {
       indexWriter = None
       jobFailures.clear()
+      streamedReferences.clear()
       fatalFailure.set(Option.empty)
     }
 
@@ -123,9 +197,21 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
               case (_, classes) => indexerJobQueue.add(ProcessGeneratedClasses(classes))
             }
 
-            val tasks = (1 to nThreads).map(_ => toCallable(parseClassfiles(writer)))
+            val parsed = new ArrayBlockingQueue[ParsedJob](HandOffQueueCapacity)
+            val stats  = new PipelineStatistics
+            val parsingStages = (1 to nParsingThreads).map { _ =>
+              indexingExecutor.submit(toCallable(parseClassfiles(writer, parsed, stats)))
+            }
 
-            indexingExecutor.invokeAll(tasks.asJavaCollection)
+            try writeParsed(writer, parsed, parsingStages.forall(_.isDone), stats)
+            catch {
+              case e: Throwable =>
+                // parsing stages may be blocked on the full hand-off queue
+                parsingStages.foreach(_.cancel(true))
+                throw e
+            }
+
+            log.debug(s"Indexing pipeline: $stats")
           } catch {
             case e: Throwable => onException(e, shouldClearIndex = true)
           } finally callback()
@@ -148,6 +234,29 @@ private class CompilerReferenceIndexer(project: Project, expectedIndexVersion: I
 private[compilerReferences] object CompilerReferenceIndexer {
   private val log = Logger.getInstance(classOf[CompilerReferenceIndexer])
 
+  private val HandOffQueueCapacity = 256
+  private val WriterBatchSize      = 64
+  private val WriterPollIntervalMs = 50
+
+  private final case class ParsedJob(job: IndexerJob, data: Option[CompiledScalaFile])
+
+  /**
+   * Cumulative time spent in every stage of the indexing pipeline, in nanoseconds.
+   */
+  private final class PipelineStatistics {
+    val parsing: LongAdder     = new LongAdder
+    val handOffWait: LongAdder = new LongAdder
+    val writing: LongAdder     = new LongAdder
+    val batches: LongAdder     = new LongAdder
+    val streamed: LongAdder    = new LongAdder
+
+    private def millis(adder: LongAdder): Long = TimeUnit.NANOSECONDS.toMillis(adder.sum())
+
+    override def toString: String =
+      s"parsing ${millis(parsing)} ms, waiting for the writer ${millis(handOffWait)} ms, " +
+        s"writing ${millis(writing)} ms in ${batches.sum()} batches, ${streamed.sum()} sources from streamed references"
+  }
+
   private[compilerReferences] final case class IndexerJobFailure(job: IndexerJob, cause: Throwable) {
     def errorMessage: String = s"Indexer job $job failed."
 
@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences.indices
 
 import org.jetbrains.jps.backwardRefs.index.CompilerReferenceIndex
+import org.jetbrains.plugin.scala.compilerReferences.bytecode.SourceReferences
 import org.jetbrains.plugins.scala.indices.protocol.CompilationInfo
 
 sealed trait IndexingStage
@@ -11,6 +12,10 @@ object IndexingStage {
 
   final case class OpenWriter(isCleanBuild: Boolean)                                 extends IndexingStage
   final case class ProcessCompilationInfo(data: CompilationInfo, onFinish: Callback) extends IndexingStage
+  final case class RegisterStreamedReferences(references: Seq[SourceReferences])     extends IndexingStage {
+    // jobs are logged when scheduled, references of a big chunk are too many to print
+    override def toString: String = s"RegisterStreamedReferences(${references.size} sources)"
+  }
   final case class CloseWriter(onFinish: IndexingHandler)                            extends IndexingStage
   final case class InvalidateIndex(index: Option[CompilerReferenceIndex[_]])         extends IndexingStage
 }
@@ -41,6 +41,7 @@ public final class ScalaLexer extends Lexer {
   private static final String XML_BEGIN_PATTERN = "<\\w";
   private static final int MASK = 0x3F;
   private static final int XML_SHIFT = 6;
+  private static final int NON_INITIAL_STATE = 239;
 
   private final ScalaPlainLexer myScalaPlainLexer;
   private final ScalaXmlLexer myXmlLexer;
@@ -66,6 +67,9 @@ public final class ScalaLexer extends Lexer {
    */
   private IElementType previousToken = null;
 
+  // state of the plain lexer at the start of the current token, -1 if the token was produced by the XML lexer
+  private int myTokenStartScalaState = 0;
+
   @Deprecated
   public ScalaLexer() {
     this(false, null);
@@ -96,18 +100,33 @@ public final class ScalaLexer extends Lexer {
     myBuffer = buffer;
     myBufferEnd = endOffset;
     myTokenType = null;
+    myTokenStartScalaState = initialState & MASK;
   }
 
   public int getState() {
     locateToken();
-    int state = 0;
-    if (myLayeredTagStack.size() > 0) state = 239;
-    if (myXmlState != 0 || isXmlTokenType(previousToken)) state = 239;
-    int scalaState = myScalaPlainLexer.getState();
-    if (scalaState != 0) state = 239;
     // work-around for the strange advance()-related assumption / behavior in locateToken()
     if (myTokenStart == 0) return 0;
-    return state;
+    if (myLayeredTagStack.size() > 0) return NON_INITIAL_STATE;
+    if (myXmlState != 0 || isXmlTokenType(previousToken)) return NON_INITIAL_STATE;
+    return isRestartable(myScalaPlainLexer.getState()) ? 0 : NON_INITIAL_STATE;
+  }
+
+  /**
+   * The plain lexer is already advanced past the current token, so its state is the state after the token.
+   * <p>
+   * Lexing can be restarted from the initial state at the current token not only when this state is initial,
+   * but also after a regular token outside of interpolated strings, if the token itself was lexed in such a state:
+   * the initial state differs from it only by recognizing an XML literal at the token start.
+   * This allows incremental highlighting to restart at almost any token of regular code instead of the nearest whitespace.
+   */
+  private boolean isRestartable(int stateAfterToken) {
+    if (stateAfterToken == 0) return true;
+
+    int commonState = ScalaPlainLexer$.MODULE$.CommonState();
+    return stateAfterToken == commonState &&
+        (myTokenStartScalaState == 0 || myTokenStartScalaState == commonState) &&
+        !(myTokenStart < myBufferEnd && myBuffer.charAt(myTokenStart) == '<');
   }
 
   @Nullable
@@ -249,6 +268,7 @@ public final class ScalaLexer extends Lexer {
         if (myTokenType == null) return;
         locateTextRange();
       }
+      myTokenStartScalaState = myCurrentLexer == myScalaPlainLexer ? myScalaPlainLexer.getState() : -1;
       //we have to advance current lexer only if we didn't start scala plain lexer on this iteration
       //because of wrong behaviour of the latter ScalaPlainLexer
       myCurrentLexer.advance();
@@ -35,6 +35,12 @@ object ScalaPlainLexer {
   import core.{_ScalaCoreLexer => ScalaCoreLexer, _ScalaSplittingLexer => ScalaSplittingLexer}
   import scaladoc.parser.ScalaDocElementTypes.SCALA_DOC_COMMENT
 
+  /**
+   * State after a regular token outside of interpolated strings,
+   * lexing from it differs from the initial state only in not recognizing an XML literal.
+   */
+  val CommonState: Int = ScalaCoreLexer.COMMON_STATE << 1
+
   private object IsDisabled {
 
     import LayeredLexer.ourDisableLayersFlag
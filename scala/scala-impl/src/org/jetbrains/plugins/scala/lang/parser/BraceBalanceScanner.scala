@@ -0,0 +1,228 @@
+package org.jetbrains.plugins.scala
+package lang
+package parser
+
+import com.intellij.psi.tree.IErrorCounterReparseableElementType.{FATAL_ERROR, NO_ERRORS}
+
+/**
+ * Counts unbalanced braces (or parentheses) of a code block by scanning its characters, without lexing it into tokens.
+ *
+ * Comments, string and character literals, backquoted identifiers and injections of interpolated strings are skipped.
+ * Constructs which are not modelled exactly (XML literals, unclosed literals, literals in injections, etc.)
+ * are reported as [[BraceBalanceScanner.Unknown]], so that the caller falls back to the lexer.
+ */
+private[parser] object BraceBalanceScanner {
+
+  val Unknown: Int = -1
+
+  /**
+   * @return the same as [[ScCodeBlockElementType.getErrorsCount]]: number of unclosed braces, or `FATAL_ERROR` if the text
+   *         doesn't start with a brace or the first brace is closed before the end of the text; or [[Unknown]]
+   */
+  def errorsCount(text: CharSequence, left: Char = '{', right: Char = '}'): Int = {
+    val length = text.length
+    if (length == 0 || text.charAt(0) != left) return FATAL_ERROR
+
+    var balance = 1
+    var i = 1
+    while (i < length) {
+      text.charAt(i) match {
+        case `left` =>
+          balance += 1
+          i += 1
+        case `right` =>
+          balance -= 1
+          i += 1
+          if (balance == NO_ERRORS)
+            return if (i == length) NO_ERRORS else FATAL_ERROR
+        case '/' if isAt(text, i + 1, '/') =>
+          i = lineEnd(text, i)
+        case '/' if isAt(text, i + 1, '*') =>
+          i = skipBlockComment(text, i)
+        case '"' =>
+          i = stringKind(text, i) match {
+            case PlainString => skipString(text, i)
+            case InterpolatedString => skipInterpolatedString(text, i)
+            case _ => Unknown
+          }
+        case '\'' =>
+          i = skipCharacter(text, i)
+        case '`' =>
+          i = skipBackquoted(text, i)
+        case '<' if isXmlStart(text, i) =>
+          i = Unknown
+        case '#' if isAt(text, i + 1, '!') =>
+          i = Unknown
+        case _ =>
+          i += 1
+      }
+
+      if (i == Unknown) return Unknown
+    }
+    balance
+  }
+
+  private val PlainString = 0
+  private val InterpolatedString = 1
+
+  private def isAt(text: CharSequence, index: Int, char: Char): Boolean =
+    index < text.length && text.charAt(index) == char
+
+  private def isLineTerminator(char: Char): Boolean = char == '\n' || char == '\r'
+
+  private def isMultiLineQuote(text: CharSequence, index: Int): Boolean =
+    isAt(text, index, '"') && isAt(text, index + 1, '"') && isAt(text, index + 2, '"')
+
+  private def lineEnd(text: CharSequence, from: Int): Int = {
+    var i = from
+    while (i < text.length && !isLineTerminator(text.charAt(i))) i += 1
+    i
+  }
+
+  private def isXmlStart(text: CharSequence, index: Int): Boolean =
+    index + 1 < text.length && {
+      val next = text.charAt(index + 1)
+      Character.isJavaIdentifierStart(next) || next == '!' || next == '?'
+    }
+
+  private def isOperatorChar(char: Char): Boolean =
+    "!#%&*+-/:<=>?@\\^|~".indexOf(char) >= 0 || {
+      val charType = Character.getType(char)
+      charType == Character.MATH_SYMBOL || charType == Character.OTHER_SYMBOL
+    }
+
+  /**
+   * A string immediately following an identifier is interpolated, e.g. `s"..."`.
+   * Identifiers ending with an operator, e.g. `foo_+"..."`, are not modelled.
+   */
+  private def stringKind(text: CharSequence, quote: Int): Int = {
+    var i = quote - 1
+    val previous = text.charAt(i)
+    if (Character.isJavaIdentifierPart(previous)) {
+      while (i > 0 && Character.isJavaIdentifierPart(text.charAt(i - 1))) i -= 1
+      if (Character.isJavaIdentifierStart(text.charAt(i))) InterpolatedString else Unknown
+    } else if (isOperatorChar(previous)) {
+      while (i > 0 && isOperatorChar(text.charAt(i - 1))) i -= 1
+      if (text.charAt(i - 1) == '_') Unknown else PlainString
+    } else PlainString
+  }
+
+  // block comments are nested
+  private def skipBlockComment(text: CharSequence, start: Int): Int = {
+    var depth = 1
+    var i = start + 2
+    while (i < text.length) {
+      if (text.charAt(i) == '*' && isAt(text, i + 1, '/')) {
+        depth -= 1
+        i += 2
+        if (depth == 0) return i
+      } else if (text.charAt(i) == '/' && isAt(text, i + 1, '*')) {
+        depth += 1
+        i += 2
+      } else i += 1
+    }
+    Unknown
+  }
+
+  // quotes following the closing ones belong to the string, e.g. """a"""" is `a"`
+  private def skipMultiLineQuotes(text: CharSequence, closing: Int): Int = {
+    var i = closing + 3
+    while (isAt(text, i, '"')) i += 1
+    i
+  }
+
+  private def skipString(text: CharSequence, start: Int): Int = {
+    if (isMultiLineQuote(text, start)) {
+      var i = start + 3
+      while (i < text.length) {
+        if (isMultiLineQuote(text, i)) return skipMultiLineQuotes(text, i)
+        i += 1
+      }
+      Unknown
+    } else {
+      var i = start + 1
+      while (i < text.length) {
+        text.charAt(i) match {
+          case '"' => return i + 1
+          case '\\' if i + 1 < text.length && !isLineTerminator(text.charAt(i + 1)) => i += 2
+          case char if isLineTerminator(char) => return Unknown
+          case _ => i += 1
+        }
+      }
+      Unknown
+    }
+  }
+
+  private def skipInterpolatedString(text: CharSequence, start: Int): Int = {
+    val multiLine = isMultiLineQuote(text, start)
+    var i = if (multiLine) start + 3 else start + 1
+    while (i < text.length) {
+      text.charAt(i) match {
+        case '"' if multiLine =>
+          if (isMultiLineQuote(text, i)) return skipMultiLineQuotes(text, i)
+          i += 1
+        case '"' => return i + 1
+        case '$' if isAt(text, i + 1, '$') => i += 2
+        case '$' if isAt(text, i + 1, '{') =>
+          i = skipInjection(text, i + 1, multiLine)
+          if (i == Unknown) return Unknown
+        case '\\' if !multiLine && i + 1 < text.length && !isLineTerminator(text.charAt(i + 1)) => i += 2
+        case char if !multiLine && isLineTerminator(char) => return Unknown
+        case _ => i += 1
+      }
+    }
+    Unknown
+  }
+
+  /**
+   * Braces of an injection are balanced, so they don't change the balance of the block.
+   * Literals and comments in injections are lexed differently in single-line and multi-line strings, they are not modelled.
+   */
+  private def skipInjection(text: CharSequence, brace: Int, multiLine: Boolean): Int = {
+    var depth = 1
+    var i = brace + 1
+    while (i < text.length) {
+      text.charAt(i) match {
+        case '{' =>
+          depth += 1
+          i += 1
+        case '}' =>
+          depth -= 1
+          i += 1
+          if (depth == 0) return i
+        case '"' | '\'' | '`' => return Unknown
+        case '/' if isAt(text, i + 1, '/') || isAt(text, i + 1, '*') => return Unknown
+        case '<' if isXmlStart(text, i) => return Unknown
+        case char if !multiLine && isLineTerminator(char) => return Unknown
+        case _ => i += 1
+      }
+    }
+    Unknown
+  }
+
+  // character literals, e.g. '{' or '\n'; otherwise a quote starts a symbol literal
+  private def skipCharacter(text: CharSequence, start: Int): Int =
+    if (isAt(text, start + 1, '\\')) {
+      if (start + 3 < text.length && text.charAt(start + 2) != 'u' && text.charAt(start + 3) == '\'') start + 4
+      else Unknown
+    } else if (isAt(text, start + 2, '\'')) {
+      text.charAt(start + 1) match {
+        // the lexer of comments sees a string literal here
+        case '"' => Unknown
+        case char if isLineTerminator(char) => start + 1
+        case _ => start + 3
+      }
+    } else start + 1
+
+  private def skipBackquoted(text: CharSequence, start: Int): Int = {
+    var i = start + 1
+    while (i < text.length) {
+      text.charAt(i) match {
+        case '`' => return i + 1
+        case char if isLineTerminator(char) => return Unknown
+        case _ => i += 1
+      }
+    }
+    Unknown
+  }
+}
@@ -0,0 +1,43 @@
+package org.jetbrains.plugins.scala
+package lang
+package parser
+
+import com.intellij.lang.{ASTNode, Language}
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiElement
+import com.intellij.psi.tree.{ICompositeElementType, IErrorCounterReparseableElementType}
+import com.intellij.psi.util.PsiUtilCore
+
+/**
+ * Arguments of a call are reparsed on their own while the parentheses stay balanced,
+ * so an edit inside a long argument list doesn't recreate the enclosing block or file.
+ * Block arguments, e.g. `foo { ... }`, are reparsed as block expressions.
+ */
+abstract class ScArgumentsElementType extends IErrorCounterReparseableElementType(
+  "arguments of function",
+  ScalaLanguage.INSTANCE
+) with ICompositeElementType {
+
+  import lexer.ScalaTokenTypes.{tLPARENTHESIS => LeftParenthesis, tRPARENTHESIS => RightParenthesis}
+
+  override final def createCompositeNode: ASTNode = createNode(null)
+
+  override final def getErrorsCount(buf: CharSequence,
+                                    fileLanguage: Language,
+                                    project: Project): Int =
+    BraceBalanceScanner.errorsCount(buf, '(', ')') match {
+      case BraceBalanceScanner.Unknown => ScCodeBlockElementType.errorsCountByLexer(buf, LeftParenthesis, RightParenthesis)
+      case errorsCount => errorsCount
+    }
+}
+
+object ScArgumentsElementType {
+
+  object ArgumentExprs extends ScArgumentsElementType with SelfPsiCreator {
+
+    override def createNode(text: CharSequence): ASTNode = new psi.impl.expr.ScArgumentExprListImpl(this, text)
+
+    override def createElement(node: ASTNode): PsiElement = PsiUtilCore.NULL_PSI_ELEMENT
+  }
+
+}
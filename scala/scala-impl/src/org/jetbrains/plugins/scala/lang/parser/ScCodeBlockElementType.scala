@@ -5,7 +5,7 @@ package parser
 import com.intellij.lang.{ASTNode, Language}
 import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElement
-import com.intellij.psi.tree.{ICompositeElementType, IErrorCounterReparseableElementType}
+import com.intellij.psi.tree.{ICompositeElementType, IElementType, IErrorCounterReparseableElementType}
 import com.intellij.psi.util.PsiUtilCore
 
 import scala.annotation.tailrec
@@ -15,37 +15,46 @@ abstract class ScCodeBlockElementType extends IErrorCounterReparseableElementTyp
   ScalaLanguage.INSTANCE
 ) with ICompositeElementType {
 
-  import IErrorCounterReparseableElementType._
   import lexer.ScalaTokenTypes.{tLBRACE => LeftBrace, tRBRACE => RightBrace}
 
   override final def createCompositeNode: ASTNode = createNode(null)
 
+  /**
+   * Called on every change inside a block, so braces are counted by [[BraceBalanceScanner]] without lexing the block,
+   * unless it contains constructs the scanner doesn't model.
+   */
   override final def getErrorsCount(buf: CharSequence,
                                     fileLanguage: Language,
-                                    project: Project): Int = {
+                                    project: Project): Int =
+    BraceBalanceScanner.errorsCount(buf) match {
+      case BraceBalanceScanner.Unknown => ScCodeBlockElementType.errorsCountByLexer(buf, LeftBrace, RightBrace)
+      case errorsCount => errorsCount
+    }
+}
+
+object ScCodeBlockElementType {
+
+  import IErrorCounterReparseableElementType._
+
+  private[parser] def errorsCountByLexer(buf: CharSequence, left: IElementType, right: IElementType): Int = {
     val scalaLexer = new lexer.ScalaLexer
     scalaLexer.start(buf)
-    scalaLexer.getTokenType match {
-      case LeftBrace => iterate(1)(scalaLexer)
-      case _ => FATAL_ERROR
-    }
-  }
 
-  @tailrec
-  private def iterate(balance: Int)
-                     (implicit scalaLexer: lexer.ScalaLexer): Int = {
-    scalaLexer.advance()
-    scalaLexer.getTokenType match {
-      case null => balance
-      case _ if balance == NO_ERRORS => FATAL_ERROR
-      case LeftBrace => iterate(balance + 1)
-      case RightBrace => iterate(balance - 1)
-      case _ => iterate(balance)
+    @tailrec
+    def iterate(balance: Int): Int = {
+      scalaLexer.advance()
+      scalaLexer.getTokenType match {
+        case null => balance
+        case _ if balance == NO_ERRORS => FATAL_ERROR
+        case `left` => iterate(balance + 1)
+        case `right` => iterate(balance - 1)
+        case _ => iterate(balance)
+      }
     }
-  }
-}
 
-object ScCodeBlockElementType {
+    if (scalaLexer.getTokenType == left) iterate(1)
+    else FATAL_ERROR
+  }
 
   object BlockExpression extends ScCodeBlockElementType with SelfPsiCreator {
 
@@ -395,9 +395,7 @@ object ScalaElementType {
   val GUARD: ScalaElementType = new ScalaElementType("guard") {
     override def createElement(node: ASTNode) = new ScGuardImpl(node)
   }
-  val ARG_EXPRS: ScalaElementType = new ScalaElementType("arguments of function") {
-    override def createElement(node: ASTNode) = new ScArgumentExprListImpl(node)
-  }
+  val ARG_EXPRS: ScArgumentsElementType = ScArgumentsElementType.ArgumentExprs
   //Not only String, but quasiquote too
   val INTERPOLATED_PREFIX_PATTERN_REFERENCE: ScalaElementType = new ScalaElementType("Interpolated Prefix Pattern Reference") {
     override def createElement(node: ASTNode) = new ScInterpolatedPatternPrefix(node)
@@ -17,6 +17,8 @@ final class ScalaParser extends PsiParser {
     rootElementType match {
       case ScCodeBlockElementType.BlockExpression =>
         expressions.BlockExpr.parse(builder)
+      case ScArgumentsElementType.ArgumentExprs =>
+        expressions.ArgumentExprs.parse(builder)
       case _ =>
         val rootMarker = delegate.mark()
         CompilationUnit.parse()
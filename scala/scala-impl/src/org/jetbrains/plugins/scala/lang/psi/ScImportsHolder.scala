@@ -2,13 +2,17 @@ package org.jetbrains.plugins.scala
 package lang
 package psi
 
+import java.util.concurrent.ConcurrentHashMap
+
 import com.intellij.lang.ASTNode
 import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.util.{Key, ModificationTracker}
 import com.intellij.psi._
 import com.intellij.psi.codeStyle.CodeStyleManager
 import com.intellij.psi.impl.source.codeStyle.CodeEditUtil
 import com.intellij.psi.scope._
 import org.jetbrains.plugins.scala.JavaArrayFactoryUtil.ScImportStmtFactory
+import org.jetbrains.plugins.scala.caches.RecursionManager
 import org.jetbrains.plugins.scala.editor.importOptimizer._
 import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.formatting.settings.ScalaCodeStyleSettings
@@ -24,10 +28,14 @@ import org.jetbrains.plugins.scala.lang.psi.api.toplevel.imports.{ScImportExpr,
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScObject
 import org.jetbrains.plugins.scala.lang.psi.api.{ScalaFile, ScalaPsiElement}
 import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiElementFactory._
-import org.jetbrains.plugins.scala.lang.psi.impl.{ScalaFileImpl, ScalaPsiElementFactory, ScalaStubBasedElementImpl}
+import org.jetbrains.plugins.scala.lang.psi.impl.{ScalaFileImpl, ScalaPsiElementFactory, ScalaPsiManager, ScalaStubBasedElementImpl}
 import org.jetbrains.plugins.scala.lang.psi.types.api.designator.ScDesignatorType
 import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil
-import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
+import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveState.ResolveStateExt
+import org.jetbrains.plugins.scala.lang.resolve.processor.BaseProcessor
+import org.jetbrains.plugins.scala.lang.resolve.{ResolveTargets, ScalaResolveResult, ScalaResolveState}
+import org.jetbrains.plugins.scala.macroAnnotations.CachedInUserData
+import org.jetbrains.plugins.scala.project.ProjectContext
 
 import scala.collection.mutable
 
@@ -45,17 +53,32 @@ trait ScImportsHolder extends ScalaPsiElement {
       findChildrenByClassScala(classOf[ScImportStmt]).toSeq
   }
 
+  /**
+   * Names which import statements of this holder import, see [[ScImportsHolder.ImportsTable]].
+   * Wildcard expansions depend on members of imported packages and objects, so the table is dropped
+   * on any change in Scala code, on a change of non-Scala PSI and on a change of project roots.
+   */
+  @CachedInUserData(this, ScImportsHolder.importsTableModificationTracker(this))
+  def importsTable: ScImportsHolder.ImportsTable = ScImportsHolder.ImportsTable(getImportStatements)
+
   override def processDeclarations(processor: PsiScopeProcessor,
       state : ResolveState,
       lastParent: PsiElement,
       place: PsiElement): Boolean = {
     if (lastParent != null) {
+      // statements which don't import the name are skipped, see ImportsTable
+      val name = Option(processor.getHint(NameHint.KEY)).fold("")(hint => ScalaNamesUtil.clean(hint.getName(state)))
+      val table = if (name.isEmpty) null else importsTable
+
       var run = ScalaPsiUtil.getStubOrPsiSibling(lastParent)
 //      updateResolveCaches()
       while (run != null) {
         ProgressManager.checkCanceled()
-        if (run.isInstanceOf[ScImportStmt] &&
-            !run.processDeclarations(processor, state, lastParent, place)) return false
+        run match {
+          case importStmt: ScImportStmt if table == null || table.mayImport(importStmt, name) =>
+            if (!importStmt.processDeclarations(processor, state, lastParent, place)) return false
+          case _ =>
+        }
         run = ScalaPsiUtil.getStubOrPsiSibling(run)
       }
     }
@@ -339,3 +362,124 @@ trait ScImportsHolder extends ScalaPsiElement {
     shortenWhitespace(prev)
   }
 }
+
+object ScImportsHolder {
+
+  private def importsTableModificationTracker(holder: ScImportsHolder): ModificationTracker = {
+    val manager = ScalaPsiManager.instance(holder.getProject)
+    new ModificationTracker {
+      override def getModificationCount: Long =
+        ScalaPsiManager.AnyScalaPsiModificationTracker.getModificationCount +
+          manager.TopLevelModificationTracker.getModificationCount +
+          manager.rootManager.getModificationCount
+    }
+  }
+
+  /**
+   * Per-name table of the import statements of a holder.
+   *
+   * Explicitly imported names (possibly renamed) are collected from stubs without resolving anything.
+   * Wildcard imports are expanded lazily: the first lookup of a name checks whether a wildcard statement
+   * imports any member with that name, later lookups of the name reuse the answer.
+   * Names which selectors of a wildcard import hide or rename (`{A => _, _}`, `{A => B, _}`) are recorded
+   * as shadowed, the wildcard is not expanded for them.
+   *
+   * The table only tells which statements may import a name. Which of their elements are found, and which of
+   * several imports of the name wins, still depends on the resolve processor: its kinds and import precedence.
+   */
+  final class ImportsTable private(explicitImports: Map[String, Set[ScImportStmt]],
+                                   wildcardImports: Map[ScImportStmt, Set[String]],
+                                   statements: Set[ScImportStmt]) {
+
+    private val wildcardExpansions = new ConcurrentHashMap[(ScImportStmt, String), java.lang.Boolean]()
+
+    /**
+     * @param name clean name, statements unknown to the table (e.g. added after it was built) may import anything
+     */
+    def mayImport(importStmt: ScImportStmt, name: String): Boolean =
+      !statements.contains(importStmt) ||
+        explicitImports.get(name).exists(_.contains(importStmt)) ||
+        wildcardImports.get(importStmt).exists(shadowed => !shadowed.contains(name) && importsByWildcard(importStmt, name))
+
+    def explicitImportsOf(name: String): Set[ScImportStmt] = explicitImports.getOrElse(name, Set.empty)
+
+    def shadowedNames(importStmt: ScImportStmt): Set[String] = wildcardImports.getOrElse(importStmt, Set.empty)
+
+    // no computeIfAbsent: resolving the qualifier of a statement looks up other names in the same table
+    private def importsByWildcard(importStmt: ScImportStmt, name: String): Boolean = {
+      val key = (importStmt, name)
+      wildcardExpansions.get(key) match {
+        case null =>
+          val stackStamp = RecursionManager.markStack()
+          val imports    = ImportsTable.importsAnyElement(importStmt, name)
+
+          // a qualifier resolved inside a recursion guard may be incomplete
+          if (stackStamp.mayCacheNow()) wildcardExpansions.putIfAbsent(key, imports)
+          imports
+        case imports => imports
+      }
+    }
+  }
+
+  object ImportsTable {
+
+    def apply(statements: Seq[ScImportStmt]): ImportsTable = {
+      val explicitImports = for {
+        statement <- statements
+        name      <- statement.importExprs.flatMap(_.importedNames).map(ScalaNamesUtil.clean)
+        if name != "_"
+      } yield name -> statement
+
+      val wildcardImports = for {
+        statement <- statements
+        wildcards = statement.importExprs.filter(_.isSingleWildcard)
+        if wildcards.nonEmpty
+      } yield statement -> wildcards.map(shadowedByWildcard).reduce(_ intersect _)
+
+      new ImportsTable(
+        explicitImports.groupBy(_._1).map { case (name, pairs) => name -> pairs.map(_._2).toSet },
+        wildcardImports.toMap,
+        statements.toSet
+      )
+    }
+
+    // `import a.{A => _, B => C, _}` doesn't import A and B with the wildcard
+    private def shadowedByWildcard(importExpr: ScImportExpr): Set[String] =
+      importExpr.selectors.iterator
+        .filter(_.isAliasedImport)
+        .flatMap(selector => selector.reference.map(_.refName).filterNot(selector.importedName.contains))
+        .map(ScalaNamesUtil.clean)
+        .toSet
+
+    private def importsAnyElement(importStmt: ScImportStmt, name: String): Boolean = {
+      val processor = new ImportedNameProcessor(name)(importStmt)
+      importStmt.processDeclarations(processor, ScalaResolveState.empty, importStmt, importStmt)
+      processor.found
+    }
+  }
+
+  /**
+   * Looks for an element imported with the name, of any kind and without checking accessibility,
+   * so it finds everything a resolve processor can find.
+   */
+  private class ImportedNameProcessor(name: String)(implicit ctx: ProjectContext)
+    extends BaseProcessor(ResolveTargets.values) {
+
+    var found = false
+
+    private object ImportedNameHint extends NameHint {
+      override def getName(state: ResolveState): String = state.renamed.getOrElse(name)
+    }
+
+    override def getHint[T](hintKey: Key[T]): T = hintKey match {
+      case NameHint.KEY => ImportedNameHint.asInstanceOf[T]
+      case _            => super.getHint(hintKey)
+    }
+
+    override protected def execute(namedElement: PsiNamedElement)
+                                  (implicit state: ResolveState): Boolean = {
+      found = ScalaNamesUtil.equivalent(state.renamed.getOrElse(namedElement.name), name)
+      !found
+    }
+  }
+}
@@ -123,17 +123,23 @@ trait FileDeclarationsHolder extends ScDeclarationSequenceHolder with ScImportsH
     val precedenceTypes = PrecedenceTypes.forElement(this)
     val importedFqns = precedenceTypes.defaultImportsWithPrecedence
 
+    //library objects which have no member with the hinted name are skipped
+    val hintedName = nameHint(processor, state)
+    lazy val defaultImportsTable = manager.defaultImportsTable(precedenceTypes.defaultImports)
+
     importedFqns.foreach { case (fqn, precedence) =>
       ProgressManager.checkCanceled()
       if (!shouldNotProcessDefaultImport(fqn)) {
 
         updateProcessor(processor, precedence) {
-          manager.getCachedClasses(scope, fqn)
-            .findByType[ScObject]
-            .foreach { `object` =>
-              if (!processObject(`object`)(processor, state, null, place))
-                return false
-            }
+          if (hintedName.forall(defaultImportsTable.mayContain(fqn, _))) {
+            manager.getCachedClasses(scope, fqn)
+              .findByType[ScObject]
+              .foreach { `object` =>
+                if (!processObject(`object`)(processor, state, null, place))
+                  return false
+              }
+          }
 
           manager.getCachedPackage(fqn)
             .foreach { `package` =>
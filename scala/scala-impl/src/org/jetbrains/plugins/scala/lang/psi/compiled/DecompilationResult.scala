@@ -8,8 +8,9 @@ import java.io.{DataInputStream, DataOutputStream, IOException}
 import com.intellij.openapi.util.Key
 import com.intellij.openapi.vfs.{VirtualFile, VirtualFileWithId, newvfs}
 import com.intellij.reference.SoftReference
+import com.intellij.util.FileContentUtilCore
 import org.jetbrains.plugins.scala.decompiler.Decompiler
-import org.jetbrains.plugins.scala.extensions.ObjectExt
+import org.jetbrains.plugins.scala.extensions.{ObjectExt, invokeLater}
 import org.jetbrains.plugins.scala.lang.psi.compiled.ScClassFileDecompiler.ScClsStubBuilder.getStubVersion
 
 private sealed trait DecompilationResult {
@@ -21,7 +22,7 @@ private sealed trait DecompilationResult {
 private sealed trait ScalaDecompilationResult extends DecompilationResult {
   val isScala = true
   val sourceName: String
-  def sourceText: String
+  def sourceText: Option[String]
 }
 
 private object DecompilationResult {
@@ -43,10 +44,8 @@ private object DecompilationResult {
     val isScala: Boolean = true
   }
 
-  private case class Full(sourceName: String, sourceText: String, timeStamp: Long) extends ScalaDecompilationResult
-
-  private case class Lazy(sourceName: String, timeStamp: Long, sourceTextComputation: () => String) extends ScalaDecompilationResult {
-    lazy val sourceText: String = sourceTextComputation()
+  private case class Lazy(sourceName: String, timeStamp: Long, sourceTextComputation: () => Option[String]) extends ScalaDecompilationResult {
+    lazy val sourceText: Option[String] = sourceTextComputation()
   }
 
   private def toWritable(decompilationResult: DecompilationResult): WritableResult = decompilationResult match {
@@ -72,9 +71,10 @@ private object DecompilationResult {
   }
 
   private[compiled] def sourceNameAndText(file: VirtualFile, bytes: Array[Byte] = null): Option[(String, String)] =
-    tryDecompile(file, bytes).map { result =>
-      (result.sourceName, result.sourceText)
-    }
+    for {
+      result <- tryDecompile(file, bytes)
+      sourceText <- sourceTextOrFallback(file, result)
+    } yield (result.sourceName, sourceText)
 
   private[compiled] def tryDecompile(file: VirtualFile, bytes: Array[Byte] = null): Option[ScalaDecompilationResult] = {
     val maybeContent: Option[() => Array[Byte]] = bytes match {
@@ -101,11 +101,12 @@ private object DecompilationResult {
     val result: DecompilationResult = getFromFileAttribute(file) match {
       case Some(nonScala: NonScala) => nonScala
       case Some(PartialScala(sourceName, _)) =>
-        Lazy(sourceName, timeStamp, () => Decompiler.sourceNameAndText(file.getName, content()).map(_._2).getOrElse(""))
+        lazyResult(file, sourceName, timeStamp, content)
+      // only the source name is read here, the text is decompiled when stubs are built or the file is opened
       case None =>
-        val recomputedResult = Decompiler.sourceNameAndText(file.getName, content()) match {
-          case Some((sourceName, sourceText)) => Full(sourceName, sourceText, timeStamp)
-          case None                           => NonScala(timeStamp)
+        val recomputedResult = Decompiler.scalaClassFile(file.getName, content()) match {
+          case Some(classFile) => Lazy(classFile.sourceName, timeStamp, () => classFile.sourceText)
+          case None            => NonScala(timeStamp)
         }
 
         writeToFileAttribute(file, recomputedResult)
@@ -118,6 +119,36 @@ private object DecompilationResult {
     result.asOptionOf[ScalaDecompilationResult]
   }
 
+  private def lazyResult(file: VirtualFile, sourceName: String, timeStamp: Long, content: () => Array[Byte]) =
+    Lazy(sourceName, timeStamp, () =>
+      Decompiler.scalaClassFile(file.getName, content()).flatMap(_.sourceText)
+    )
+
+  /**
+    * A class with a signature which can't be printed is shown and indexed as a Java class, as if it had no signature.
+    * The file is marked and reparsed later on the event dispatch thread,
+    * so neither the text computation nor the stub builder write file attributes.
+    */
+  private[compiled] def sourceTextOrFallback(file: VirtualFile, result: ScalaDecompilationResult): Option[String] = {
+    val sourceText = result.sourceText
+    if (sourceText.isEmpty) {
+      scheduleJavaFallback(file, result.timeStamp)
+    }
+    sourceText
+  }
+
+  private def scheduleJavaFallback(file: VirtualFile, timeStamp: Long): Unit = invokeLater {
+    val isOutdated = !file.isValid || file.getTimeStamp != timeStamp || getFromUserData(file).isInstanceOf[NonScala]
+
+    if (!isOutdated) {
+      val nonScala = NonScala(timeStamp)
+      writeToFileAttribute(file, nonScala)
+      cacheInUserData(file, nonScala)
+
+      FileContentUtilCore.reparseFiles(file)
+    }
+  }
+
   private def getFromFileAttribute(file: VirtualFile): Option[DecompilationResult.WritableResult] = {
     for {
       attribute <- DecompilerFileAttribute
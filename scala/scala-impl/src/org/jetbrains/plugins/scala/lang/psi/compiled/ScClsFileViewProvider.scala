@@ -21,7 +21,8 @@ final class ScClsFileViewProvider(decompilationResult: ScalaDecompilationResult)
 
   private def sourceName: String = decompilationResult.sourceName
 
-  override def getContents: String = decompilationResult.sourceText
+  override def getContents: String =
+    DecompilationResult.sourceTextOrFallback(getVirtualFile, decompilationResult).getOrElse("")
 
   override def createFile(project: Project,
                           file: VirtualFile,
@@ -15,6 +15,7 @@ import org.jetbrains.plugins.scala.extensions._
 import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScObject
 import org.jetbrains.plugins.scala.lang.psi.api.{ScPackage, ScPackageLike}
 import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.synthetic.SyntheticClasses
+import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil
 import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveState.ResolveStateExt
 import org.jetbrains.plugins.scala.lang.resolve.processor.{BaseProcessor, ResolveProcessor}
 import org.jetbrains.plugins.scala.lang.resolve.{ResolveTargets, ResolveUtils, ScalaResolveState}
@@ -106,9 +107,17 @@ object ScPackageImpl {
     val namesSet = manager.getScalaPackageClassNames
 
     val syntheticClasses = SyntheticClasses.get(manager.project)
+    val syntheticElements = nameHint(processor, state) match {
+      case Some(name) =>
+        syntheticClasses.byName(name) ++
+          syntheticClasses.syntheticObjects.get(syntheticClasses.prefix + name)
+      case None =>
+        syntheticClasses.getAll ++
+          syntheticClasses.syntheticObjects.valuesIterator
+    }
+
     for {
-      syntheticElement <- syntheticClasses.getAll ++
-        syntheticClasses.syntheticObjects.valuesIterator
+      syntheticElement <- syntheticElements
       // Assume that is the scala package contained a class with the same names as the synthetic object, then it must also contain the object.
 
       // Does the "scala" package already contain a class named `className`?
@@ -122,6 +131,16 @@ object ScPackageImpl {
     true
   }
 
+  private[psi] def nameHint(processor: PsiScopeProcessor, state: ResolveState): Option[String] =
+    processor match {
+      case base: BaseProcessor =>
+        Option(base.getHint(NameHint.KEY))
+          .flatMap(hint => Option(hint.getName(state)))
+          .filter(_.nonEmpty)
+          .map(ScalaNamesUtil.clean)
+      case _ => None
+    }
+
   private[psi] def processObject(`object`: ScObject)
                                  (processor: PsiScopeProcessor,
                                   state: ResolveState,
@@ -3,6 +3,8 @@ package lang
 package psi
 package impl
 
+import java.util
+
 import com.intellij.extapi.psi.{ASTWrapperPsiElement, StubBasedPsiElementBase}
 import com.intellij.lang.{ASTNode, Language}
 import com.intellij.openapi.util.UserDataHolderBase
@@ -10,7 +12,7 @@ import com.intellij.psi.impl.CheckUtil
 import com.intellij.psi.impl.source.tree.LazyParseablePsiElement
 import com.intellij.psi.search.SearchScope
 import com.intellij.psi.stubs.{IStubElementType, StubElement}
-import com.intellij.psi.tree.IElementType
+import com.intellij.psi.tree.{IElementType, ILazyParseableElementType}
 import com.intellij.psi.{PsiElement, StubBasedPsiElement}
 import org.jetbrains.plugins.scala.lang.psi.api.ScalaPsiElement
 
@@ -68,6 +70,38 @@ abstract class ScalaPsiElementImpl(node: ASTNode) extends ASTWrapperPsiElement(n
     ScalaUseScope.intersect(super.getUseScope, ScalaUseScope(this))
 }
 
+/**
+ * Base of Scala elements which are reparsed on their own, see [[com.intellij.psi.tree.ILazyParseableElementType]].
+ */
+abstract class ScalaLazyParseableElementImpl(elementType: ILazyParseableElementType, buffer: CharSequence)
+  extends LazyParseablePsiElement(elementType, buffer)
+    with ScalaPsiElement {
+
+  protected def findChildrenByClassScala[T >: Null <: ScalaPsiElement](aClass: Class[T]): Array[T] = {
+    val result = new util.ArrayList[T]
+    var cur: PsiElement = getFirstChild
+    while (cur != null) {
+      if (aClass.isInstance(cur)) result.add(cur.asInstanceOf[T])
+      cur = cur.getNextSibling
+    }
+    result.toArray[T](java.lang.reflect.Array.newInstance(aClass, result.size).asInstanceOf[Array[T]])
+  }
+
+  protected def findChildByClassScala[T >: Null <: ScalaPsiElement](aClass: Class[T]): T = {
+    var cur: PsiElement = getFirstChild
+    while (cur != null) {
+      if (aClass.isInstance(cur)) return cur.asInstanceOf[T]
+      cur = cur.getNextSibling
+    }
+    null
+  }
+
+  override def subtreeChanged(): Unit = {
+    ScalaPsiManager.AnyScalaPsiModificationTracker.incModificationCount()
+    super.subtreeChanged()
+  }
+}
+
 abstract class ScalaStubBasedElementImpl[T <: PsiElement, S <: StubElement[T]](stub: S,
                                                                                nodeType: stubs.elements.ScStubElementType[S, T],
                                                                                node: ASTNode)
@@ -45,6 +45,7 @@ import org.jetbrains.plugins.scala.lang.psi.types.api.designator.ScProjectionTyp
 import org.jetbrains.plugins.scala.lang.psi.types.api.{Any, ParameterizedType, TypeParameterType}
 import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil._
 import org.jetbrains.plugins.scala.lang.resolve.SyntheticClassProducer
+import org.jetbrains.plugins.scala.lang.resolve.processor.precedence.DefaultImportsTable
 import org.jetbrains.plugins.scala.macroAnnotations.{CachedInUserData, CachedWithoutModificationCount, ValueWrapper}
 import org.jetbrains.plugins.scala.project.{ModuleExt, ProjectContext, ProjectExt, ProjectPsiElementExt}
 import org.jetbrains.plugins.scala.settings.ScalaProjectSettings
@@ -294,16 +295,36 @@ class ScalaPsiManager(implicit val project: Project) {
       classOf[PsiClass]
     ).map(_.name).toSet
 
+  private val defaultImportsTables: ConcurrentMap[Seq[String], DefaultImportsTable] =
+    ContainerUtil.newConcurrentMap[Seq[String], DefaultImportsTable]()
+
+  clearCacheOnRootsChange += defaultImportsTables
+
+  def defaultImportsTable(defaultImports: Seq[String]): DefaultImportsTable =
+    if (DumbService.getInstance(project).isDumb) DefaultImportsTable.Empty
+    else defaultImportsTables.get(defaultImports) match {
+      case null =>
+        DefaultImportsTable.build(defaultImports)(this) match {
+          case Some(table) => defaultImportsTables.atomicGetOrElseUpdate(defaultImports, table)
+          case None        => DefaultImportsTable.Empty
+        }
+      case table => table
+    }
+
   private def clearCaches(): Unit = {
     new ProjectContext(project).typeSystem.clearCache()
     ParameterizedType.substitutorCache.clear()
     PropertyMethods.clearCache()
     collectImplicitObjectsCache.clear()
-    implicitCollectorCache.clear()
     idToName.clear()
   }
 
   private def clearOnChange(): Unit = {
+    clearOnChangeExceptImplicits()
+    implicitCollectorCache.clear()
+  }
+
+  private def clearOnChangeExceptImplicits(): Unit = {
     clearCacheOnChange.foreach(_.clear())
     clearCaches()
   }
@@ -312,10 +333,22 @@ class ScalaPsiManager(implicit val project: Project) {
 
   private def clearOnTopLevelChange(): Unit = {
     clearOnChange()
+    clearTopLevelCaches()
+  }
+
+  private def clearTopLevelCaches(): Unit = {
     clearCacheOnTopLevelChange.foreach(_.clear())
     syntheticPackages.clear()
   }
 
+  private def clearOnPsiChange(changedElement: PsiElement, isTopLevelChange: Boolean): Unit = {
+    clearOnChangeExceptImplicits()
+    if (isTopLevelChange)
+      clearTopLevelCaches()
+
+    implicitCollectorCache.invalidate(changedElement, isTopLevelChange)
+  }
+
   private def clearOnRootsChange(): Unit = {
     clearOnTopLevelChange()
     clearCacheOnRootsChange.foreach(_.clear())
@@ -435,7 +468,8 @@ class ScalaPsiManager(implicit val project: Project) {
 
       LOG.debug(s"Clear caches on psi change: $event")
 
-      if (psiElement != null && psiElement.getLanguage.isKindOf(ScalaLanguage.INSTANCE)) {
+      val isScalaChange = psiElement != null && psiElement.getLanguage.isKindOf(ScalaLanguage.INSTANCE)
+      if (isScalaChange) {
         @tailrec
         def updateModificationCount(element: PsiElement): Unit = element match {
           case null => TopLevelModificationTracker.incModificationCount()
@@ -450,12 +484,15 @@ class ScalaPsiManager(implicit val project: Project) {
         NonScalaModificationTracker.incModificationCount()
       }
 
+      //implicit search results are invalidated per file, only if the change is inside Scala code
+      val changedElement = if (isScalaChange) psiElement else null
+
       TopLevelModificationTracker.getModificationCount match {
         case count if topLevelModCount == count =>
-          clearOnChange()
+          clearOnPsiChange(changedElement, isTopLevelChange = false)
         case count =>
           topLevelModCount = count
-          clearOnTopLevelChange()
+          clearOnPsiChange(changedElement, isTopLevelChange = true)
       }
     }
 
@@ -4,8 +4,11 @@ package psi
 package impl
 package expr
 
-import com.intellij.lang.ASTNode
 import com.intellij.psi._
+import com.intellij.psi.impl.CheckUtil
+import com.intellij.psi.impl.source.tree.LazyParseablePsiElement
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.tree.ILazyParseableElementType
 import org.jetbrains.plugins.scala.extensions.PsiElementExt
 import org.jetbrains.plugins.scala.lang.lexer.ScalaTokenTypes
 import org.jetbrains.plugins.scala.lang.psi.api.base.ScConstructorInvocation
@@ -18,9 +21,42 @@ import org.jetbrains.plugins.scala.lang.psi.types.nonvalue.Parameter
 * Date: 07.03.2008
 */
 
-class ScArgumentExprListImpl(node: ASTNode) extends ScalaPsiElementImpl(node) with ScArgumentExprList {
+class ScArgumentExprListImpl(elementType: ILazyParseableElementType, buffer: CharSequence)
+  extends ScalaLazyParseableElementImpl(elementType, buffer) with ScArgumentExprList {
+
   override def toString: String = "ArgumentList"
 
+  override def getStartOffsetInParent: Int = this.child match {
+    case null => super.getStartOffsetInParent
+    case element => element.getStartOffsetInParent
+  }
+
+  override def getPrevSibling: PsiElement = this.child match {
+    case null => super.getPrevSibling
+    case element => element.getPrevSibling
+  }
+
+  override def getNextSibling: PsiElement = this.child match {
+    case null => super.getNextSibling
+    case element => element.getNextSibling
+  }
+
+  override def replace(newElement: PsiElement): PsiElement = {
+    val newElementCopy = newElement.copy
+    getParent.getNode.replaceChild(getNode, newElementCopy.getNode)
+    newElementCopy
+  }
+
+  override def delete(): Unit = getParent match {
+    case x: LazyParseablePsiElement =>
+      CheckUtil.checkWritable(this)
+      x.deleteChildInternal(getNode)
+    case _ => super.delete()
+  }
+
+  override def getUseScope: SearchScope =
+    ScalaUseScope.intersect(super.getUseScope, ScalaUseScope(this))
+
   def invocationCount: Int = {
     callExpression match {
       case call: ScMethodCall => call.args.invocationCount + 1
@@ -77,11 +113,11 @@ class ScArgumentExprListImpl(node: ASTNode) extends ScalaPsiElementImpl(node) wi
   override def addBefore(element: PsiElement, anchor: PsiElement): PsiElement = {
     if (anchor == null) {
       if (exprs.isEmpty) {
-        val par: PsiElement = findChildByType[PsiElement](ScalaTokenTypes.tLPARENTHESIS)
+        val par: PsiElement = findFirstChildByType(ScalaTokenTypes.tLPARENTHESIS)
         if (par == null) return super.addBefore(element, anchor)
         super.addAfter(element, par)
       } else {
-        val par: PsiElement = findChildByType[PsiElement](ScalaTokenTypes.tLPARENTHESIS)
+        val par: PsiElement = findFirstChildByType(ScalaTokenTypes.tLPARENTHESIS)
         if (par == null) return super.addBefore(element, anchor)
         super.addAfter(par, createComma)
         super.addAfter(par, element)
@@ -92,7 +128,7 @@ class ScArgumentExprListImpl(node: ASTNode) extends ScalaPsiElementImpl(node) wi
   }
 
   def addExpr(expr: ScExpression): ScArgumentExprList = {
-    val par = findChildByType[PsiElement](ScalaTokenTypes.tLPARENTHESIS)
+    val par = findFirstChildByType(ScalaTokenTypes.tLPARENTHESIS)
     val nextNode = par.getNode.getTreeNext
     val node = getNode
     val needCommaAndSpace = exprs.nonEmpty
@@ -110,7 +110,7 @@ class ScImportStmtImpl(stub: ScImportStmtStub,
 
         def resolvedQualifier(): Option[PsiElement] = qualifier.bind().map(_.element)
 
-        def qualifierType(checkPackageObject: Boolean): Option[ScType] =
+        def computeQualifierType(checkPackageObject: Boolean): Option[ScType] =
           resolvedQualifier().flatMap {
             case p: PsiPackage =>
               if (!checkPackageObject) None
@@ -122,6 +122,14 @@ class ScImportStmtImpl(stub: ScImportStmtStub,
             case _ => ScSimpleTypeElementImpl.calculateReferenceType(qualifier).toOption
           }
 
+        // the same for every element imported by a wildcard, so it's computed once per import expression
+        lazy val packageObjectQualifierType = computeQualifierType(checkPackageObject = true)
+        lazy val plainQualifierType         = computeQualifierType(checkPackageObject = false)
+
+        def qualifierType(checkPackageObject: Boolean): Option[ScType] =
+          if (checkPackageObject) packageObjectQualifierType
+          else                    plainQualifierType
+
         val resolveIterator = resolve.iterator
         while (resolveIterator.hasNext) {
 
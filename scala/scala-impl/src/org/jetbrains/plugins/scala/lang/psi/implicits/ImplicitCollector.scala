@@ -1,8 +1,11 @@
 package org.jetbrains.plugins.scala
 package lang.psi.implicits
 
+import com.intellij.concurrency.JobLauncher
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.registry.Registry
 import com.intellij.psi._
 import com.intellij.psi.util.PsiTreeUtil
 import org.jetbrains.plugins.scala.caches.RecursionManager
@@ -35,12 +38,22 @@ import org.jetbrains.plugins.scala.macroAnnotations.Measure
 import org.jetbrains.plugins.scala.project.{ProjectContext, _}
 import org.jetbrains.plugins.scala.settings.ScalaProjectSettings
 
+import scala.collection.JavaConverters._
 import scala.collection.Set
 
 object ImplicitCollector {
 
   def cache(project: Project): ImplicitCollectorCache = ScalaPsiManager.instance(project).implicitCollectorCache
 
+  val ConcurrentCheckRegistryKey = "scala.implicits.concurrent.candidates.check"
+
+  private val MinCandidatesForConcurrentCheck = 32
+
+  private def checkCandidatesConcurrently(candidatesCount: Int): Boolean =
+    candidatesCount >= MinCandidatesForConcurrentCheck &&
+      Registry.is(ConcurrentCheckRegistryKey) &&
+      !ApplicationManager.getApplication.isDispatchThread
+
   sealed trait ImplicitResult
 
   sealed trait FullInfoResult extends ImplicitResult
@@ -118,6 +131,9 @@ class ImplicitCollector(place: PsiElement,
 
   private val mostSpecificUtil: MostSpecificUtil = MostSpecificUtil(place, 1)
 
+  //false if candidates checked in other threads hit a prevented recursion, which the stamp of this thread can't see
+  private var mayCacheResult = true
+
   private def isExtensionConversion: Boolean = extensionData.isDefined
 
   def collect(): Seq[ScalaResolveResult] = {
@@ -157,16 +173,22 @@ class ImplicitCollector(place: PsiElement,
 
           val stackStamp = RecursionManager.markStack()
 
-          val firstCandidates = compatible(visibleNamesCandidates)
+          val visible = visibleNamesCandidates
+          var considered: Set[ScalaResolveResult] = visible
+
+          val firstCandidates = compatible(visible)
           val result =
             if (firstCandidates.exists(_.isApplicable())) firstCandidates
             else {
-              val secondCandidates = compatible(fromTypeCandidates)
+              val fromType = fromTypeCandidates
+              considered ++= fromType
+
+              val secondCandidates = compatible(fromType)
               if (secondCandidates.nonEmpty) secondCandidates else firstCandidates
             }
 
-          if (!isExtensionConversion && stackStamp.mayCacheNow())
-            implicitCollectorCache.put(place, tp, result)
+          if (!isExtensionConversion && stackStamp.mayCacheNow() && mayCacheResult)
+            implicitCollectorCache.put(place, tp, result, considered)
 
           result
 
@@ -310,13 +332,9 @@ class ImplicitCollector(place: PsiElement,
   }
 
   def collectCompatibleCandidates(candidates: Set[ScalaResolveResult], withLocalTypeInference: Boolean): Set[ScalaResolveResult] = {
-    var filteredCandidates = Set.empty[ScalaResolveResult]
-
-    val iterator = candidates.iterator
-    while (iterator.hasNext) {
-      val c = iterator.next()
-      filteredCandidates ++= checkCompatible(c, withLocalTypeInference, checkFast = true)
-    }
+    var filteredCandidates =
+      if (checkCandidatesConcurrently(candidates.size)) fastCheckedCandidatesConcurrently(candidates.toIndexedSeq, withLocalTypeInference)
+      else fastCheckedCandidates(candidates, withLocalTypeInference)
 
     var results: Set[ScalaResolveResult] = Set()
 
@@ -342,6 +360,59 @@ class ImplicitCollector(place: PsiElement,
     results.toSet
   }
 
+  private def fastCheckedCandidates(candidates: Set[ScalaResolveResult], withLocalTypeInference: Boolean): Set[ScalaResolveResult] = {
+    var filteredCandidates = Set.empty[ScalaResolveResult]
+
+    val iterator = candidates.iterator
+    while (iterator.hasNext) {
+      val c = iterator.next()
+      filteredCandidates ++= checkCompatible(c, withLocalTypeInference, checkFast = true)
+    }
+    filteredCandidates
+  }
+
+  /**
+    * Candidates are independent, so fast checks may be done in parallel under read action.
+    * Every worker continues with the implicits recursion state and the guards in progress of the current search,
+    * recursions prevented by workers are reported back, so that incomplete results are not cached.
+    * Results are merged in the order of candidates, so the outcome doesn't depend on scheduling.
+    */
+  private def fastCheckedCandidatesConcurrently(candidates: IndexedSeq[ScalaResolveResult], withLocalTypeInference: Boolean): Set[ScalaResolveResult] = {
+    val recursionMap = ImplicitsRecursionGuard.currentMap
+    val stackSnapshot = RecursionManager.snapshot()
+    val checked = new Array[Option[ScalaResolveResult]](candidates.size)
+
+    def check(idx: Int): Unit = {
+      val workerMap = ImplicitsRecursionGuard.currentMap
+      try {
+        ImplicitsRecursionGuard.setRecursionMap(recursionMap)
+        checked(idx) = stackSnapshot.continueWith {
+          checkCompatible(candidates(idx), withLocalTypeInference, checkFast = true)
+        }
+      } finally {
+        ImplicitsRecursionGuard.setRecursionMap(workerMap)
+      }
+    }
+
+    val indices = candidates.indices.map(Int.box).asJava
+    val indicator = ProgressManager.getInstance().getProgressIndicator
+
+    //false means that read action couldn't be acquired in some worker, remaining candidates are checked here
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(indices, indicator, true, true, (idx: Integer) => {
+      check(idx)
+      true
+    })
+
+    var filteredCandidates = Set.empty[ScalaResolveResult]
+    for (idx <- candidates.indices) {
+      if (checked(idx) == null) check(idx)
+      filteredCandidates ++= checked(idx)
+    }
+
+    if (!stackSnapshot.merge()) mayCacheResult = false
+    filteredCandidates
+  }
+
   private def simpleConformanceCheck(c: ScalaResolveResult): Option[ScalaResolveResult] = {
     c.element match {
       case typeable: Typeable =>
@@ -1,33 +1,95 @@
 package org.jetbrains.plugins.scala.lang.psi.implicits
 
+import java.util.concurrent.ConcurrentMap
+
 import com.intellij.openapi.project.Project
-import com.intellij.psi.PsiElement
+import com.intellij.psi.{PsiElement, PsiFile}
 import com.intellij.util.containers.ContainerUtil
-import org.jetbrains.plugins.scala.lang.psi.api.toplevel.ScTypeParametersOwner
-import org.jetbrains.plugins.scala.lang.psi.types.ScType
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.ScalaPsiUtil
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.jetbrains.plugins.scala.lang.psi.api.statements.params.ScParameter
+import org.jetbrains.plugins.scala.lang.psi.api.statements.{ScFunction, ScPatternDefinition, ScTypeAlias, ScVariableDefinition}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.templates.{ScExtendsBlock, ScTemplateBody, ScTemplateParents}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.{ScMember, ScTypeDefinition}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.{ScPackaging, ScTypeParametersOwner, ScTypedDefinition}
+import org.jetbrains.plugins.scala.lang.psi.implicits.ImplicitCollectorCache._
+import org.jetbrains.plugins.scala.lang.psi.types.{ScType, ScTypeExt}
 import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
 
-import scala.collection.{Seq, Set}
+import scala.collection.JavaConverters._
+import scala.collection.{Seq, Set, mutable}
 
 /**
+  * Every cached result remembers the files it depends on: the file of the search place,
+  * the files of all considered implicit candidates (found by name or through implicit indices)
+  * and the source files defining the types in the searched type and in explicit types of the found candidates.
+  * Types of discarded candidates aren't computed, a search is on a hot path and most of the candidates
+  * are discarded by name and kind before their types are needed.
+  * Changes which can't affect implicit scopes outside of the changed file invalidate only dependent results.
+  *
+  * Types of candidates without explicit types aren't followed:
+  * such results are dropped on any top-level change, and a change in a body of a definition
+  * without explicit type is a top-level change, see `ScalaPsiManager.CacheInvalidator`.
+  *
   * @author Nikolay.Tropin
   */
 class ImplicitCollectorCache(project: Project) {
   private val map =
-    ContainerUtil.newConcurrentMap[(ImplicitSearchScope, ScType), Seq[ScalaResolveResult]]()
+    ContainerUtil.newConcurrentMap[CacheKey, Seq[ScalaResolveResult]]()
 
   private val typeParametersOwnersCache =
     ContainerUtil.newConcurrentMap[ScType, Set[ScTypeParametersOwner]]
 
+  private val keysByFile: ConcurrentMap[PsiFile, java.util.Set[CacheKey]] =
+    ContainerUtil.newConcurrentMap[PsiFile, java.util.Set[CacheKey]]()
+
+  private val filesByKey: ConcurrentMap[CacheKey, Set[PsiFile]] =
+    ContainerUtil.newConcurrentMap[CacheKey, Set[PsiFile]]()
+
+  //results with a candidate without explicit type may change after any top-level change
+  private val keysWithInferredCandidates: java.util.Set[CacheKey] = ContainerUtil.newConcurrentSet[CacheKey]()
 
   def get(place: PsiElement, tp: ScType): Option[Seq[ScalaResolveResult]] = {
     val scope = ImplicitSearchScope.forElement(place)
     Option(map.get((scope, tp)))
   }
 
-  def put(place: PsiElement, tp: ScType, value: Seq[ScalaResolveResult]): Unit = {
+  def put(place: PsiElement, tp: ScType, value: Seq[ScalaResolveResult], candidates: Iterable[ScalaResolveResult]): Unit = {
     val scope = ImplicitSearchScope.forElement(place)
-    map.put((scope, tp), value)
+    val key = (scope, tp)
+
+    val dependencies = this.dependencies(place, tp, value, candidates)
+    filesByKey.merge(key, dependencies, _ ++ _)
+    dependencies.foreach { file =>
+      keysByFile.compute(file, (_: PsiFile, keys: java.util.Set[CacheKey]) => {
+        val result = if (keys == null) ContainerUtil.newConcurrentSet[CacheKey]() else keys
+        result.add(key)
+        result
+      })
+    }
+
+    if (candidates.exists(c => hasInferredType(c.element)))
+      keysWithInferredCandidates.add(key)
+
+    map.put(key, value)
+  }
+
+  /**
+    * Drops results which may be affected by a change of `changedElement`.
+    * Top-level changes of implicit members, type aliases or class hierarchies may change
+    * implicit scopes anywhere, so all results are dropped in this case.
+    */
+  def invalidate(changedElement: PsiElement, isTopLevelChange: Boolean): Unit = {
+    val file = Option(changedElement).map(_.getContainingFile).orNull
+
+    if (file == null || isTopLevelChange && mayChangeImplicitScopes(changedElement)) clear()
+    else {
+      removeAll(keysByFile.remove(file))
+
+      if (isTopLevelChange)
+        removeAll(keysWithInferredCandidates)
+    }
   }
 
   def size(): Int = map.size() + typeParametersOwnersCache.size()
@@ -35,5 +97,79 @@ class ImplicitCollectorCache(project: Project) {
   def clear(): Unit = {
     map.clear()
     typeParametersOwnersCache.clear()
+    keysByFile.clear()
+    filesByKey.clear()
+    keysWithInferredCandidates.clear()
+  }
+
+  private[implicits] def dependentKeys(file: PsiFile): Set[CacheKey] =
+    Option(keysByFile.get(file)).fold(Set.empty[CacheKey])(_.asScala)
+
+  private def removeAll(keys: java.util.Set[CacheKey]): Unit =
+    if (keys != null) keys.forEach(remove(_))
+
+  //a dropped result is removed from the dependencies of all its files
+  private def remove(key: CacheKey): Unit = {
+    map.remove(key)
+    keysWithInferredCandidates.remove(key)
+
+    val files = filesByKey.remove(key)
+    if (files != null) files.foreach { file =>
+      keysByFile.computeIfPresent(file, (_: PsiFile, keys: java.util.Set[CacheKey]) => {
+        keys.remove(key)
+        if (keys.isEmpty) null else keys
+      })
+    }
   }
 }
+
+object ImplicitCollectorCache {
+
+  type CacheKey = (ImplicitSearchScope, ScType)
+
+  private def dependencies(place: PsiElement, tp: ScType,
+                           found: Seq[ScalaResolveResult], candidates: Iterable[ScalaResolveResult]): Set[PsiFile] = {
+    val result = mutable.Set.empty[PsiFile]
+
+    def addFile(element: PsiElement): Unit = element.getContainingFile match {
+      case file: ScalaFile if !file.isCompiled => result += file
+      case _                                   =>
+    }
+
+    def addTypeFiles(`type`: ScType): Unit = `type`.visitRecursively {
+      _.extractDesignated(expandAliases = false).foreach(addFile)
+    }
+
+    addFile(place)
+    addTypeFiles(tp)
+
+    candidates.foreach(candidate => addFile(candidate.element))
+
+    found.foreach { candidate =>
+      val element = candidate.element
+      addFile(element)
+
+      element match {
+        case typed: ScTypedDefinition if !hasInferredType(typed) => typed.`type`().foreach(addTypeFiles)
+        case _                                                   =>
+      }
+    }
+    result
+  }
+
+  private def hasInferredType(element: PsiElement): Boolean = element match {
+    case fun: ScFunction                                      => fun.returnTypeElement.isEmpty
+    case ScalaPsiUtil.inNameContext(pd: ScPatternDefinition)  => pd.typeElement.isEmpty
+    case ScalaPsiUtil.inNameContext(vd: ScVariableDefinition) => vd.typeElement.isEmpty
+    case _                                                    => false
+  }
+
+  private def mayChangeImplicitScopes(changedElement: PsiElement): Boolean =
+    changedElement.is[PsiFile, ScPackaging, ScTypeDefinition, ScExtendsBlock, ScTemplateBody] ||
+      changedElement.withContexts.takeWhile(!_.isInstanceOf[PsiFile]).exists {
+        case _: ScTemplateParents | _: ScTypeAlias => true
+        case p: ScParameter                        => p.isImplicitParameter
+        case m: ScMember                           => m.hasModifierProperty("implicit")
+        case _                                     => false
+      }
+}
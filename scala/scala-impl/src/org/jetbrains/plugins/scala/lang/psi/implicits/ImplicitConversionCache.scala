@@ -1,11 +1,12 @@
 package org.jetbrains.plugins.scala.lang.psi.implicits
 
-import java.util.concurrent.{Callable, ConcurrentHashMap, ConcurrentMap, TimeUnit}
+import java.util.concurrent.{Callable, ConcurrentHashMap, ConcurrentMap}
 
 import com.intellij.openapi.application.{ApplicationManager, ReadAction}
 import com.intellij.openapi.project.{Project, ProjectManager, ProjectManagerListener}
 import com.intellij.openapi.util.LowMemoryWatcher
 import com.intellij.openapi.util.LowMemoryWatcher.LowMemoryWatcherType
+import com.intellij.psi.{PsiClass, PsiElement, PsiFile}
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.util.concurrency.AppExecutorUtil
 import com.intellij.util.messages.MessageBusConnection
@@ -13,15 +14,26 @@ import org.jetbrains.concurrency.CancellablePromise
 import org.jetbrains.plugins.scala.caches.CachesUtil.Timestamped
 import org.jetbrains.plugins.scala.lang.psi.ElementScope
 import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.jetbrains.plugins.scala.lang.psi.types.{ScType, ScTypeExt}
 
 import scala.collection.mutable
-import scala.util.Try
 
+/**
+  * Map of global implicit conversions, maintained in background.
+  *
+  * The first access computes the map in the calling thread. Later readers get the latest published version
+  * and never wait for a computation.
+  * When top-level modification count changes, a new version is computed from the previous one:
+  * data of conversions whose dependencies were not modified is reused, only changed conversions are recomputed.
+  */
 object ImplicitConversionCache {
 
   type ImplicitConversionMap = collection.Map[GlobalImplicitConversion, ImplicitConversionData]
 
-  private val implicitConversionDataCache: ConcurrentMap[GlobalSearchScope, Timestamped[ImplicitConversionMap]] =
+  private val implicitConversionDataCache: ConcurrentMap[GlobalSearchScope, Timestamped[Version]] =
+    new ConcurrentHashMap()
+
+  private val scheduledUpdates: ConcurrentMap[GlobalSearchScope, CancellablePromise[Timestamped[Version]]] =
     new ConcurrentHashMap()
 
   registerCleanups()
@@ -30,24 +42,19 @@ object ImplicitConversionCache {
     val currentCount = currentTopLevelModCount(elementScope.project)
 
     implicitConversionDataCache.get(elementScope.scope) match {
-      case Timestamped(data, modCount) =>
+      case Timestamped(version, modCount) =>
         if (currentCount != modCount) {
           scheduleUpdateFor(elementScope)
         }
-        data
+        version.conversions
       case null =>
-        Try(
-          scheduleUpdateFor(elementScope)
-            .blockingGet(defaultTimeoutMs, TimeUnit.MILLISECONDS)
-            .data
-        ).getOrElse(Map.empty)
+        //there is no previous version to return, so the first one is computed synchronously
+        val computed = Timestamped(Version.empty.updated(elementScope), currentCount)
+        publish(elementScope.scope, computed)
+        computed.data.conversions
     }
   }
 
-  private val defaultTimeoutMs: Int =
-    if (ApplicationManager.getApplication.isUnitTestMode) 10000
-    else 100
-
   private def registerCleanups(): Unit = {
     LowMemoryWatcher.register(() => implicitConversionDataCache.clear(), LowMemoryWatcherType.ALWAYS)
 
@@ -55,32 +62,129 @@ object ImplicitConversionCache {
     connection.subscribe(ProjectManager.TOPIC,  new ProjectManagerListener {
       override def projectClosed(project: Project): Unit = {
         implicitConversionDataCache.clear()
+        scheduledUpdates.clear()
       }
     })
   }
 
-  private def scheduleUpdateFor(implicit elementScope: ElementScope): CancellablePromise[Timestamped[ImplicitConversionMap]] = {
-    val callback: Callable[Timestamped[ImplicitConversionMap]] = () => {
+  //at most one update per scope is scheduled at a time
+  private def scheduleUpdateFor(implicit elementScope: ElementScope): CancellablePromise[Timestamped[Version]] =
+    scheduledUpdates.compute(elementScope.scope, (scope: GlobalSearchScope, scheduled: CancellablePromise[Timestamped[Version]]) =>
+      if (scheduled != null && !scheduled.isDone) scheduled
+      else submitUpdate(scope)
+    )
+
+  private def submitUpdate(scope: GlobalSearchScope)
+                          (implicit elementScope: ElementScope): CancellablePromise[Timestamped[Version]] = {
+    val callback: Callable[Timestamped[Version]] = () => {
       val currentCount = currentTopLevelModCount(elementScope.project)
-      implicitConversionDataCache
-        .computeIfAbsent(elementScope.scope, scope => Timestamped(computeImplicitConversionMap(elementScope), currentCount))
+      val previous = implicitConversionDataCache.get(scope)
+
+      if (previous != null && previous.modCount == currentCount) previous
+      else {
+        val previousVersion = if (previous == null) Version.empty else previous.data
+        val updated = Timestamped(previousVersion.updated(elementScope), currentCount)
+        publish(scope, updated)
+        updated
+      }
     }
+
     ReadAction.nonBlocking(callback)
       .inSmartMode(elementScope.project)
+      .expireWith(elementScope.project)
       .submit(AppExecutorUtil.getAppExecutorService)
   }
 
+  //never replace a version with an older one, concurrent updates may finish in any order
+  private def publish(scope: GlobalSearchScope, version: Timestamped[Version]): Unit =
+    implicitConversionDataCache.merge(scope, version, (old, updated) =>
+      if (old.modCount > updated.modCount) old else updated
+    )
+
   private def currentTopLevelModCount(project: Project) =
     ScalaPsiManager.instance(project).TopLevelModificationTracker.getModificationCount
 
-  private def computeImplicitConversionMap(elementScope: ElementScope): ImplicitConversionMap = {
-    val resultMap = mutable.Map.empty[GlobalImplicitConversion, ImplicitConversionData]
-    for {
-      globalConversion  <- GlobalImplicitConversion.collectIn(elementScope)
-      data              <- globalConversion.toImplicitConversionData
-    } {
-      resultMap += (globalConversion -> data)
+  /**
+    * Immutable snapshot of conversions together with dependencies they were computed from.
+    */
+  private class Version(val conversions: Map[GlobalImplicitConversion, ImplicitConversionData],
+                        dependencies: Map[GlobalImplicitConversion, Dependencies]) {
+
+    def updated(elementScope: ElementScope): Version = {
+      val conversionsBuilder = Map.newBuilder[GlobalImplicitConversion, ImplicitConversionData]
+      val dependenciesBuilder = Map.newBuilder[GlobalImplicitConversion, Dependencies]
+
+      for (globalConversion <- GlobalImplicitConversion.collectIn(elementScope)) {
+        val reused = for {
+          deps <- dependencies.get(globalConversion)
+          if deps.areUnchanged
+          data <- conversions.get(globalConversion)
+        } yield (data, Some(deps))
+
+        val dataAndDependencies = reused.orElse {
+          globalConversion.toImplicitConversionData.map((_, Dependencies.of(globalConversion)))
+        }
+
+        dataAndDependencies.foreach { case (data, deps) =>
+          conversionsBuilder += (globalConversion -> data)
+          deps.foreach(dependenciesBuilder += globalConversion -> _)
+        }
+      }
+      new Version(conversionsBuilder.result(), dependenciesBuilder.result())
+    }
+  }
+
+  private object Version {
+    val empty = new Version(Map.empty, Map.empty)
+  }
+
+  /**
+    * Data of a conversion is computed from its signature and from the signatures of its containing object,
+    * so it depends on the files of the conversion, of the object and all its supertypes,
+    * and of the definitions of types in the signature of the conversion, which may be in other files.
+    * The data is reused while none of these files is modified.
+    *
+    * A conversion without an explicit result type may depend on bodies of any other definitions,
+    * its data is never reused.
+    */
+  private class Dependencies(stamps: Map[PsiFile, Long]) {
+    def areUnchanged: Boolean = stamps.forall {
+      case (file, stamp) => file.isValid && file.getModificationStamp == stamp
+    }
+  }
+
+  private object Dependencies {
+    def of(conversion: GlobalImplicitConversion): Option[Dependencies] = {
+      val GlobalImplicitConversion(containingObject, function) = conversion
+      if (function.returnTypeElement.isEmpty) return None
+
+      val files = mutable.Set.empty[PsiFile]
+      val visitedClasses = mutable.Set.empty[PsiClass]
+
+      def addFile(element: PsiElement): Unit =
+        Option(element.getContainingFile).foreach(files += _)
+
+      def addClassAndSupers(clazz: PsiClass): Unit =
+        if (clazz != null && visitedClasses.add(clazz)) {
+          addFile(clazz)
+          clazz.getSupers.foreach(addClassAndSupers)
+        }
+
+      def addTypeFiles(`type`: ScType): Unit = `type`.visitRecursively {
+        _.extractDesignated(expandAliases = false).foreach(addFile)
+      }
+
+      addFile(function)
+      addClassAndSupers(containingObject)
+
+      function.parameters.flatMap(_.`type`().toOption).foreach(addTypeFiles)
+      function.returnType.foreach(addTypeFiles)
+      function.typeParameters.foreach { typeParameter =>
+        typeParameter.lowerBound.foreach(addTypeFiles)
+        typeParameter.upperBound.foreach(addTypeFiles)
+      }
+
+      Some(new Dependencies(files.iterator.map(file => file -> file.getModificationStamp).toMap))
     }
-    resultMap
   }
-}
\ No newline at end of file
+}
@@ -134,7 +134,7 @@ object ScCompoundType {
         case (acc, otherTpe) => (acc._1 :+ otherTpe, acc._2, acc._3)
       }
 
-    new ScCompoundType(comps.distinct, sigs, types)
+    ScTypeInterner.intern(new ScCompoundType(comps.distinct, sigs, types))
   }
 
 
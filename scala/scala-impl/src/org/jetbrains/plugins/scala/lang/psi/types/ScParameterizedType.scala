@@ -131,6 +131,7 @@ final class ScParameterizedType private(val designator: ScType, val typeArgument
   def canEqual(other: Any): Boolean = other.isInstanceOf[ScParameterizedType]
 
   override def equals(other: Any): Boolean = other match {
+    case that: ScParameterizedType if this eq that => true
     case that: ScParameterizedType =>
       (that canEqual this) &&
         designator == that.designator &&
@@ -143,7 +144,7 @@ object ScParameterizedType {
 
   def apply(designator: ScType, typeArgs: Seq[ScType]): ValueType = {
 
-    val simple = new ScParameterizedType(designator, typeArgs)
+    val simple = ScTypeInterner.intern(new ScParameterizedType(designator, typeArgs))
     designator match {
 
       // Simplify application of "type-lambda-like" types
@@ -162,12 +163,12 @@ object ScParameterizedType {
       // Simplify application of ScTypePolymorphicType encoding of type lambdas
       case ScTypePolymorphicType(internalType, typeParameters) if internalType.isInstanceOf[ScParameterizedType] =>
         val internal = internalType.asInstanceOf[ScParameterizedType]
-        new ScParameterizedType(internal.designator, internal.typeArguments.map {
+        ScTypeInterner.intern(new ScParameterizedType(internal.designator, internal.typeArguments.map {
           case pType: TypeParameterType =>
             typeParameters.zip(typeArgs).find{case (tParam, _) => TypeParameterType(tParam).equiv(pType)}.map(_._2).getOrElse(pType)
           case aType =>
             aType
-        })
+        }))
       case _ => simple
     }
   }
@@ -0,0 +1,34 @@
+package org.jetbrains.plugins.scala
+package lang
+package psi
+package types
+
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.util.containers.WeakInterner
+
+/**
+  * Optional hash-consing of frequently allocated types
+  * (parameterized, compound, projection and designator types).
+  *
+  * When enabled, structurally equal types created through factory methods share a single instance,
+  * so `equals` usually succeeds on reference equality and caches keyed by types hold fewer copies.
+  * Interned instances are weakly referenced and are collected as soon as nobody uses them.
+  *
+  * Types created with `copy` or with additional mutable state (e.g. static designators) are not interned.
+  */
+object ScTypeInterner {
+
+  val RegistryKey = "scala.type.interning"
+
+  private val interner = new WeakInterner[ScType]
+
+  def isEnabled: Boolean = Registry.is(RegistryKey)
+
+  def intern[T <: ScType](tpe: T): T =
+    if (isEnabled) interner.intern(tpe).asInstanceOf[T]
+    else tpe
+
+  def internedCount: Int = interner.getValues.size
+
+  def clear(): Unit = interner.clear()
+}
@@ -2,14 +2,12 @@ package org.jetbrains.plugins.scala.lang.psi
 package types
 package api
 
-import java.util.concurrent.ConcurrentMap
-
 import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.util.Computable
+import com.intellij.openapi.util.registry.Registry
 import com.intellij.psi.PsiClass
-import com.intellij.util.containers.ContainerUtil
-import org.jetbrains.plugins.scala.caches.RecursionManager
-import org.jetbrains.plugins.scala.caches.stats.{CacheCapabilities, CacheTracker, Tracer}
+import org.jetbrains.plugins.scala.caches.stats.{CacheTracker, Tracer}
+import org.jetbrains.plugins.scala.caches.{BoundedGenerationCache, RecursionManager}
 import org.jetbrains.plugins.scala.extensions.NullSafe
 import org.jetbrains.plugins.scala.lang.psi.types.api.Conformance._
 
@@ -26,7 +24,7 @@ trait Conformance {
 
   private val cache =
     CacheTracker.alwaysTrack(conformsInnerCache, conformsInnerCache) {
-      ContainerUtil.newConcurrentMap[Key, ConstraintsResult]()
+      new BoundedGenerationCache[Key, ConstraintsResult](Registry.intValue(conformsInnerCacheSizeKey))
     }
 
   /**
@@ -46,7 +44,10 @@ trait Conformance {
     } else Left
   }
 
-  def clearCache(): Unit = cache.clear()
+  /**
+    * Cached results are evicted lazily, see [[BoundedGenerationCache.invalidateAll]]
+    */
+  def clearCache(): Unit = cache.invalidateAll()
 
   protected def conformsComputable(key: Key, visited: Set[PsiClass]): Computable[ConstraintsResult]
 
@@ -76,9 +77,5 @@ trait Conformance {
 
 object Conformance {
   val conformsInnerCache: String = "Conformance.conformsInner"
-  implicit def ConformanceCacheCapabilities[T]: CacheCapabilities[ConcurrentMap[T, ConstraintsResult]] =
-    new CacheCapabilities[ConcurrentMap[T, ConstraintsResult]] {
-      override def cachedEntitiesCount(cache: CacheType): Int = cache.size()
-      override def clear(cache: CacheType): Unit = cache.clear()
-    }
-}
\ No newline at end of file
+  val conformsInnerCacheSizeKey: String = "scala.conformance.cache.size"
+}
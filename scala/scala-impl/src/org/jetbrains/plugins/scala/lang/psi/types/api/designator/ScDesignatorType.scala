@@ -100,8 +100,11 @@ final case class ScDesignatorType(element: PsiNamedElement) extends DesignatorOw
 
 object ScDesignatorType {
 
+  def apply(element: PsiNamedElement): ScDesignatorType =
+    ScTypeInterner.intern(new ScDesignatorType(element))
+
   def static(element: PsiNamedElement): ScDesignatorType = {
-    val des = ScDesignatorType(element)
+    val des = new ScDesignatorType(element)
     des.setStatic()
     des
   }
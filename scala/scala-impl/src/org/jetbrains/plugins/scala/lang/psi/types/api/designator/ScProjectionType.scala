@@ -321,6 +321,7 @@ final class ScProjectionType private(val projected: ScType,
   def canEqual(other: Any): Boolean = other.isInstanceOf[ScProjectionType]
 
   override def equals(other: Any): Boolean = other match {
+    case that: ScProjectionType if this eq that => true
     case that: ScProjectionType =>
       (that canEqual this) &&
         projected == that.projected &&
@@ -361,7 +362,7 @@ object ScProjectionType {
 
   def apply(projected: ScType, element: PsiNamedElement): ScType = {
 
-    val simple = new ScProjectionType(projected, element)
+    val simple = ScTypeInterner.intern(new ScProjectionType(projected, element))
     simple.actualElement match {
       case td: ScTypeAliasDefinition if td.typeParameters.isEmpty =>
         val manager = ScalaPsiManager.instance(element.getProject)
@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.scala.lang.resolve.processor.precedence
+
+import com.intellij.psi.search.GlobalSearchScope
+import org.jetbrains.plugins.scala.caches.{CachesUtil, RecursionManager}
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScObject
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.jetbrains.plugins.scala.lang.psi.impl.toplevel.typedef.TypeDefinitionMembers
+import org.jetbrains.plugins.scala.lang.refactoring.util.ScalaNamesUtil
+
+/**
+ * Names of the members of library objects imported by default, e.g. `scala.Predef`.
+ *
+ * A table is built once per list of default imports and is shared by all modules and files with these default imports.
+ * It depends on libraries only, so it's dropped on roots change, see [[ScalaPsiManager.defaultImportsTable]].
+ * Packages and objects defined in sources are not in the table: members of packages are already looked up by name,
+ * and members of objects in sources may change at any time.
+ */
+final class DefaultImportsTable private (memberNames: Map[String, Set[String]]) {
+
+  /**
+   * @return false if `fqn` is a library object, which has no member named `name`
+   */
+  def mayContain(fqn: String, name: String): Boolean =
+    memberNames.get(fqn).forall(_.contains(ScalaNamesUtil.clean(name)))
+}
+
+object DefaultImportsTable {
+
+  val Empty: DefaultImportsTable = new DefaultImportsTable(Map.empty)
+
+  // members of the objects may refer to default imports, e.g. while their signatures are built
+  private val guard = RecursionManager.RecursionGuard[Seq[String], Nothing]("defaultImportsTableGuard")
+
+  /**
+   * Objects are looked up in all libraries of the project,
+   * so the names are the same or a superset of the names visible in any module.
+   *
+   * @return None if the table is already being built by this thread
+   */
+  def build(defaultImports: Seq[String])
+           (implicit manager: ScalaPsiManager): Option[DefaultImportsTable] =
+    guard.doPreventingRecursion(defaultImports) {
+      val scope = GlobalSearchScope.allScope(manager.project)
+
+      val memberNames = for {
+        fqn <- defaultImports
+        objects = manager.getCachedClasses(scope, fqn).collect {
+          case o: ScObject => o
+        }
+        if objects.nonEmpty && objects.forall(isLibraryObject(_))
+      } yield fqn -> objects.flatMap(names).toSet
+
+      new DefaultImportsTable(memberNames.toMap)
+    }
+
+  // package objects also process their packages
+  private def isLibraryObject(`object`: ScObject)
+                             (implicit manager: ScalaPsiManager): Boolean =
+    !`object`.isPackageObject &&
+      CachesUtil.libraryAwareModTracker(`object`) == manager.rootManager
+
+  private def names(`object`: ScObject): Iterator[String] =
+    TypeDefinitionMembers.getSignatures(`object`).allSignatures.map(_.name) ++
+      TypeDefinitionMembers.getTypes(`object`).allSignatures.map(_.name) ++
+      `object`.selfTypeElement.map(_.name)
+}
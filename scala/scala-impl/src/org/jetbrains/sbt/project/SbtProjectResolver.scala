@@ -8,7 +8,7 @@ import com.intellij.notification.NotificationType
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.externalSystem.model.project.{ProjectData => ESProjectData, _}
 import com.intellij.openapi.externalSystem.model.task.event._
-import com.intellij.openapi.externalSystem.model.task.{ExternalSystemTaskId, ExternalSystemTaskNotificationListener}
+import com.intellij.openapi.externalSystem.model.task.{ExternalSystemTaskId, ExternalSystemTaskNotificationEvent, ExternalSystemTaskNotificationListener}
 import com.intellij.openapi.externalSystem.model.{DataNode, ExternalSystemException}
 import com.intellij.openapi.externalSystem.service.project.ExternalSystemProjectResolver
 import com.intellij.openapi.module.StdModuleTypes
@@ -25,7 +25,6 @@ import org.jetbrains.sbt.project.module.SbtModuleType
 import org.jetbrains.sbt.project.settings._
 import org.jetbrains.sbt.project.structure._
 import org.jetbrains.sbt.resolvers.{SbtMavenResolver, SbtResolver}
-import org.jetbrains.sbt.structure.XmlSerializer._
 import org.jetbrains.sbt.structure.{BuildData, ConfigurationData, DependencyData, DirectoryData, JavaData, ProjectData}
 import org.jetbrains.sbt.{structure => sbtStructure}
 
@@ -33,7 +32,6 @@ import scala.collection.JavaConverters._
 import scala.concurrent.Await
 import scala.concurrent.duration.Duration
 import scala.util.{Failure, Random, Success, Try}
-import scala.xml.{Elem, XML}
 
 /**
  * @author Pavel Fatin
@@ -85,8 +83,7 @@ class SbtProjectResolver extends ExternalSystemProjectResolver[SbtExecutionSetti
     }
 
     val conversionResult = structureDump
-      .map { case (elem, _) =>
-        val data = elem.deserialize[sbtStructure.StructureData].right.get
+      .map { case (data, _) =>
         convert(normalizePath(projectRoot), data, settings.jdk).toDataNode
       }
       .recoverWith {
@@ -133,7 +130,7 @@ class SbtProjectResolver extends ExternalSystemProjectResolver[SbtExecutionSetti
                             settings:SbtExecutionSettings,
                             taskId: ExternalSystemTaskId,
                             notifications: ExternalSystemTaskNotificationListener
-                           ): Try[(Elem, BuildMessages)] = {
+                           ): Try[(sbtStructure.StructureData, BuildMessages)] = {
 
     lazy val project = taskId.findProject()
     val useShellImport = settings.useShellForImport && shellImportSupported(sbtVersion) && project != null
@@ -178,13 +175,24 @@ class SbtProjectResolver extends ExternalSystemProjectResolver[SbtExecutionSetti
         if (messages.status != BuildMessages.OK || !structureFile.isFile || structureFile.length < 0)
           Failure(new Exception("extracting structure failed"))
         else Try {
-          val elem = XML.load(structureFile.toURI.toURL)
-          (elem, messages)
+          val data = new StructureDumpReader(readingProgress(taskId, notifications)).read(structureFile)
+          (data, messages)
         }
       }
     }
   }
 
+  private def readingProgress(taskId: ExternalSystemTaskId, notifications: ExternalSystemTaskNotificationListener): Double => Unit = {
+    var reportedPercent = -1
+    fraction => {
+      val percent = (fraction * 100).toInt
+      if (percent != reportedPercent) {
+        reportedPercent = percent
+        notifications.onStatusChange(new ExternalSystemTaskNotificationEvent(taskId, s"reading project structure: $percent%"))
+      }
+    }
+  }
+
   private def dumpOptions(settings: SbtExecutionSettings): Seq[String] = {
       Seq("download") ++
       settings.resolveClassifiers.seq("resolveClassifiers") ++
@@ -0,0 +1,124 @@
+package org.jetbrains.sbt
+package project.structure
+
+import java.io.{BufferedInputStream, File, FileInputStream, FilterInputStream, InputStream}
+
+import javax.xml.stream.{XMLInputFactory, XMLStreamConstants, XMLStreamReader}
+import org.jetbrains.sbt.structure.XmlSerializer._
+import org.jetbrains.sbt.structure.{ProjectData, StructureData}
+
+import scala.collection.mutable
+import scala.xml._
+
+/**
+ * Reads the structure dump produced by sbt-structure without building a DOM of the whole file.
+ *
+ * The dump is read with a StAX reader, subprojects are deserialized one by one as soon as they are read,
+ * so only the DOM of a single subproject is held in memory at a time.
+ * The remaining top-level elements (builds, repository, etc.) are small and are deserialized together afterwards.
+ * Repeated strings (paths, module ids, versions) share a single instance.
+ *
+ * @param progress receives the fraction of the file read so far
+ */
+class StructureDumpReader(progress: Double => Unit = _ => ()) {
+
+  private val strings = mutable.HashMap.empty[String, String]
+
+  def read(file: File): StructureData = {
+    val input = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))
+    val total = file.length.max(1)
+
+    try {
+      val reader = StructureDumpReader.inputFactory.createXMLStreamReader(input)
+      try {
+        reader.nextTag()
+        val rootLabel = reader.getLocalName
+        val rootAttributes = attributes(reader)
+
+        val projects = Seq.newBuilder[ProjectData]
+        val otherElements = Seq.newBuilder[Node]
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+          val element = readElement(reader)
+          if (element.label == StructureDumpReader.ProjectLabel) projects += element.deserialize[ProjectData].toTry.get
+          else otherElements += element
+
+          progress(input.count.toDouble / total)
+        }
+
+        val skeleton = Elem(null, rootLabel, rootAttributes, TopScope, minimizeEmpty = true, otherElements.result(): _*)
+        skeleton.deserialize[StructureData].toTry.get.copy(projects = projects.result())
+      } finally {
+        reader.close()
+      }
+    } finally {
+      input.close()
+      strings.clear()
+    }
+  }
+
+  // the reader is at the start of an element, it's left at the end of the same element
+  private def readElement(reader: XMLStreamReader): Elem = {
+    val label = reader.getLocalName
+    val elementAttributes = attributes(reader)
+
+    val children = mutable.ArrayBuffer.empty[Node]
+    val text = new java.lang.StringBuilder()
+
+    def flushText(): Unit = if (text.length > 0) {
+      children += Text(intern(text.toString))
+      text.setLength(0)
+    }
+
+    var event = reader.next()
+    while (event != XMLStreamConstants.END_ELEMENT) {
+      event match {
+        case XMLStreamConstants.START_ELEMENT =>
+          flushText()
+          children += readElement(reader)
+        case XMLStreamConstants.CHARACTERS | XMLStreamConstants.CDATA | XMLStreamConstants.SPACE =>
+          text.append(reader.getTextCharacters, reader.getTextStart, reader.getTextLength)
+        case _ =>
+      }
+      event = reader.next()
+    }
+    flushText()
+
+    Elem(null, label, elementAttributes, TopScope, minimizeEmpty = true, children: _*)
+  }
+
+  private def attributes(reader: XMLStreamReader): MetaData =
+    (reader.getAttributeCount - 1 to 0 by -1).foldLeft(Null: MetaData) { (next, i) =>
+      new UnprefixedAttribute(reader.getAttributeLocalName(i), intern(reader.getAttributeValue(i)), next)
+    }
+
+  private def intern(s: String): String = strings.getOrElseUpdate(s, s)
+
+  private class CountingInputStream(delegate: InputStream) extends FilterInputStream(delegate) {
+    var count: Long = 0
+
+    override def read(): Int = {
+      val result = super.read()
+      if (result >= 0) count += 1
+      result
+    }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int = {
+      val result = super.read(b, off, len)
+      if (result > 0) count += result
+      result
+    }
+  }
+}
+
+object StructureDumpReader {
+  private val ProjectLabel = "project"
+
+  private lazy val inputFactory: XMLInputFactory = {
+    val factory = XMLInputFactory.newInstance()
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false)
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true)
+    factory
+  }
+}
@@ -0,0 +1,225 @@
+package org.jetbrains.jps.incremental.scala
+package remote
+
+import java.io._
+import java.net.{InetAddress, ServerSocket, Socket}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, Executors, Future, TimeUnit}
+
+import com.martiansoftware.nailgun.NGConstants
+import org.jetbrains.jps.incremental.scala.remote.CompileServerSession.{Frame, Response}
+import org.junit.Assert._
+import org.junit.{After, Before, Test}
+
+import scala.collection.mutable
+
+class CompileServerSessionTest {
+
+  private var serverSocket: ServerSocket = _
+  private val executor = Executors.newCachedThreadPool()
+
+  @Before
+  def setUp(): Unit = {
+    serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress)
+  }
+
+  @After
+  def tearDown(): Unit = {
+    serverSocket.close()
+    executor.shutdownNow()
+  }
+
+  @Test
+  def responseRoundTrip(): Unit = {
+    val payload = "xeventx".getBytes(StandardCharsets.UTF_8)
+    val (id, data) = Response.read(Response.write(42, payload, 1, 5))
+
+    assertEquals(42, id)
+    assertEquals("event", new String(data, StandardCharsets.UTF_8))
+  }
+
+  @Test
+  def requestFrame(): Unit = {
+    val (session, server) = openSession()
+    val client = new RecordingClient
+    val sent = sendInBackground(session, Seq("-a", "текст", ""), client)
+
+    val frame = server.readFrame()
+    assertEquals(Frame.Request, frame.frameType)
+    assertEquals(Seq("-a", "текст", ""), frame.arguments)
+
+    server.complete(frame.id)
+    sent.get(10, TimeUnit.SECONDS)
+    session.close()
+  }
+
+  @Test
+  def multiplexedRequests(): Unit = {
+    val (session, server) = openSession()
+    val first = new RecordingClient
+    val second = new RecordingClient
+
+    val firstSent = sendInBackground(session, Seq("first"), first)
+    val firstId = server.readFrame().id
+    val secondSent = sendInBackground(session, Seq("second"), second)
+    val secondId = server.readFrame().id
+    assertNotEquals(firstId, secondId)
+
+    server.event(secondId, "second 1")
+    server.event(firstId, "first 1")
+    server.event(secondId, "second 2")
+    server.complete(secondId)
+    secondSent.get(10, TimeUnit.SECONDS)
+    assertFalse(firstSent.isDone)
+
+    server.event(firstId, "first 2")
+    server.complete(firstId)
+    firstSent.get(10, TimeUnit.SECONDS)
+
+    assertEquals(Seq("first 1", "first 2"), first.debugMessages)
+    assertEquals(Seq("second 1", "second 2"), second.debugMessages)
+    assertTrue(session.isAlive)
+    session.close()
+  }
+
+  @Test
+  def cancellation(): Unit = {
+    val (session, server) = openSession()
+    val client = new RecordingClient
+    val sent = sendInBackground(session, Seq("request"), client)
+
+    val request = server.readFrame()
+    client.canceled = true
+
+    val cancel = server.readFrame()
+    assertEquals(Frame.Cancel, cancel.frameType)
+    assertEquals(request.id, cancel.id)
+
+    server.complete(request.id)
+    sent.get(10, TimeUnit.SECONDS)
+    session.close()
+  }
+
+  @Test
+  def allRequestsAreAbortedOnEof(): Unit = {
+    val (session, server) = openSession()
+    val first = sendInBackground(session, Seq("first"), new RecordingClient)
+    val second = sendInBackground(session, Seq("second"), new RecordingClient)
+    server.readFrame()
+    server.readFrame()
+
+    server.socket.close()
+
+    Seq(first, second).foreach { sent =>
+      try {
+        sent.get(10, TimeUnit.SECONDS)
+        fail("The request must be aborted")
+      } catch {
+        case e: java.util.concurrent.ExecutionException =>
+          assertTrue(e.getCause.isInstanceOf[IOException])
+      }
+    }
+    assertFalse(session.isAlive)
+  }
+
+  @Test
+  def liveSessionIsReused(): Unit = {
+    val (session, _) = openSession()
+
+    val reused = CompileServerSession.getOrOpen(serverSocket.getInetAddress, serverSocket.getLocalPort) {
+      fail("A live session must not be reopened")
+      Seq.empty
+    }
+    assertSame(session, reused.get)
+    session.close()
+  }
+
+  @Test
+  def closedSessionIsReopened(): Unit = {
+    val (closed, _) = openSession()
+    closed.close()
+
+    val (reopened, _) = openSession()
+    assertNotSame(closed, reopened)
+    assertTrue(reopened.isAlive)
+    reopened.close()
+  }
+
+  @Test(expected = classOf[IOException])
+  def sendToClosedSessionFails(): Unit = {
+    val (session, _) = openSession()
+    session.close()
+
+    session.send(Seq("request"), new RecordingClient)
+  }
+
+  private def openSession(): (CompileServerSession, FakeServer) = {
+    val accepted = executor.submit(new Callable[FakeServer] {
+      override def call(): FakeServer = {
+        val server = new FakeServer(serverSocket.accept())
+        server.readHandshake()
+        server.accept()
+        server
+      }
+    })
+
+    val session = CompileServerSession.getOrOpen(serverSocket.getInetAddress, serverSocket.getLocalPort) {
+      Seq(Chunk(NGConstants.CHUNKTYPE_COMMAND, CompileServerSession.Alias.getBytes(StandardCharsets.UTF_8)))
+    }
+    assertTrue(session.isDefined)
+    (session.get, accepted.get(10, TimeUnit.SECONDS))
+  }
+
+  private def sendInBackground(session: CompileServerSession, arguments: Seq[String], client: Client): Future[Unit] =
+    executor.submit(new Callable[Unit] {
+      override def call(): Unit = session.send(arguments, client)
+    })
+
+  private case class ReceivedFrame(id: Int, frameType: Byte, arguments: Seq[String])
+
+  private class FakeServer(val socket: Socket) {
+    private val input = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+    private val output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))
+    private val encoder = new EventCodec.Encoder
+
+    def readHandshake(): Unit =
+      assertEquals(NGConstants.CHUNKTYPE_COMMAND, Chunk.readFrom(input).kind)
+
+    def accept(): Unit = respond(0, Array.emptyByteArray)
+
+    def readFrame(): ReceivedFrame = {
+      val chunk = Chunk.readFrom(input)
+      assertEquals(NGConstants.CHUNKTYPE_STDIN, chunk.kind)
+
+      val data = new DataInputStream(new ByteArrayInputStream(chunk.data))
+      val id = data.readInt()
+      val frameType = data.readByte()
+      val arguments = Seq.fill(data.readInt()) {
+        val bytes = new Array[Byte](data.readInt())
+        data.readFully(bytes)
+        new String(bytes, StandardCharsets.UTF_8)
+      }
+      ReceivedFrame(id, frameType, arguments)
+    }
+
+    def event(id: Int, text: String): Unit = respond(id, encoder.encode(DebugEvent(text)))
+
+    def complete(id: Int): Unit = respond(id, Array.emptyByteArray)
+
+    private def respond(id: Int, payload: Array[Byte]): Unit = {
+      Chunk(NGConstants.CHUNKTYPE_STDOUT, Response.write(id, payload, 0, payload.length)).writeTo(output)
+      output.flush()
+    }
+  }
+
+  private class RecordingClient extends DummyClient {
+    @volatile var canceled = false
+    private val debugs = mutable.ArrayBuffer.empty[String]
+
+    def debugMessages: Seq[String] = debugs.synchronized(debugs.toList)
+
+    override def debug(text: String): Unit = debugs.synchronized(debugs += text)
+
+    override def isCanceled: Boolean = canceled
+  }
+}
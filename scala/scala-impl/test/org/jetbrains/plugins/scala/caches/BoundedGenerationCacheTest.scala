@@ -0,0 +1,70 @@
+package org.jetbrains.plugins.scala
+package caches
+
+import org.junit.Assert._
+import org.junit.Test
+
+class BoundedGenerationCacheTest {
+
+  @Test
+  def getAfterPut(): Unit = {
+    val cache = new BoundedGenerationCache[String, String](100)
+    cache.put("a", "A")
+
+    assertEquals("A", cache.get("a"))
+    assertNull(cache.get("b"))
+    assertEquals(1, cache.hitCount)
+    assertEquals(1, cache.missCount)
+  }
+
+  @Test
+  def invalidatedEntriesAreEvictedLazily(): Unit = {
+    val cache = new BoundedGenerationCache[String, String](100)
+    cache.put("a", "A")
+    cache.put("b", "B")
+    cache.invalidateAll()
+
+    assertEquals(2, cache.size)
+    assertNull(cache.get("a"))
+    assertEquals(1, cache.size)
+    assertEquals(1, cache.evictionCount)
+
+    cache.put("a", "A2")
+    assertEquals("A2", cache.get("a"))
+  }
+
+  @Test
+  def sizeIsBounded(): Unit = {
+    val cache = new BoundedGenerationCache[Integer, String](64, segmentCount = 4)
+    for (i <- 0 until 1000) {
+      cache.get(i)
+      cache.put(i, i.toString)
+    }
+
+    assertTrue(cache.size <= 64)
+    assertTrue(cache.evictionCount > 0)
+  }
+
+  @Test
+  def frequentlyUsedEntrySurvives(): Unit = {
+    val cache = new BoundedGenerationCache[Integer, String](4, segmentCount = 1)
+    val hot: Integer = -1
+    cache.put(hot, "hot")
+    for (i <- 0 until 100) {
+      assertEquals("hot", cache.get(hot))
+      cache.put(i, i.toString)
+    }
+
+    assertEquals("hot", cache.get(hot))
+  }
+
+  @Test
+  def clear(): Unit = {
+    val cache = new BoundedGenerationCache[String, String](100)
+    cache.put("a", "A")
+    cache.clear()
+
+    assertEquals(0, cache.size)
+    assertNull(cache.get("a"))
+  }
+}
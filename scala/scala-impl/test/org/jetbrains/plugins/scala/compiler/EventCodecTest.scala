@@ -0,0 +1,77 @@
+package org.jetbrains.plugins.scala
+package compiler
+
+import java.io.File
+
+import org.jetbrains.jps.incremental.messages.BuildMessage.Kind
+import org.jetbrains.jps.incremental.scala.remote._
+import org.junit.Assert._
+import org.junit.Test
+
+class EventCodecTest {
+
+  private val source = new File("/project/src/A.scala")
+  private val module = new File("/project/target/classes")
+
+  @Test
+  def roundTrip(): Unit = {
+    val events = Seq(
+      MessageEvent(Kind.ERROR, "type mismatch", Some(source), Some(10L), Some(-1L)),
+      MessageEvent(Kind.INFO, "", None, None, None),
+      ProgressEvent("compiling", Some(0.5F)),
+      ProgressEvent(null, None),
+      DebugEvent("текст"),
+      GeneratedEvent(source, module, "A$"),
+      DeletedEvent(module),
+      CompilationEndEvent(),
+      ProcessingEndEvent(),
+      WorksheetOutputEvent("res0: Int = 1"),
+      CompilationStartedInSbt("/project/src/A.scala")
+    )
+    val encoder = new EventCodec.Encoder
+    val decoder = new EventCodec.Decoder
+
+    events.foreach { event =>
+      val bytes = encoder.encode(event)
+      assertTrue(EventCodec.isBinary(bytes))
+      assertEquals(event, decoder.decode(bytes))
+    }
+  }
+
+  @Test
+  def traceEvent(): Unit = {
+    val stackTrace = Array(new StackTraceElement("A", "foo", "A.scala", 1), new StackTraceElement("B", "bar", null, -2))
+    val event = new EventCodec.Encoder().encode(TraceEvent("java.lang.Exception", null, stackTrace))
+
+    new EventCodec.Decoder().decode(event) match {
+      case TraceEvent(className, message, decodedTrace) =>
+        assertEquals("java.lang.Exception", className)
+        assertNull(message)
+        assertArrayEquals(stackTrace.asInstanceOf[Array[AnyRef]], decodedTrace.asInstanceOf[Array[AnyRef]])
+      case other =>
+        fail(s"Unexpected event: $other")
+    }
+  }
+
+  @Test
+  def repeatedPathsAreReferenced(): Unit = {
+    val encoder = new EventCodec.Encoder
+    val first = encoder.encode(DeletedEvent(module))
+    val second = encoder.encode(DeletedEvent(module))
+
+    assertTrue(second.length < first.length)
+
+    val decoder = new EventCodec.Decoder
+    assertEquals(DeletedEvent(module), decoder.decode(first))
+    assertEquals(DeletedEvent(module), decoder.decode(second))
+  }
+
+  @Test
+  def serializedEventsAreDecoded(): Unit = {
+    val event = MessageEvent(Kind.WARNING, "deprecated", Some(source), Some(1L), Some(2L))
+    val decoder = new EventCodec.Decoder
+
+    assertFalse(EventCodec.isBinary(event.toBytes))
+    assertEquals(event, decoder.decode(event.toBytes))
+  }
+}
@@ -0,0 +1,56 @@
+package org.jetbrains.plugins.scala
+package debugger.evaluation
+
+import com.intellij.debugger.SourcePosition
+import com.intellij.debugger.engine.evaluation.EvaluationContextImpl
+import com.intellij.debugger.engine.evaluation.expression.{Evaluator, Modifier}
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.psi.impl.source.ScalaCodeFragment
+import org.junit.Assert._
+
+class ScalaEvaluatorCacheTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private var position: SourcePosition = _
+
+  override def setUp(): Unit = {
+    super.setUp()
+
+    val file = configureFromFileText(
+      """object Main {
+        |  def foo(): Unit = {
+        |    println(1)
+        |  }
+        |}
+        |""".stripMargin
+    )
+    position = SourcePosition.createFromOffset(file, file.getText.indexOf("println"))
+  }
+
+  private def fragment(text: String, imports: String = ""): ScalaCodeFragment = {
+    val result = ScalaCodeFragment(text)(getProject)
+    result.addImportsFromString(imports)
+    result
+  }
+
+  private def evaluator: Evaluator = new Evaluator {
+    override def evaluate(context: EvaluationContextImpl): AnyRef = null
+    override def getModifier: Modifier = null
+  }
+
+  def testFragmentsDifferingInWhitespaceShareEvaluator(): Unit = {
+    val cache = new ScalaEvaluatorCache(getProject)
+    val added = cache.add(position, fragment("max(1, 2)"), evaluator)
+
+    assertEquals(Some(added), cache.get(position, fragment("max( 1,  2 ) // comment")))
+    assertEquals(None, cache.get(position, fragment("max(1, 3)")))
+  }
+
+  def testFragmentsWithDifferentImportsDoNotShareEvaluator(): Unit = {
+    val cache = new ScalaEvaluatorCache(getProject)
+    val added = cache.add(position, fragment("max(1, 2)", "scala.math._,java.util.List"), evaluator)
+
+    assertEquals(Some(added), cache.get(position, fragment("max(1, 2)", "java.util.List,scala.math._")))
+    assertEquals(None, cache.get(position, fragment("max(1, 2)", "java.lang.Math._")))
+    assertEquals(None, cache.get(position, fragment("max(1, 2)")))
+  }
+}
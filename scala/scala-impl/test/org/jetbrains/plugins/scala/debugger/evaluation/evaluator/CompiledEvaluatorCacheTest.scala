@@ -0,0 +1,93 @@
+package org.jetbrains.plugins.scala
+package debugger.evaluation.evaluator
+
+import java.nio.file.Files
+
+import com.intellij.psi.PsiElement
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.debugger.evaluation.evaluator.CompiledEvaluatorCache.CompiledEvaluatorCacheCapabilities
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScMethodCall
+import org.jetbrains.plugins.scala.lang.psi.impl.source.ScalaCodeFragment
+import org.junit.Assert._
+
+class CompiledEvaluatorCacheTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private var context: PsiElement = _
+
+  override def setUp(): Unit = {
+    super.setUp()
+
+    context = configureFromFileText(
+      """object Main {
+        |  def foo(): Unit = {
+        |    val x = 1
+        |    println(x)
+        |  }
+        |}
+        |""".stripMargin
+    ).depthFirst().collectFirst {
+      case call: ScMethodCall => call
+    }.get
+  }
+
+  private def fragment(text: String, imports: String = ""): ScalaCodeFragment = {
+    val result = ScalaCodeFragment(text, context)(getProject)
+    result.addImportsFromString(imports)
+    result
+  }
+
+  def testSameFragmentIsGeneratedOnce(): Unit = {
+    val cache = new CompiledEvaluatorCache
+
+    val generated = cache.generatedClass(fragment("x + 1"), context)
+    assertSame(generated, cache.generatedClass(fragment("x + 1"), context))
+    assertNotSame(generated, cache.generatedClass(fragment("x + 2"), context))
+    assertEquals(2, cache.size)
+  }
+
+  def testFragmentsWithDifferentImportsAreGeneratedSeparately(): Unit = {
+    val cache = new CompiledEvaluatorCache
+
+    val generated = cache.generatedClass(fragment("max(x, 2)", "scala.math._"), context)
+    assertNotSame(generated, cache.generatedClass(fragment("max(x, 2)", "java.lang.Math._"), context))
+  }
+
+  def testLeastRecentlyUsedClassesAreEvicted(): Unit = {
+    val cache = new CompiledEvaluatorCache(maximumSize = 2)
+
+    val first = cache.generatedClass(fragment("x + 1"), context)
+    cache.generatedClass(fragment("x + 2"), context)
+    assertSame(first, cache.generatedClass(fragment("x + 1"), context))
+    cache.generatedClass(fragment("x + 3"), context)
+
+    assertEquals(2, cache.size)
+    assertSame(first, cache.generatedClass(fragment("x + 1"), context))
+    assertEquals(2, cache.size)
+  }
+
+  def testHitAndMissCounts(): Unit = {
+    val cache = new CompiledEvaluatorCache
+    cache.compiled()
+    cache.evaluatedWithoutCompilation()
+    cache.evaluatedWithoutCompilation()
+
+    assertEquals(1, CompiledEvaluatorCacheCapabilities.missCount(cache))
+    assertEquals(2, CompiledEvaluatorCacheCapabilities.hitCount(cache))
+
+    cache.generatedClass(fragment("x + 1"), context)
+    assertEquals(1, CompiledEvaluatorCacheCapabilities.cachedEntitiesCount(cache))
+    CompiledEvaluatorCacheCapabilities.clear(cache)
+    assertEquals(0, cache.size)
+  }
+
+  def testClassBytesOutliveOutputFiles(): Unit = {
+    val file = Files.createTempFile("GeneratedEvaluatorClass", ".class")
+    Files.write(file, Array[Byte](1, 2, 3))
+
+    val compiled = OutputFileObject.load(file.toFile, "GeneratedEvaluatorClass$1")
+    Files.delete(file)
+
+    assertArrayEquals(Array[Byte](1, 2, 3), compiled.toByteArray)
+  }
+}
@@ -35,7 +35,15 @@ trait DecompilerTestBase extends TestCase {
 
   protected final def decompile(classFilePath: String): String = {
     val file = new File(new jFile(classFilePath))
-    val Some((_, sourceText)) = Decompiler.sourceNameAndText(file.name, file.toByteArray)
+    val bytes = file.toByteArray
+    val Some((sourceName, sourceText)) = Decompiler.sourceNameAndText(file.name, bytes)
+    Assert.assertEquals(Some(sourceName), Decompiler.sourceName(file.name, bytes))
+
+    val Some(classFile) = Decompiler.scalaClassFile(file.name, bytes)
+    Assert.assertEquals(sourceName, classFile.sourceName)
+    // the signature is decoded on each request, the class bytes must stay intact
+    Assert.assertEquals(Some(sourceText), classFile.sourceText)
+    Assert.assertEquals(Some(sourceText), classFile.sourceText)
     sourceText
   }
 }
@@ -1,7 +1,11 @@
 package org.jetbrains.plugins.scala.findUsages.compilerReferences
 package bytecode
 
-import java.io.InputStream
+import java.io.{File, InputStream}
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.plugin.scala.compilerReferences.Messages
+import org.jetbrains.plugin.scala.compilerReferences.bytecode._
 
 import scala.collection.MapLike
 import scala.collection.immutable.StringOps
@@ -76,6 +80,43 @@ class ClassfileParserTest {
   def testSAMInheritor(): Unit = doTest[SAM] { parsed =>
     assertEquals(parsed.funExprs, Seq(FunExprInheritor("org.jetbrains.plugins.scala.findUsages.compilerReferences.bytecode.Foo", 108)))
   }
+
+  @Test
+  def testLinesBeforeFirstLineNumberOfMethod(): Unit = {
+    val extracted = ExtractedClass(
+      isAnonymous = false,
+      "a.Foo",
+      Set.empty,
+      Seq(
+        MethodReferences("beforeAnyLine", Seq(FieldReference("a.Bar", "dropped", -1)), Seq.empty, 5, 7),
+        MethodReferences("first", Seq(FieldReference("a.Bar", "x", 10)), Seq.empty, 10, 12),
+        MethodReferences("synthetic", Seq.empty, Seq.empty, 50, 50),
+        MethodReferences("second", Seq(MethodReference("a.Bar", "y", -1, 0)), Seq(FunExprInheritor("a.Sam", -1)), 20, 20)
+      ),
+      None
+    )
+    val parsed = ClassfileParser.toParsedClass(extracted, Set("Foo.synthetic"))
+
+    // the line of the synthetic method is skipped, as if it was not visited
+    assertEquals(
+      Seq(FieldReference("a.Bar", "x", 10), MethodReference("a.Bar", "y", 12, 0)),
+      parsed.refs
+    )
+    assertEquals(Seq(FunExprInheritor("a.Sam", 12)), parsed.funExprs)
+  }
+
+  @Test
+  def testStreamedReferences(): Unit = {
+    val extracted = Map(
+      new File("WithRefs.class") -> ReferenceExtractor.extract(FileUtil.loadBytes(loadClass[WithRefs])),
+      new File("SAM.class")      -> ReferenceExtractor.extract(FileUtil.loadBytes(loadClass[SAM]))
+    )
+    val records = Seq(SourceReferences(new File("ClassfileParserTest.scala"), extracted))
+    val decoded = Messages.decompressReferences(Messages.compressReferences(records)).get
+
+    assertEquals(records, decoded)
+    assertEquals(ClassfileParser.parse(records.head), ClassfileParser.parse(decoded.head))
+  }
 }
 
 private class Simple {}
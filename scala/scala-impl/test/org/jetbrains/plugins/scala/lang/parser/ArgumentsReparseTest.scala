@@ -0,0 +1,57 @@
+package org.jetbrains.plugins.scala.lang.parser
+
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.impl.DebugUtil
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScMethodCall
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiElementFactory.createScalaFileFromText
+import org.junit.Assert._
+
+/**
+  * An argument list reparsed on its own must produce the same tree as a full parse of the edited text.
+  */
+class ArgumentsReparseTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val Marker = "format(prefix, "
+
+  private val fileText =
+    s"""class Reparse {
+       |  def method(prefix: String, values: Seq[Int]): String = {
+       |    val length = values.length
+       |    ${Marker}values.mkString(", "), length)
+       |  }
+       |}
+       |""".stripMargin
+
+  def testInsertIdentifier(): Unit = doTest("x", reparsedLocally = true)
+
+  def testInsertArgument(): Unit = doTest("f(a, (b)), ", reparsedLocally = true)
+
+  def testInsertParenthesesInLiterals(): Unit = doTest("\")\", ')', ", reparsedLocally = true)
+
+  def testInsertBlockArgument(): Unit = doTest("{ x => (x) }, ", reparsedLocally = true)
+
+  def testInsertUnbalancedParenthesis(): Unit = doTest("(", reparsedLocally = false)
+
+  private def doTest(inserted: String, reparsedLocally: Boolean): Unit = {
+    implicit val project: Project = getProject
+
+    val file = configureFromFileText(fileText)
+    val call = file.depthFirst().collectFirst {
+      case call: ScMethodCall if call.getText.startsWith(Marker) => call
+    }.get
+
+    val document = getEditor.getDocument
+    val offset = fileText.indexOf(Marker) + Marker.length
+    inWriteCommandAction(document.insertString(offset, inserted))
+    PsiDocumentManager.getInstance(project).commitDocument(document)
+
+    val expected = createScalaFileFromText(document.getText)
+    assertEquals(DebugUtil.psiToString(expected, false, true), DebugUtil.psiToString(file, false, true))
+
+    // the call survives only if its arguments were reparsed without the enclosing block
+    assertEquals(reparsedLocally, call.isValid)
+  }
+}
@@ -0,0 +1,74 @@
+package org.jetbrains.plugins.scala.lang.parser
+
+import com.intellij.psi.tree.IErrorCounterReparseableElementType.{FATAL_ERROR, NO_ERRORS}
+import org.jetbrains.plugins.scala.base.SimpleTestCase
+import org.jetbrains.plugins.scala.lang.lexer.ScalaTokenTypes.{tLBRACE, tLPARENTHESIS, tRBRACE, tRPARENTHESIS}
+import org.junit.Assert.assertEquals
+
+class BraceBalanceScannerTest extends SimpleTestCase {
+
+  import BraceBalanceScanner.{Unknown, errorsCount}
+
+  private def doTest(text: String, expected: Int): Unit = {
+    assertEquals(s"Scanned $text", expected, errorsCount(text))
+    assertEquals(s"Lexed $text", expected, ScCodeBlockElementType.errorsCountByLexer(text, tLBRACE, tRBRACE))
+  }
+
+  private def doTestParentheses(text: String, expected: Int): Unit = {
+    assertEquals(s"Scanned $text", expected, errorsCount(text, '(', ')'))
+    assertEquals(s"Lexed $text", expected, ScCodeBlockElementType.errorsCountByLexer(text, tLPARENTHESIS, tRPARENTHESIS))
+  }
+
+  private def doTestUnknown(text: String): Unit =
+    assertEquals(text, Unknown, errorsCount(text))
+
+  def testBalanced(): Unit = doTest("{ foo { bar } }", NO_ERRORS)
+
+  def testUnclosed(): Unit = doTest("{ foo { bar }", 1)
+
+  def testNotBlock(): Unit = doTest(" { foo }", FATAL_ERROR)
+
+  def testClosedBeforeEnd(): Unit = doTest("{ foo } bar", FATAL_ERROR)
+
+  def testTrailingWhitespace(): Unit = doTest("{ foo }\n", FATAL_ERROR)
+
+  def testComments(): Unit = doTest(
+    """{
+      |  // }
+      |  /* { /* } */ } */
+      |  /** } */
+      |}""".stripMargin, NO_ERRORS)
+
+  def testStrings(): Unit = doTest(
+    "{\n" +
+      "  val a = \"}\\\"}\"\n" +
+      "  val b = +\"}\"\n" +
+      "  val c = \"\" + \"\"\n" +
+      "  val d = \"\"\"}\"\"\"\n" +
+      "  val e = \"\"\"}\"\"\"\"\n" +
+      "}", NO_ERRORS)
+
+  def testCharacters(): Unit = doTest("{ '{' + '}' + '\\'' + '\\\\' + 'symbol + ''' }", NO_ERRORS)
+
+  def testBackquoted(): Unit = doTest("{ `}` }", NO_ERRORS)
+
+  def testInterpolatedStrings(): Unit = doTest(
+    "{\n" +
+      "  s\"{$$}${ x.map { y => y } }}\"\n" +
+      "  sql\"\"\"select {$$} ${ ids.map { id => id } } where \"}\" \"\"\"\n" +
+      "}", NO_ERRORS)
+
+  def testUnclosedInterpolatedString(): Unit = doTestUnknown("{ s\"${ x }\n }")
+
+  def testXml(): Unit = doTestUnknown("{ <a>{ x }</a> }")
+
+  def testLiteralInInjection(): Unit = doTestUnknown("{ s\"${ \"}\" }\" }")
+
+  def testUnclosedComment(): Unit = doTestUnknown("{ /* }")
+
+  def testArguments(): Unit = doTestParentheses("(a, f(b), \")\", ')', { c => (c) })", NO_ERRORS)
+
+  def testUnclosedArguments(): Unit = doTestParentheses("(a, f(b)", 1)
+
+  def testBlockArguments(): Unit = doTestParentheses("{ (a) }", FATAL_ERROR)
+}
@@ -0,0 +1,72 @@
+package org.jetbrains.plugins.scala.lang.psi
+
+import com.intellij.psi.PsiDocumentManager
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.psi.api.ScalaFile
+import org.junit.Assert.{assertEquals, assertFalse, assertTrue}
+
+class ImportsTableTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val file = """
+    |import java.util.List
+    |import scala.collection.{Map => ScalaMap, Set}
+    |import scala.concurrent._
+    |import scala.util.{Try, _}
+    |import java.io.{File => _}
+    |import `type`.`class`
+    |import scala.math.{BigInt => _, BigDecimal => Decimal, _}
+    |""".stripMargin
+
+  def testExplicitImports(): Unit = {
+    val (table, statements) = importsTable()
+
+    assertTrue(table.mayImport(statements(0), "List"))
+    assertFalse(table.mayImport(statements(0), "Map"))
+
+    assertTrue(table.mayImport(statements(1), "ScalaMap"))
+    assertTrue(table.mayImport(statements(1), "Set"))
+    assertFalse(table.mayImport(statements(1), "Map"))
+
+    assertFalse(table.mayImport(statements(4), "File"))
+    assertTrue(table.mayImport(statements(5), "class"))
+
+    assertEquals(Set(statements(1)), table.explicitImportsOf("Set"))
+  }
+
+  def testWildcardImportsAreExpandedPerName(): Unit = {
+    val (table, statements) = importsTable()
+
+    assertTrue(table.mayImport(statements(2), "Future"))
+    assertFalse(table.mayImport(statements(2), "Success"))
+
+    assertTrue(table.mayImport(statements(3), "Try"))
+    assertTrue(table.mayImport(statements(3), "Success"))
+    assertFalse(table.mayImport(statements(3), "Future"))
+  }
+
+  def testNamesShadowedBySelectorsAreNotImportedByWildcard(): Unit = {
+    val (table, statements) = importsTable()
+    val math = statements(6)
+
+    assertEquals(Set("BigInt", "BigDecimal"), table.shadowedNames(math))
+    assertFalse(table.mayImport(math, "BigInt"))
+    assertFalse(table.mayImport(math, "BigDecimal"))
+    assertTrue(table.mayImport(math, "Decimal"))
+    assertTrue(table.mayImport(math, "Ordering"))
+  }
+
+  def testTableIsReusedUntilModification(): Unit = {
+    val holder = configureFromFileText(file).asInstanceOf[ScalaFile]
+    val table = holder.importsTable
+    assertTrue(table eq holder.importsTable)
+
+    myFixture.`type`('\n')
+    PsiDocumentManager.getInstance(getProject).commitAllDocuments()
+    assertFalse(table eq holder.importsTable)
+  }
+
+  private def importsTable() = {
+    val holder = configureFromFileText(file).asInstanceOf[ScalaFile]
+    (holder.importsTable, holder.getImportStatements)
+  }
+}
@@ -0,0 +1,58 @@
+package org.jetbrains.plugins.scala.lang.psi.implicits
+
+import java.util.concurrent.Callable
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.statements.ScPatternDefinition
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.junit.Assert.assertEquals
+
+import scala.collection.JavaConverters._
+
+class ConcurrentCandidatesCheckTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val CandidatesCount = 40
+
+  private def fileText: String = {
+    val candidates = (0 until CandidatesCount).map { i =>
+      val typeArgument = if (i % 10 == 7) "Int" else s"T$i"
+      s"  class T$i\n  implicit def v$i: Value[$typeArgument] = Value(null)"
+    }
+    s"""object Implicits {
+       |  case class Value[T](t: Any)
+       |${candidates.mkString("\n")}
+       |
+       |  val target: Value[Int] = ???
+       |}
+       |""".stripMargin
+  }
+
+  def testSameResultsAsSequential(): Unit = {
+    val file = configureFromFileText(fileText)
+    val target = PsiTreeUtil.findChildrenOfType(file, classOf[ScPatternDefinition]).asScala
+      .find(_.bindings.exists(_.name == "target")).get
+
+    def collectOffEdt(): Seq[String] = {
+      ScalaPsiManager.instance(getProject).clearCachesOnChange()
+
+      val collect: Callable[Seq[String]] = () => inReadAction {
+        val tp = target.typeElement.get.`type`().toOption.get
+        val collector = new ImplicitCollector(target.expr.get, tp, tp, None, isImplicitConversion = false)
+        collector.collect().map(_.name).sorted
+      }
+      ApplicationManager.getApplication.executeOnPooledThread(collect).get()
+    }
+
+    val sequential = collectOffEdt()
+
+    Registry.get(ImplicitCollector.ConcurrentCheckRegistryKey).setValue(true, getTestRootDisposable)
+    val concurrent = collectOffEdt()
+
+    assertEquals(Seq("v17", "v27", "v37", "v7"), sequential)
+    assertEquals(sequential, concurrent)
+  }
+}
@@ -0,0 +1,158 @@
+package org.jetbrains.plugins.scala.lang.psi.implicits
+
+import com.intellij.psi.{PsiElement, PsiFile}
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.extensions._
+import org.jetbrains.plugins.scala.lang.psi.api.expr.ScExpression
+import org.jetbrains.plugins.scala.lang.psi.api.statements.ScFunctionDefinition
+import org.jetbrains.plugins.scala.lang.psi.api.toplevel.typedef.ScClass
+import org.jetbrains.plugins.scala.lang.psi.types.api.designator.ScDesignatorType
+import org.jetbrains.plugins.scala.lang.resolve.ScalaResolveResult
+import org.junit.Assert.{assertEquals, assertFalse, assertTrue}
+
+class ImplicitCollectorCacheTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private var typesFile: PsiFile = _
+  private var implicitsFile: PsiFile = _
+  private var otherFile: PsiFile = _
+  private var discardedTypeFile: PsiFile = _
+  private var place: PsiElement = _
+
+  override def setUp(): Unit = {
+    super.setUp()
+
+    typesFile = myFixture.addFileToProject("a/Types.scala",
+      """package a
+        |class Foo {
+        |  def x: Int = 1
+        |}
+        |class Bar
+        |""".stripMargin
+    )
+    implicitsFile = myFixture.addFileToProject("a/Implicits.scala",
+      """package a
+        |object Implicits {
+        |  implicit def foo: Foo = new Foo
+        |  implicit def bar = new Bar
+        |  implicit def baz: d.Baz = new d.Baz
+        |  def body(): Int = 2
+        |}
+        |""".stripMargin
+    )
+    otherFile = myFixture.addFileToProject("c/Other.scala",
+      """package c
+        |object Other {
+        |  def m(): Int = 3
+        |}
+        |""".stripMargin
+    )
+    discardedTypeFile = myFixture.addFileToProject("d/Baz.scala",
+      """package d
+        |class Baz {
+        |  def z: Int = 5
+        |}
+        |""".stripMargin
+    )
+    place = configureFromFileText(
+      """package b
+        |object Use {
+        |  def y(): Int = 4
+        |}
+        |""".stripMargin
+    ).depthFirst().collectFirst {
+      case expression: ScExpression => expression
+    }.get
+  }
+
+  private def function(file: PsiFile, name: String): ScFunctionDefinition =
+    file.depthFirst().collectFirst {
+      case f: ScFunctionDefinition if f.name == name => f
+    }.get
+
+  private def body(file: PsiFile, name: String): PsiElement =
+    function(file, name).body.get
+
+  private def classType(name: String) =
+    ScDesignatorType(typesFile.depthFirst().collectFirst {
+      case c: ScClass if c.name == name => c
+    }.get)
+
+  private def putResult(cache: ImplicitCollectorCache, className: String, candidateName: String): Unit = {
+    val candidate = new ScalaResolveResult(function(implicitsFile, candidateName))
+    cache.put(place, classType(className), Seq(candidate), Seq(candidate))
+  }
+
+  private def isCached(cache: ImplicitCollectorCache, className: String): Boolean =
+    cache.get(place, classType(className)).isDefined
+
+  def testChangeInIndependentFile(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+
+    cache.invalidate(body(otherFile, "m"), isTopLevelChange = false)
+    assertTrue(isCached(cache, "Foo"))
+  }
+
+  def testChangeInCandidateFile(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+
+    cache.invalidate(body(implicitsFile, "body"), isTopLevelChange = false)
+    assertFalse(isCached(cache, "Foo"))
+  }
+
+  def testChangeInTypeDefinitionFile(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+
+    cache.invalidate(body(typesFile, "x"), isTopLevelChange = false)
+    assertFalse(isCached(cache, "Foo"))
+  }
+
+  def testTypesOfDiscardedCandidatesAreNotFollowed(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    val found = new ScalaResolveResult(function(implicitsFile, "foo"))
+    val discarded = new ScalaResolveResult(function(implicitsFile, "baz"))
+    cache.put(place, classType("Foo"), Seq(found), Seq(found, discarded))
+
+    cache.invalidate(body(discardedTypeFile, "z"), isTopLevelChange = false)
+    assertTrue(isCached(cache, "Foo"))
+
+    cache.invalidate(body(implicitsFile, "body"), isTopLevelChange = false)
+    assertFalse(isCached(cache, "Foo"))
+  }
+
+  def testDroppedResultIsRemovedFromAllFiles(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+    assertTrue(cache.dependentKeys(place.getContainingFile).nonEmpty)
+    assertTrue(cache.dependentKeys(typesFile).nonEmpty)
+
+    cache.invalidate(body(implicitsFile, "body"), isTopLevelChange = false)
+    assertTrue(cache.dependentKeys(place.getContainingFile).isEmpty)
+    assertTrue(cache.dependentKeys(typesFile).isEmpty)
+    assertTrue(cache.dependentKeys(implicitsFile).isEmpty)
+  }
+
+  def testTopLevelChangeDropsInferredCandidates(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+    putResult(cache, "Bar", "bar")
+
+    cache.invalidate(function(otherFile, "m"), isTopLevelChange = true)
+    assertTrue(isCached(cache, "Foo"))
+    assertFalse(isCached(cache, "Bar"))
+    assertEquals(1, cache.dependentKeys(implicitsFile).size)
+  }
+
+  def testTopLevelImplicitChangeDropsAll(): Unit = {
+    val cache = new ImplicitCollectorCache(getProject)
+    putResult(cache, "Foo", "foo")
+
+    cache.invalidate(function(otherFile, "m"), isTopLevelChange = false)
+    assertTrue(isCached(cache, "Foo"))
+
+    cache.invalidate(function(implicitsFile, "foo").returnTypeElement.get, isTopLevelChange = true)
+    assertFalse(isCached(cache, "Foo"))
+  }
+}
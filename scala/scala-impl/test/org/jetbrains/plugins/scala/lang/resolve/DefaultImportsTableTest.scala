@@ -0,0 +1,40 @@
+package org.jetbrains.plugins.scala.lang.resolve
+
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.psi.impl.ScalaPsiManager
+import org.junit.Assert.{assertFalse, assertSame, assertTrue}
+
+class DefaultImportsTableTest extends ScalaLightCodeInsightFixtureTestAdapter {
+
+  private val defaultImports = Seq("java.lang", "scala", "scala.Predef", "a.Bar")
+
+  private def table = ScalaPsiManager.instance(getProject).defaultImportsTable(defaultImports)
+
+  def testLibraryObject(): Unit = {
+    assertTrue(table.mayContain("scala.Predef", "println"))
+    assertTrue(table.mayContain("scala.Predef", "String"))
+    assertTrue(table.mayContain("scala.Predef", "`println`"))
+    assertFalse(table.mayContain("scala.Predef", "noSuchMember"))
+  }
+
+  def testPackages(): Unit = {
+    assertTrue(table.mayContain("java.lang", "noSuchClass"))
+    assertTrue(table.mayContain("scala", "noSuchClass"))
+  }
+
+  def testSourceObject(): Unit = {
+    myFixture.addFileToProject("Bar.scala",
+      """package a
+        |object Bar {
+        |  def x: Int = 123
+        |}
+        |""".stripMargin
+    )
+
+    assertTrue(table.mayContain("a.Bar", "x"))
+    assertTrue(table.mayContain("a.Bar", "y"))
+  }
+
+  def testShared(): Unit =
+    assertSame(table, ScalaPsiManager.instance(getProject).defaultImportsTable(defaultImports.toList))
+}
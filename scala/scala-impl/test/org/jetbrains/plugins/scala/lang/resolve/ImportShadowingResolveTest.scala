@@ -0,0 +1,99 @@
+package org.jetbrains.plugins.scala.lang.resolve
+
+import org.jetbrains.plugins.scala.base.ScalaLightCodeInsightFixtureTestAdapter
+import org.jetbrains.plugins.scala.lang.resolve.SimpleResolveTestBase.{REFSRC, REFTGT}
+
+/**
+  * Name lookups go through [[org.jetbrains.plugins.scala.lang.psi.ScImportsHolder.ImportsTable]],
+  * which must keep the precedence of explicit imports over wildcard ones.
+  */
+class ImportShadowingResolveTest extends ScalaLightCodeInsightFixtureTestAdapter
+  with SimpleResolveTestBase {
+
+  private val explicitSource =
+    s"""package explicit
+       |
+       |class ${REFTGT}Clash
+       |class Other
+       |""".stripMargin -> "Explicit.scala"
+
+  private val wildcardSource =
+    """package wildcard
+      |
+      |class Clash
+      |class Other
+      |""".stripMargin -> "Wildcard.scala"
+
+  def testExplicitImportShadowsPrecedingWildcard(): Unit = doResolveTest(
+    explicitSource,
+    wildcardSource,
+    s"""import wildcard._
+       |import explicit.Clash
+       |
+       |object Test {
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+
+  def testExplicitImportShadowsWildcardOfTheSameStatement(): Unit = doResolveTest(
+    explicitSource,
+    wildcardSource,
+    s"""import wildcard._, explicit.Clash
+       |
+       |object Test {
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+
+  def testExplicitImportInInnerScopeShadowsOuterWildcard(): Unit = doResolveTest(
+    explicitSource,
+    wildcardSource,
+    s"""import wildcard._
+       |
+       |object Test {
+       |  import explicit.Clash
+       |
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+
+  def testNameHiddenFromWildcardIsImportedByAnotherWildcard(): Unit = doResolveTest(
+    explicitSource,
+    wildcardSource,
+    s"""import wildcard.{Clash => _, _}
+       |import explicit._
+       |
+       |object Test {
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+
+  def testRenamedNameIsNotImportedByWildcard(): Unit = testNoResolve(
+    wildcardSource,
+    s"""import wildcard.{Clash => Renamed, _}
+       |
+       |object Test {
+       |  new Renamed
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+
+  def testRepeatedLookupsOfTheSameName(): Unit = doResolveTest(
+    explicitSource,
+    wildcardSource,
+    s"""import wildcard._
+       |import explicit.Clash
+       |
+       |object Test {
+       |  new Clash
+       |  new Other
+       |  new ${REFSRC}Clash
+       |}
+       |""".stripMargin -> "Test.scala"
+  )
+}
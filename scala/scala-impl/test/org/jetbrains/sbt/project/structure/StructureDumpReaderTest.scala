@@ -0,0 +1,43 @@
+package org.jetbrains.sbt
+package project.structure
+
+import java.io.File
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.sbt.structure.XmlSerializer._
+import org.jetbrains.sbt.structure._
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.xml.XML
+
+class StructureDumpReaderTest {
+
+  @Test
+  def sameAsDomDeserialization(): Unit = {
+    val root = new File("/projects/root")
+    val projects = Seq("core", "util", "app").map(projectData(root, _))
+    val dump = <structure sbt="1.2.8">{projects.map(_.serialize)}</structure>
+
+    val file = FileUtil.createTempFile("sbt-structure", ".xml", true)
+    XML.save(file.getPath, dump, "UTF-8")
+
+    var reported = Seq.empty[Double]
+    val data = new StructureDumpReader(fraction => reported :+= fraction).read(file)
+
+    assertEquals(XML.loadFile(file).deserialize[StructureData].right.get, data)
+    assertEquals(projects, data.projects)
+    assertEquals(projects.size, reported.size)
+    assertEquals(reported.sorted, reported)
+  }
+
+  private def projectData(root: File, name: String): ProjectData = {
+    val base = new File(root, name)
+    val configuration = ConfigurationData("compile", Seq(DirectoryData(new File(base, "src/main/scala"), managed = false)), Seq.empty, Seq.empty, new File(base, "target/classes"))
+    ProjectData(
+      name, root.toURI, name, "org.example", "1.0", base, Seq.empty,
+      new File(base, "target"), Seq(configuration), Option(JavaData(None, Seq.empty)), None, None,
+      DependencyData(Seq.empty, Seq.empty, Seq.empty), Set.empty, None, Seq.empty, Seq.empty, Seq.empty
+    )
+  }
+}